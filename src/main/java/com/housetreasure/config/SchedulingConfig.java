@@ -0,0 +1,10 @@
+package com.housetreasure.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Enables @Scheduled jobs (payment verification reconciliation and other periodic sweeps)
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
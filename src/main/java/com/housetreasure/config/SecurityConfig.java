@@ -1,35 +1,75 @@
 // filepath: src/main/java/com/housetreasure/config/SecurityConfig.java
 package com.housetreasure.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
 import java.util.Arrays;
 
+import jakarta.servlet.DispatcherType;
+
+import com.housetreasure.service.TokenService;
+
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
 
+    // Lets the token filter be switched off while clients move to bearer tokens
+    @Value("${auth.required:true}")
+    private boolean authRequired;
+
+    // The filter is created here rather than as a bean so it is not also registered as a servlet filter
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http, TokenService tokenService) throws Exception {
         http
             .cors(cors -> cors.configurationSource(corsConfigurationSource()))
             .csrf(csrf -> csrf.disable())
             .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
-            .authorizeHttpRequests(auth -> auth
-                .requestMatchers("/api/auth/**").permitAll()
-                .requestMatchers("/api/public/**").permitAll()
-                .requestMatchers("/actuator/**").permitAll()
-                // .anyRequest().authenticated()
-                .anyRequest().permitAll()
-            );
+            .exceptionHandling(exceptions -> exceptions
+                .authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED)))
+            .addFilterBefore(new TokenAuthenticationFilter(tokenService), UsernamePasswordAuthenticationFilter.class)
+            .authorizeHttpRequests(auth -> {
+                auth
+                    // Completions of async handlers; the original dispatch was already authorized
+                    .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+                    .requestMatchers("/api/auth/login", "/api/auth/register", "/api/auth/refresh").permitAll()
+                    // The older account endpoints, used before a client holds a token
+                    .requestMatchers(HttpMethod.POST, "/api/users/login", "/api/users/register",
+                            "/api/users/verify-email", "/api/users/forgot-password",
+                            "/api/users/reset-password").permitAll()
+                    .requestMatchers("/api/public/**").permitAll()
+                    .requestMatchers("/actuator/**").permitAll()
+                    // Payment providers sign callbacks with a shared secret (checked in PaymentController), not user tokens
+                    .requestMatchers("/api/payments/callback/**").permitAll()
+                    // STOMP handshake; message-level auth is separate
+                    .requestMatchers("/ws/**").permitAll()
+                    .requestMatchers(HttpMethod.GET, "/uploads/**", "/api/items/**", "/api/categories/**",
+                            "/api/images/**", "/api/auctions/**").permitAll()
+                    .requestMatchers("/api/reports/**", "/api/users/admin/**").hasRole("ADMIN")
+                    // Bulk exports, raw entity saves and the unguarded status transitions
+                    .requestMatchers(HttpMethod.GET, "/api/transactions/export",
+                            "/api/transactions/receipts/export").hasRole("ADMIN")
+                    .requestMatchers(HttpMethod.POST, "/api/transactions", "/api/offers", "/api/users").hasRole("ADMIN")
+                    .requestMatchers(HttpMethod.PUT, "/api/transactions/*/status", "/api/transactions/*/complete",
+                            "/api/transactions/*/refund").hasRole("ADMIN");
+                if (authRequired) {
+                    auth.anyRequest().authenticated();
+                } else {
+                    auth.anyRequest().permitAll();
+                }
+            });
 
         return http.build();
     }
@@ -0,0 +1,85 @@
+package com.housetreasure.controller;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import com.housetreasure.dto.AuctionState;
+import com.housetreasure.model.AuctionBid;
+import com.housetreasure.service.AuctionService;
+
+@RestController
+@RequestMapping("/api/auctions")
+@CrossOrigin(origins = {"http://localhost:5173", "http://localhost:3000"})
+public class AuctionController {
+
+    private final AuctionService auctionService;
+
+    public AuctionController(AuctionService auctionService) {
+        this.auctionService = auctionService;
+    }
+
+    // === AUCTIONS ===
+    // Sellers and bidders are the authenticated user, never an id from the request
+    @PostMapping
+    public ResponseEntity<?> createAuction(@AuthenticationPrincipal Long sellerId,
+                                           @RequestBody Map<String, Object> request) {
+        try {
+            String itemId = request.get("itemId").toString();
+            BigDecimal startingPrice = new BigDecimal(request.get("startingPrice").toString());
+            BigDecimal minIncrement = request.get("minIncrement") != null ?
+                new BigDecimal(request.get("minIncrement").toString()) : BigDecimal.ONE;
+            int durationMinutes = Integer.parseInt(request.get("durationMinutes").toString());
+
+            return ResponseEntity.ok(auctionService.createAuction(itemId, sellerId, startingPrice,
+                    minIncrement, durationMinutes));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<AuctionState> getAuction(@PathVariable Long id) {
+        return auctionService.getAuction(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/item/{itemId}")
+    public ResponseEntity<AuctionState> getAuctionForItem(@PathVariable String itemId) {
+        return auctionService.getAuctionForItem(itemId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @PutMapping("/{id}/close")
+    public ResponseEntity<?> closeAuction(@PathVariable Long id, @AuthenticationPrincipal Long sellerId) {
+        try {
+            return ResponseEntity.ok(auctionService.closeAuction(id, sellerId));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // === BIDDING ===
+    // Live updates for watchers are published on /topic/auctions/{id}
+    @PostMapping("/{id}/bids")
+    public ResponseEntity<?> placeBid(@PathVariable Long id, @AuthenticationPrincipal Long bidderId,
+                                      @RequestBody Map<String, Object> request) {
+        try {
+            BigDecimal amount = new BigDecimal(request.get("amount").toString());
+            return ResponseEntity.ok(auctionService.placeBid(id, bidderId, amount));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/{id}/bids")
+    public List<AuctionBid> getTopBids(@PathVariable Long id, @RequestParam(defaultValue = "20") int limit) {
+        return auctionService.getTopBids(id, limit);
+    }
+}
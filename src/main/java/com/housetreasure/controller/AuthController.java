@@ -2,13 +2,19 @@ package com.housetreasure.controller;
 
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
+import com.housetreasure.exception.PasswordHashingBusyException;
 import com.housetreasure.model.User;
 import com.housetreasure.repository.UserRepository;
+import com.housetreasure.service.PasswordHashingService;
+import com.housetreasure.service.TokenService;
 import com.housetreasure.service.UserService;
 
 @RestController
@@ -17,17 +23,21 @@ import com.housetreasure.service.UserService;
 public class AuthController {
     private final UserService userService;
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
+    private final TokenService tokenService;
 
     //@Autowired
-    public AuthController(UserService userService, UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public AuthController(UserService userService, UserRepository userRepository,
+                          PasswordHashingService passwordHashingService, TokenService tokenService) {
         this.userService = userService;
         this.userRepository = userRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHashingService = passwordHashingService;
+        this.tokenService = tokenService;
     }
 
+    // Password hashing completes asynchronously; 503 when the hashing queue is full
     @PostMapping("/register")
-    public ResponseEntity<?> register(@RequestBody Map<String, Object> request) {
+    public CompletableFuture<ResponseEntity<?>> register(@RequestBody Map<String, Object> request) {
         try {
             // Debug logging
             System.out.println("Registration request: " + request);
@@ -41,19 +51,20 @@ public class AuthController {
             
             // Validate required fields
             if (email == null || password == null) {
-                return ResponseEntity.badRequest().body(Map.of("message","Email and password are required"));
+                return CompletableFuture.completedFuture(
+                    ResponseEntity.badRequest().body(Map.of("message","Email and password are required")));
             }
             
             // Check if email exists
             if (userRepository.findByEmail(email) != null) {
-                return ResponseEntity.badRequest().body(Map.of("message","Email already in use"));
+                return CompletableFuture.completedFuture(
+                    ResponseEntity.badRequest().body(Map.of("message","Email already in use")));
             }
             
             // Create new user
             User user = new User();
             user.setUsername(username);
             user.setEmail(email);
-            user.setPassword(passwordEncoder.encode(password));
             user.setFirstName(firstName);
             user.setLastName(lastName);
 
@@ -67,78 +78,117 @@ public class AuthController {
             user.setAirtelMoneyNumber((String) request.get("airtelMoneyNumber"));
             user.setPreferredPaymentMethod((String) request.get("preferredPaymentMethod"));
 
-            User savedUser = userService.saveUser(user);
-            
-            // Generate a simple token (replace with proper JWT)
-            String token = "temp_token_" + savedUser.getId() + "_" + System.currentTimeMillis();
-
-            return ResponseEntity.ok(Map.of(
-                "message", "User registered successfully",
-                "user", Map.of(
-                    "id", savedUser.getId(),
-                    "username", savedUser.getUsername(),
-                    "email", savedUser.getEmail(),
-                    "firstName", savedUser.getFirstName(),
-                    "lastName", savedUser.getLastName()
-                ),
-                "token", token
-            ));
+            return passwordHashingService.encode(password)
+                .<ResponseEntity<?>>thenApply(hash -> {
+                    user.setPassword(hash);
+                    User savedUser = userService.saveUser(user);
+                    return ResponseEntity.ok(tokenResponse("User registered successfully", savedUser));
+                })
+                .exceptionally(e -> registrationFailed(unwrap(e)));
             
         } catch (Exception e) {
-            System.err.println("Registration error: " + e.getMessage());
-            e.printStackTrace();
-            return ResponseEntity.badRequest().body(Map.of("message", "Registration failed: " + e.getMessage()));
+            return CompletableFuture.completedFuture(registrationFailed(e));
+        }
+    }
+
+    private static ResponseEntity<?> registrationFailed(Throwable e) {
+        if (e instanceof PasswordHashingBusyException) {
+            return busy();
         }
+        System.err.println("Registration error: " + e.getMessage());
+        e.printStackTrace();
+        return ResponseEntity.badRequest().body(Map.of("message", "Registration failed: " + e.getMessage()));
     }
     
-    // Add missing endpoints
+    // Tokens are stateless; the client discards them and the access token lapses within its TTL
     @PostMapping("/logout")
     public ResponseEntity<?> logout() {
-        // For now, just return success (implement actual logout logic later)
         return ResponseEntity.ok(Map.of("message", "Logged out successfully"));
     }
     
     @GetMapping("/me")
-    public ResponseEntity<?> getCurrentUser() {
-        // For now, return a placeholder (implement actual user retrieval later)
-        return ResponseEntity.ok(Map.of("message", "Current user endpoint"));
+    public ResponseEntity<?> getCurrentUser(@AuthenticationPrincipal Long userId) {
+        if (userId == null) {
+            return ResponseEntity.status(401).body(Map.of("message", "Not authenticated"));
+        }
+        return userService.getUserById(userId)
+            .<ResponseEntity<?>>map(user -> ResponseEntity.ok(userSummary(user)))
+            .orElse(ResponseEntity.status(401).body(Map.of("message", "Not authenticated")));
+    }
+
+    // Exchanges a refresh token for a new token pair; the only token path that reads the user
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refresh(@RequestBody Map<String, String> request) {
+        Optional<User> user = tokenService.verify(request.get("refreshToken"), TokenService.REFRESH)
+            .flatMap(claims -> userService.getUserById(claims.userId()))
+            .filter(candidate -> !Boolean.FALSE.equals(candidate.getIsActive()));
+        if (user.isEmpty()) {
+            return ResponseEntity.status(401).body(Map.of("message", "Invalid or expired refresh token"));
+        }
+        return ResponseEntity.ok(tokenResponse("Token refreshed", user.get()));
     }
 
     @PostMapping("/login")
-    public ResponseEntity<?> loginUser(@RequestBody Map<String, String> credentials) {
+    public CompletableFuture<ResponseEntity<?>> loginUser(@RequestBody Map<String, String> credentials) {
     try {
             String email = credentials.get("email");
             String password = credentials.get("password");
             
             System.out.println("Login attempt for email: " + email);
             
-            Optional<User> userOptional = userService.loginUser(email, password);
-            
-            if (userOptional.isPresent()) {
-                User user = userOptional.get();
-                String token = "temp_token_" + user.getId() + "_" + System.currentTimeMillis();
-                
-                return ResponseEntity.ok(Map.of(
-                    "message", "Login successful",
-                    "user", Map.of(
-                        "id", user.getId(),
-                        "username", user.getUsername(),
-                        "email", user.getEmail(),
-                        "firstName", user.getFirstName(),
-                        "lastName", user.getLastName()
-                    ),
-                    "token", token
-                ));
-            } else {
-                return ResponseEntity.status(401).body(Map.of("message", "Invalid email or password"));
-            }
+            return userService.loginUser(email, password)
+                .<ResponseEntity<?>>thenApply(userOptional -> userOptional.isPresent()
+                    ? ResponseEntity.ok(tokenResponse("Login successful", userOptional.get()))
+                    : ResponseEntity.status(401).body(Map.of("message", "Invalid email or password")))
+                .exceptionally(e -> loginFailed(unwrap(e)));
         } catch (Exception e) {
-            System.err.println("Login error: " + e.getMessage());
-            e.printStackTrace();
-            return ResponseEntity.status(500).body(Map.of("message", "Login failed: " + e.getMessage()));
+            return CompletableFuture.completedFuture(loginFailed(e));
         }
     }
 
+    private static ResponseEntity<?> loginFailed(Throwable e) {
+        if (e instanceof PasswordHashingBusyException) {
+            return busy();
+        }
+        System.err.println("Login error: " + e.getMessage());
+        e.printStackTrace();
+        return ResponseEntity.status(500).body(Map.of("message", "Login failed: " + e.getMessage()));
+    }
+
+    private static ResponseEntity<?> busy() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header("Retry-After", "1")
+            .body(Map.of("message", "Too many sign-in attempts in progress, try again shortly"));
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    // "token" is the access token, kept under its old name for existing clients
+    private Map<String, Object> tokenResponse(String message, User user) {
+        TokenService.TokenPair tokens = tokenService.issue(user);
+        return Map.of(
+            "message", message,
+            "user", userSummary(user),
+            "token", tokens.accessToken(),
+            "accessToken", tokens.accessToken(),
+            "refreshToken", tokens.refreshToken(),
+            "expiresIn", tokens.expiresIn()
+        );
+    }
+
+    private static Map<String, Object> userSummary(User user) {
+        return Map.of(
+            "id", user.getId(),
+            "username", user.getUsername(),
+            "email", user.getEmail(),
+            "firstName", user.getFirstName(),
+            "lastName", user.getLastName(),
+            "role", user.getRole() != null ? user.getRole().name() : User.Role.USER.name()
+        );
+    }
+
     public static class LoginRequest {
         private String email;
         private String password;
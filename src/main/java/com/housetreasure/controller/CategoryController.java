@@ -45,8 +45,8 @@ public class CategoryController {
     }
     
     @GetMapping("/search")
-    public List<Category> searchCategories(@RequestParam String name) {
-        return categoryService.searchCategories(name);
+    public Page<Category> searchCategories(@RequestParam String name, Pageable pageable) {
+        return categoryService.searchCategories(name, pageable);
     }
     
     @GetMapping("/popular")
@@ -8,6 +8,7 @@ import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import com.housetreasure.dto.MessageSearchHit;
 import com.housetreasure.model.Message;
 import com.housetreasure.service.MessageService;
 
@@ -65,6 +66,14 @@ public class MessageController {
         return messageService.getConversationHistory(user1, user2);
     }
 
+    @GetMapping("/conversation/{user1}/{user2}/page")
+    public List<Message> getConversationPage(
+            @PathVariable String user1, @PathVariable String user2,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime before,
+            @RequestParam(defaultValue = "50") int limit) {
+        return messageService.getConversationPage(user1, user2, before, limit);
+    }
+
     // === MESSAGE STATUS ===
     @PutMapping("/{id}/mark-read")
     public ResponseEntity<Message> markAsRead(@PathVariable String id) {
@@ -100,6 +109,12 @@ public class MessageController {
         return Map.of("unreadCount", messageService.getUnreadMessageCount(userId));
     }
 
+    @GetMapping("/user/{userId}/unread-count/{peerId}")
+    public Map<String, Long> getUnreadMessageCountForConversation(@PathVariable String userId,
+                                                                  @PathVariable String peerId) {
+        return Map.of("unreadCount", messageService.getUnreadMessageCount(userId, peerId));
+    }
+
     // === FILTERING ===
     @GetMapping("/item/{itemId}")
     public List<Message> getMessagesByItem(@PathVariable String itemId) {
@@ -112,13 +127,15 @@ public class MessageController {
     }
 
     @GetMapping("/user/{userId}/read")
-    public List<Message> getReadConversations(@PathVariable String userId) {
-        return messageService.getReadConversations(userId);
+    public List<Message> getReadConversations(@PathVariable String userId,
+                                              @RequestParam(defaultValue = "50") int limit) {
+        return messageService.getReadConversations(userId, limit);
     }
 
     @GetMapping("/user/{userId}/unread-conversations")
-    public List<Message> getUnreadConversations(@PathVariable String userId) {
-        return messageService.getUnreadConversations(userId);
+    public List<Message> getUnreadConversations(@PathVariable String userId,
+                                                @RequestParam(defaultValue = "50") int limit) {
+        return messageService.getUnreadConversations(userId, limit);
     }
 
     @GetMapping("/date-range")
@@ -130,8 +147,36 @@ public class MessageController {
 
     // === SEARCH ===
     @GetMapping("/user/{userId}/search")
-    public List<Message> searchMessages(@PathVariable String userId, @RequestParam String query) {
-        return messageService.searchMessages(userId, query);
+    public List<Message> searchMessages(@PathVariable String userId, @RequestParam String query,
+                                        @RequestParam(defaultValue = "0") int page,
+                                        @RequestParam(defaultValue = "50") int size) {
+        return messageService.searchMessages(userId, query, page, size);
+    }
+
+    @GetMapping("/user/{userId}/search/hits")
+    public List<MessageSearchHit> searchMessagesWithContext(@PathVariable String userId, @RequestParam String query,
+                                                            @RequestParam(defaultValue = "0") int page,
+                                                            @RequestParam(defaultValue = "20") int size) {
+        return messageService.searchMessagesWithContext(userId, query, page, size);
+    }
+
+    @PostMapping("/buckets/migrate")
+    public Map<String, Long> migrateToBuckets() {
+        return Map.of("migratedMessages", messageService.migrateToBuckets());
+    }
+
+    @PostMapping("/retention/backfill")
+    public ResponseEntity<?> backfillRetention() {
+        try {
+            return ResponseEntity.ok(Map.of("stampedMessages", messageService.applyRetentionToExistingMessages()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @PostMapping("/search-index/rebuild")
+    public Map<String, Long> rebuildSearchIndex() {
+        return Map.of("indexedMessages", messageService.rebuildSearchIndex());
     }
 
     // === DELETION ===
@@ -4,9 +4,14 @@ import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
 
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
+import com.housetreasure.dto.OfferSummary;
+import com.housetreasure.exception.OfferConflictException;
 import com.housetreasure.model.Offer;
 import com.housetreasure.model.Offer.OfferStatus;
 import com.housetreasure.service.OfferService;
@@ -24,7 +29,7 @@ public class OfferController {
 
     // === BASIC OPERATIONS ===
     @GetMapping
-    public List<Offer> getAllOffers() {
+    public List<OfferSummary> getAllOffers() {
         return offerService.getAllOffers();
     }
 
@@ -41,10 +46,11 @@ public class OfferController {
     }
 
     // === MAKING OFFERS ===
+    // The acting buyer or seller comes from the access token, never from the request
     @PostMapping("/make")
-    public ResponseEntity<Offer> makeOffer(@RequestBody Map<String, Object> request) {
+    public ResponseEntity<OfferSummary> makeOffer(@AuthenticationPrincipal Long buyerId,
+                                                  @RequestBody Map<String, Object> request) {
         try {
-            Long buyerId = Long.valueOf(request.get("buyerId").toString());
             Long sellerId = Long.valueOf(request.get("sellerId").toString());
             String itemId = request.get("itemId").toString();
             BigDecimal amount = new BigDecimal(request.get("amount").toString());
@@ -53,7 +59,7 @@ public class OfferController {
                 Integer.valueOf(request.get("validityHours").toString()) : null;
 
             Offer offer = offerService.makeOffer(buyerId, sellerId, itemId, amount, message, validityHours);
-            return ResponseEntity.ok(offer);
+            return ResponseEntity.ok(OfferSummary.from(offer));
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
@@ -61,12 +67,13 @@ public class OfferController {
 
     // === UPDATING OFFERS ===
     @PutMapping("/{id}")
-    public ResponseEntity<Offer> updateOffer(@PathVariable Long id, @RequestBody Map<String, Object> request) {
+    public ResponseEntity<Offer> updateOffer(@PathVariable Long id, @AuthenticationPrincipal Long buyerId,
+                                             @RequestBody Map<String, Object> request) {
         try {
             BigDecimal newAmount = new BigDecimal(request.get("amount").toString());
             String newMessage = (String) request.get("message");
             
-            Offer updated = offerService.updateOffer(id, newAmount, newMessage);
+            Offer updated = offerService.updateOffer(id, newAmount, newMessage, buyerId);
             return ResponseEntity.ok(updated);
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
@@ -75,20 +82,24 @@ public class OfferController {
 
     // === OFFER RESPONSES ===
     @PutMapping("/{id}/accept")
-    public ResponseEntity<Offer> acceptOffer(@PathVariable Long id) {
+    public ResponseEntity<Offer> acceptOffer(@PathVariable Long id, @AuthenticationPrincipal Long sellerId) {
         try {
-            Offer accepted = offerService.acceptOffer(id);
+            Offer accepted = offerService.acceptOffer(id, sellerId);
             return ResponseEntity.ok(accepted);
+        } catch (OfferConflictException | OptimisticLockingFailureException e) {
+            // Another accept or response for this offer or item won the race
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
     @PutMapping("/{id}/reject")
-    public ResponseEntity<Offer> rejectOffer(@PathVariable Long id, @RequestBody Map<String, String> request) {
+    public ResponseEntity<Offer> rejectOffer(@PathVariable Long id, @AuthenticationPrincipal Long sellerId,
+                                             @RequestBody Map<String, String> request) {
         try {
             String reason = request.get("reason");
-            Offer rejected = offerService.rejectOffer(id, reason);
+            Offer rejected = offerService.rejectOffer(id, reason, sellerId);
             return ResponseEntity.ok(rejected);
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
@@ -96,12 +107,13 @@ public class OfferController {
     }
 
     @PutMapping("/{id}/counter")
-    public ResponseEntity<Offer> counterOffer(@PathVariable Long id, @RequestBody Map<String, Object> request) {
+    public ResponseEntity<Offer> counterOffer(@PathVariable Long id, @AuthenticationPrincipal Long sellerId,
+                                              @RequestBody Map<String, Object> request) {
         try {
             BigDecimal counterAmount = new BigDecimal(request.get("counterAmount").toString());
             String counterMessage = (String) request.get("counterMessage");
             
-            Offer countered = offerService.counterOffer(id, counterAmount, counterMessage);
+            Offer countered = offerService.counterOffer(id, counterAmount, counterMessage, sellerId);
             return ResponseEntity.ok(countered);
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
@@ -110,7 +122,7 @@ public class OfferController {
 
     // === CANCELING OFFERS ===
     @PutMapping("/{id}/cancel")
-    public ResponseEntity<Offer> cancelOffer(@PathVariable Long id, @RequestParam Long buyerId) {
+    public ResponseEntity<Offer> cancelOffer(@PathVariable Long id, @AuthenticationPrincipal Long buyerId) {
         try {
             Offer canceled = offerService.cancelOffer(id, buyerId);
             return ResponseEntity.ok(canceled);
@@ -121,67 +133,66 @@ public class OfferController {
 
     // === RETRIEVING OFFERS ===
     @GetMapping("/item/{itemId}")
-    public List<Offer> getOffersForItem(@PathVariable String itemId) {
+    public List<OfferSummary> getOffersForItem(@PathVariable String itemId) {
         return offerService.getOffersForItem(itemId);
     }
 
     @GetMapping("/buyer/{buyerId}")
-    public List<Offer> getOffersMadeByUser(@PathVariable Long buyerId) {
+    public List<OfferSummary> getOffersMadeByUser(@PathVariable Long buyerId) {
         return offerService.getOffersMadeByUser(buyerId);
     }
 
     @GetMapping("/seller/{sellerId}")
-    public List<Offer> getOffersReceivedByUser(@PathVariable Long sellerId) {
+    public List<OfferSummary> getOffersReceivedByUser(@PathVariable Long sellerId) {
         return offerService.getOffersReceivedByUser(sellerId);
     }
 
     @GetMapping("/user/{userId}")
-    public List<Offer> getAllOffersForUser(@PathVariable Long userId) {
-        List<Offer> buyerOffers = offerService.getOffersMadeByUser(userId);
-        List<Offer> sellerOffers = offerService.getOffersReceivedByUser(userId);
-        
-        // Combine both lists and return as array
-        List<Offer> allOffers = new java.util.ArrayList<>();
-        allOffers.addAll(buyerOffers);
-        allOffers.addAll(sellerOffers);
-        return allOffers;
+    public ResponseEntity<?> getAllOffersForUser(@PathVariable Long userId,
+                                                 @RequestParam(required = false) String cursor,
+                                                 @RequestParam(defaultValue = "20") int size) {
+        try {
+            return ResponseEntity.ok(offerService.getOffersForUser(userId, cursor, size));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     @GetMapping("/status/{status}")
-    public List<Offer> getOffersByStatus(@PathVariable OfferStatus status) {
+    public List<OfferSummary> getOffersByStatus(@PathVariable OfferStatus status) {
         return offerService.getOffersByStatus(status);
     }
 
     @GetMapping("/buyer/{buyerId}/status/{status}")
-    public List<Offer> getOffersByBuyerAndStatus(@PathVariable Long buyerId, @PathVariable OfferStatus status) {
+    public List<OfferSummary> getOffersByBuyerAndStatus(@PathVariable Long buyerId, @PathVariable OfferStatus status) {
         return offerService.getOffersByBuyerAndStatus(buyerId, status);
     }
 
     @GetMapping("/seller/{sellerId}/status/{status}")
-    public List<Offer> getOffersBySellerAndStatus(@PathVariable Long sellerId, @PathVariable OfferStatus status) {
+    public List<OfferSummary> getOffersBySellerAndStatus(@PathVariable Long sellerId, @PathVariable OfferStatus status) {
         return offerService.getOffersBySellerAndStatus(sellerId, status);
     }
 
     @GetMapping("/item/{itemId}/status/{status}")
-    public List<Offer> getOffersByItemAndStatus(@PathVariable String itemId, @PathVariable OfferStatus status) {
+    public List<OfferSummary> getOffersByItemAndStatus(@PathVariable String itemId, @PathVariable OfferStatus status) {
         return offerService.getOffersByItemAndStatus(itemId, status);
     }
 
     // === OFFER HISTORY & NEGOTIATIONS ===
     @GetMapping("/history")
-    public List<Offer> getOfferHistory(@RequestParam Long buyerId, 
+    public List<OfferSummary> getOfferHistory(@RequestParam Long buyerId, 
                                       @RequestParam Long sellerId, 
                                       @RequestParam String itemId) {
         return offerService.getOfferHistory(buyerId, sellerId, itemId);
     }
 
     @GetMapping("/item/{itemId}/pending")
-    public List<Offer> getPendingOffersForItem(@PathVariable String itemId) {
+    public List<OfferSummary> getPendingOffersForItem(@PathVariable String itemId) {
         return offerService.getPendingOffersForItem(itemId);
     }
 
     @GetMapping("/item/{itemId}/highest")
-    public ResponseEntity<Offer> getHighestOfferForItem(@PathVariable String itemId) {
+    public ResponseEntity<OfferSummary> getHighestOfferForItem(@PathVariable String itemId) {
         return offerService.getHighestOfferForItem(itemId)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
@@ -199,19 +210,19 @@ public class OfferController {
     }
 
     @GetMapping("/recent")
-    public List<Offer> getRecentOffers(@RequestParam(defaultValue = "30") int days) {
+    public List<OfferSummary> getRecentOffers(@RequestParam(defaultValue = "30") int days) {
         return offerService.getRecentOffers(days);
     }
 
     // === UTILITY ENDPOINTS ===
     @PostMapping("/mark-expired")
     public ResponseEntity<String> markExpiredOffers() {
-        offerService.markExpiredOffers();
-        return ResponseEntity.ok("Expired offers marked");
+        int expired = offerService.markExpiredOffers();
+        return ResponseEntity.ok("Expired offers marked: " + expired);
     }
 
     @GetMapping("/expired")
-    public List<Offer> getExpiredOffers() {
+    public List<OfferSummary> getExpiredOffers() {
         return offerService.getExpiredOffers();
     }
 
@@ -222,7 +233,7 @@ public class OfferController {
 
     // === NEGOTIATION ===
     @PutMapping("/{id}/respond-counter")
-    public ResponseEntity<Offer> respondToCounterOffer(@PathVariable Long id, 
+    public ResponseEntity<Offer> respondToCounterOffer(@PathVariable Long id, @AuthenticationPrincipal Long buyerId,
                                                       @RequestBody Map<String, Object> request) {
         try {
             Boolean accept = (Boolean) request.get("accept");
@@ -230,8 +241,10 @@ public class OfferController {
                 new BigDecimal(request.get("newCounterAmount").toString()) : null;
             String message = (String) request.get("message");
             
-            Offer response = offerService.respondToCounterOffer(id, accept, newCounterAmount, message);
+            Offer response = offerService.respondToCounterOffer(id, accept, newCounterAmount, message, buyerId);
             return ResponseEntity.ok(response);
+        } catch (OfferConflictException | OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
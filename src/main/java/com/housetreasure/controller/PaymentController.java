@@ -0,0 +1,58 @@
+package com.housetreasure.controller;
+
+import java.util.Map;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.housetreasure.model.PaymentVerification;
+import com.housetreasure.service.PaymentVerificationProvider;
+import com.housetreasure.service.PaymentVerificationProvider.Outcome;
+import com.housetreasure.service.PaymentVerificationService;
+
+@RestController
+@RequestMapping("/api/payments")
+@CrossOrigin(origins = {"http://localhost:5173", "http://localhost:3000"})
+public class PaymentController {
+
+    private final PaymentVerificationService paymentVerificationService;
+    private final ObjectMapper objectMapper;
+
+    public PaymentController(PaymentVerificationService paymentVerificationService, ObjectMapper objectMapper) {
+        this.paymentVerificationService = paymentVerificationService;
+        this.objectMapper = objectMapper;
+    }
+
+    // === VERIFICATIONS ===
+    @GetMapping("/verifications/{id}")
+    public ResponseEntity<PaymentVerification> getVerification(@PathVariable Long id) {
+        return paymentVerificationService.getVerification(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // === PROVIDER CALLBACKS ===
+    // Body: {"reference": "...", "status": "CONFIRMED" | "DECLINED" | "PENDING", "message": "..."}; safe to repeat.
+    // X-Signature carries the hex HMAC-SHA256 of the exact body bytes; 401 when missing or wrong
+    @PostMapping("/callback/{provider}")
+    public ResponseEntity<PaymentVerification> handleCallback(@PathVariable String provider,
+                                                              @RequestHeader(value = "X-Signature", required = false) String signature,
+                                                              @RequestBody byte[] body) {
+        if (!paymentVerificationService.isAuthenticCallback(provider, body, signature)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        try {
+            Map<String, String> request = objectMapper.readValue(body, new TypeReference<Map<String, String>>() {});
+            String reference = request.get("reference");
+            Outcome outcome = Outcome.valueOf(request.get("status").toUpperCase());
+            PaymentVerification verification = paymentVerificationService.handleCallback(provider, reference,
+                    new PaymentVerificationProvider.Result(outcome, request.get("message")));
+            return ResponseEntity.ok(verification);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+}
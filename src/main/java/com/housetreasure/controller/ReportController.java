@@ -0,0 +1,72 @@
+package com.housetreasure.controller;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import com.housetreasure.dto.ReportRow;
+import com.housetreasure.model.Transaction.TransactionStatus;
+import com.housetreasure.service.TransactionReportService;
+
+@RestController
+@RequestMapping("/api/reports")
+@CrossOrigin(origins = {"http://localhost:5173", "http://localhost:3000"})
+public class ReportController {
+
+    private final TransactionReportService transactionReportService;
+
+    public ReportController(TransactionReportService transactionReportService) {
+        this.transactionReportService = transactionReportService;
+    }
+
+    // === GMV ===
+    // from/to are inclusive creation days; status defaults to COMPLETED
+    @GetMapping("/gmv/daily")
+    public ResponseEntity<List<ReportRow>> getDailyGmv(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "COMPLETED") TransactionStatus status) {
+        try {
+            return ResponseEntity.ok(transactionReportService.getDailyGmv(from, to, status));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // dimension: payment-method, province or category
+    @GetMapping("/gmv/by-{dimension}")
+    public ResponseEntity<List<ReportRow>> getGmvBy(
+            @PathVariable String dimension,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "COMPLETED") TransactionStatus status) {
+        try {
+            return ResponseEntity.ok(transactionReportService.getGmvBy(dimension, from, to, status));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/monthly")
+    public ResponseEntity<List<ReportRow>> getMonthlySummary(@RequestParam int year) {
+        try {
+            return ResponseEntity.ok(transactionReportService.getMonthlySummary(year));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // === MAINTENANCE ===
+    @PostMapping("/rollups/rebuild")
+    public ResponseEntity<Map<String, Integer>> rebuildRollups() {
+        try {
+            return ResponseEntity.ok(Map.of("rows", transactionReportService.rebuild()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+}
@@ -1,16 +1,33 @@
 package com.housetreasure.controller;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.housetreasure.dto.TransactionSummary;
+import com.housetreasure.exception.PaymentVerificationBusyException;
+import com.housetreasure.exception.TransactionConflictException;
+import com.housetreasure.model.PaymentVerification;
+import com.housetreasure.model.PaymentVerification.VerificationStatus;
 import com.housetreasure.model.Transaction;
 import com.housetreasure.model.Transaction.PaymentMethod;
 import com.housetreasure.model.Transaction.TransactionStatus;
+import com.housetreasure.service.PaymentVerificationService;
+import com.housetreasure.service.ReceiptService;
+import com.housetreasure.service.TransactionExportService;
 import com.housetreasure.service.TransactionService;
 
 @RestController
@@ -18,14 +35,23 @@ import com.housetreasure.service.TransactionService;
 @CrossOrigin(origins = {"http://localhost:5173", "http://localhost:3000"})
 public class TransactionController {
     private final TransactionService transactionService;
-
-    public TransactionController(TransactionService transactionService){
+    private final PaymentVerificationService paymentVerificationService;
+    private final ReceiptService receiptService;
+    private final TransactionExportService transactionExportService;
+
+    public TransactionController(TransactionService transactionService,
+                                 PaymentVerificationService paymentVerificationService,
+                                 ReceiptService receiptService,
+                                 TransactionExportService transactionExportService){
         this.transactionService = transactionService;
+        this.paymentVerificationService = paymentVerificationService;
+        this.receiptService = receiptService;
+        this.transactionExportService = transactionExportService;
     }
 
     // === BASIC OPERATIONS ===
     @GetMapping
-    public List<Transaction> getAllTransactions() {
+    public List<TransactionSummary> getAllTransactions() {
         return transactionService.getAllTransactions();
     }
 
@@ -42,10 +68,11 @@ public class TransactionController {
     }
 
     // === CREATING TRANSACTIONS ===
+    // The acting user comes from the access token; ids in the body naming them are ignored
     @PostMapping("/create")
-    public ResponseEntity<Transaction> createTransaction(@RequestBody Map<String, Object> request) {
+    public ResponseEntity<Transaction> createTransaction(@AuthenticationPrincipal Long buyerId,
+                                                         @RequestBody Map<String, Object> request) {
         try {
-            Long buyerId = Long.valueOf(request.get("buyerId").toString());
             Long sellerId = Long.valueOf(request.get("sellerId").toString());
             String itemId = (String) request.get("itemId");
             BigDecimal amount = new BigDecimal(request.get("amount").toString());
@@ -69,6 +96,8 @@ public class TransactionController {
             TransactionStatus status = TransactionStatus.valueOf(request.get("status"));
             Transaction updated = transactionService.updateTransactionStatus(id, status);
             return ResponseEntity.ok(updated);
+        } catch (TransactionConflictException e) {
+            return refused(e);
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
@@ -76,70 +105,93 @@ public class TransactionController {
 
     // === PAYMENT PROCESSING ===
     @PutMapping("/{id}/process-payment")
-    public ResponseEntity<Transaction> processPayment(@PathVariable Long id, 
+    public ResponseEntity<Transaction> processPayment(@PathVariable Long id, @AuthenticationPrincipal Long buyerId,
                                                     @RequestBody Map<String, String> request) {
         try {
             String paymentReference = request.get("paymentReference");
-            Transaction updated = transactionService.processPayment(id, paymentReference);
+            Transaction updated = transactionService.processPayment(id, paymentReference, buyerId);
             return ResponseEntity.ok(updated);
+        } catch (TransactionConflictException e) {
+            return refused(e);
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
     @PutMapping("/{id}/confirm-payment")
-    public ResponseEntity<Transaction> confirmPayment(@PathVariable Long id, @RequestParam Long sellerId) {
+    public ResponseEntity<Transaction> confirmPayment(@PathVariable Long id, @AuthenticationPrincipal Long sellerId) {
         try {
             Transaction updated = transactionService.confirmPayment(id, sellerId);
             return ResponseEntity.ok(updated);
+        } catch (TransactionConflictException e) {
+            return refused(e);
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
+    // Checked with the provider asynchronously; 202 while the verification is still pending
     @PutMapping("/{id}/verify-payment")
-    public ResponseEntity<Transaction> verifyPayment(@PathVariable Long id, 
-                                                   @RequestBody Map<String, String> request) {
+    public CompletableFuture<ResponseEntity<PaymentVerification>> verifyPayment(@PathVariable Long id, 
+                                                                             @AuthenticationPrincipal Long buyerId,
+                                                                             @RequestBody Map<String, String> request) {
         try {
             String verificationCode = request.get("verificationCode");
-            Transaction updated = transactionService.verifyPayment(id, verificationCode);
-            return ResponseEntity.ok(updated);
+            return paymentVerificationService.verify(id, verificationCode, buyerId)
+                .thenApply(verification -> verification.getStatus() == VerificationStatus.PENDING
+                        ? ResponseEntity.accepted().body(verification)
+                        : ResponseEntity.ok(verification));
+        } catch (TransactionConflictException e) {
+            return CompletableFuture.completedFuture(refused(e));
+        } catch (PaymentVerificationBusyException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
         } catch (Exception e) {
-            return ResponseEntity.badRequest().build();
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
         }
     }
 
+    @GetMapping("/{id}/payment-verifications")
+    public List<PaymentVerification> getPaymentVerifications(@PathVariable Long id) {
+        return paymentVerificationService.getVerificationsForTransaction(id);
+    }
+
     // === DELIVERY MANAGEMENT ===
     @PutMapping("/{id}/delivery-info")
-    public ResponseEntity<Transaction> updateDeliveryInfo(@PathVariable Long id, 
+    public ResponseEntity<Transaction> updateDeliveryInfo(@PathVariable Long id, @AuthenticationPrincipal Long userId,
                                                         @RequestBody Map<String, Object> request) {
         try {
             String pickupLocation = (String) request.get("pickupLocation");
             LocalDateTime pickupDate = LocalDateTime.parse((String) request.get("pickupDate"));
             String instructions = (String) request.get("instructions");
 
-            Transaction updated = transactionService.updateDeliveryInfo(id, pickupLocation, pickupDate, instructions);
+            Transaction updated = transactionService.updateDeliveryInfo(id, pickupLocation, pickupDate, instructions, userId);
             return ResponseEntity.ok(updated);
+        } catch (TransactionConflictException e) {
+            return refused(e);
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
     @PutMapping("/{id}/confirm-delivered")
-    public ResponseEntity<Transaction> confirmItemDelivered(@PathVariable Long id, @RequestParam Long sellerId) {
+    public ResponseEntity<Transaction> confirmItemDelivered(@PathVariable Long id, @AuthenticationPrincipal Long sellerId) {
         try {
             Transaction updated = transactionService.confirmItemDelivered(id, sellerId);
             return ResponseEntity.ok(updated);
+        } catch (TransactionConflictException e) {
+            return refused(e);
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
     @PutMapping("/{id}/confirm-received")
-    public ResponseEntity<Transaction> confirmItemReceived(@PathVariable Long id, @RequestParam Long buyerId) {
+    public ResponseEntity<Transaction> confirmItemReceived(@PathVariable Long id, @AuthenticationPrincipal Long buyerId) {
         try {
             Transaction updated = transactionService.confirmItemReceived(id, buyerId);
             return ResponseEntity.ok(updated);
+        } catch (TransactionConflictException e) {
+            return refused(e);
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
@@ -151,6 +203,8 @@ public class TransactionController {
         try {
             Transaction completed = transactionService.completeTransaction(id);
             return ResponseEntity.ok(completed);
+        } catch (TransactionConflictException e) {
+            return refused(e);
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
@@ -158,14 +212,15 @@ public class TransactionController {
 
     // === CANCELLATION AND REFUNDS ===
     @PutMapping("/{id}/cancel")
-    public ResponseEntity<Transaction> cancelTransaction(@PathVariable Long id, 
+    public ResponseEntity<Transaction> cancelTransaction(@PathVariable Long id, @AuthenticationPrincipal Long userId,
                                                        @RequestBody Map<String, Object> request) {
         try {
             String reason = (String) request.get("reason");
-            Long userId = Long.valueOf(request.get("userId").toString());
             
             Transaction cancelled = transactionService.cancelTransaction(id, reason, userId);
             return ResponseEntity.ok(cancelled);
+        } catch (TransactionConflictException e) {
+            return refused(e);
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
@@ -178,6 +233,8 @@ public class TransactionController {
             String refundReason = request.get("refundReason");
             Transaction refunded = transactionService.processRefund(id, refundReason);
             return ResponseEntity.ok(refunded);
+        } catch (TransactionConflictException e) {
+            return refused(e);
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
@@ -185,14 +242,16 @@ public class TransactionController {
 
     // === DISPUTE HANDLING ===
     @PutMapping("/{id}/report-issue")
-    public ResponseEntity<Transaction> reportTransactionIssue(@PathVariable Long id, 
+    public ResponseEntity<Transaction> reportTransactionIssue(@PathVariable Long id,
+                                                            @AuthenticationPrincipal Long reporterId,
                                                             @RequestBody Map<String, Object> request) {
         try {
             String description = (String) request.get("description");
-            Long reporterId = Long.valueOf(request.get("reporterId").toString());
             
             Transaction reported = transactionService.reportTransactionIssue(id, description, reporterId);
             return ResponseEntity.ok(reported);
+        } catch (TransactionConflictException e) {
+            return refused(e);
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
@@ -200,42 +259,59 @@ public class TransactionController {
 
     // === TRANSACTION HISTORY ===
     @GetMapping("/buyer/{buyerId}")
-    public List<Transaction> getBuyerTransactionHistory(@PathVariable Long buyerId) {
+    public List<TransactionSummary> getBuyerTransactionHistory(@PathVariable Long buyerId) {
         return transactionService.getBuyerTransactionHistory(buyerId);
     }
 
     @GetMapping("/seller/{sellerId}")
-    public List<Transaction> getSellerTransactionHistory(@PathVariable Long sellerId) {
+    public List<TransactionSummary> getSellerTransactionHistory(@PathVariable Long sellerId) {
         return transactionService.getSellerTransactionHistory(sellerId);
     }
 
-    @GetMapping("/user/{userId}")
-    public List<Transaction> getUserTransactionHistory(@PathVariable Long userId) {
-        return transactionService.getUserTransactionHistory(userId);
-    }
-
-    @GetMapping("/users/{userId}")
-    public List<Transaction> getUserTransactions(@PathVariable Long userId) {
-        return transactionService.getUserTransactionHistory(userId);
+    @GetMapping({"/user/{userId}", "/users/{userId}"})
+    public ResponseEntity<?> getUserTransactionHistory(@PathVariable Long userId,
+                                                       @RequestParam(required = false) String cursor,
+                                                       @RequestParam(defaultValue = "20") int size) {
+        try {
+            return ResponseEntity.ok(transactionService.getUserTransactionHistory(userId, cursor, size));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     @GetMapping("/status/{status}")
-    public List<Transaction> getTransactionsByStatus(@PathVariable TransactionStatus status) {
+    public List<TransactionSummary> getTransactionsByStatus(@PathVariable TransactionStatus status) {
         return transactionService.getTransactionsByStatus(status);
     }
 
+    // Gzipped CSV of all matching transactions, streamed from a database cursor; from/to are inclusive days
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportTransactions(
+            @RequestParam(required = false) TransactionStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "csv") String format) {
+        if (!"csv".equalsIgnoreCase(format)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/gzip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"transactions"
+                        + (status != null ? "-" + status.name().toLowerCase() : "") + ".csv.gz\"")
+                .body(out -> transactionExportService.exportCsv(status, from, to, out));
+    }
+
     @GetMapping("/item/{itemId}")
-    public List<Transaction> getTransactionsByItem(@PathVariable String itemId) {
+    public List<TransactionSummary> getTransactionsByItem(@PathVariable String itemId) {
         return transactionService.getTransactionsByItem(itemId);
     }
 
     // === MESSAGING ===
     @PutMapping("/{id}/buyer-message")
-    public ResponseEntity<Transaction> addBuyerMessage(@PathVariable Long id, 
+    public ResponseEntity<Transaction> addBuyerMessage(@PathVariable Long id, @AuthenticationPrincipal Long buyerId,
                                                      @RequestBody Map<String, Object> request) {
         try {
             String message = (String) request.get("message");
-            Long buyerId = Long.valueOf(request.get("buyerId").toString());
             
             Transaction updated = transactionService.addBuyerMessage(id, message, buyerId);
             return ResponseEntity.ok(updated);
@@ -245,11 +321,10 @@ public class TransactionController {
     }
 
     @PutMapping("/{id}/seller-message")
-    public ResponseEntity<Transaction> addSellerMessage(@PathVariable Long id, 
+    public ResponseEntity<Transaction> addSellerMessage(@PathVariable Long id, @AuthenticationPrincipal Long sellerId,
                                                       @RequestBody Map<String, Object> request) {
         try {
             String message = (String) request.get("message");
-            Long sellerId = Long.valueOf(request.get("sellerId").toString());
             
             Transaction updated = transactionService.addSellerMessage(id, message, sellerId);
             return ResponseEntity.ok(updated);
@@ -267,12 +342,12 @@ public class TransactionController {
     }
 
     @GetMapping("/pending-payments")
-    public List<Transaction> getPendingPayments(@RequestParam(defaultValue = "24") int hoursOld) {
+    public List<TransactionSummary> getPendingPayments(@RequestParam(defaultValue = "24") int hoursOld) {
         return transactionService.getPendingPayments(hoursOld);
     }
 
     @GetMapping("/requiring-pickup")
-    public List<Transaction> getTransactionsRequiringPickup() {
+    public List<TransactionSummary> getTransactionsRequiringPickup() {
         return transactionService.getTransactionsRequiringPickup();
     }
 
@@ -284,7 +359,53 @@ public class TransactionController {
     // === RECEIPT GENERATION ===
     @GetMapping("/{id}/receipt")
     public ResponseEntity<Map<String, String>> generateTransactionReceipt(@PathVariable Long id) {
-        String receipt = transactionService.generateTransactionReceipt(id);
+        String receipt = receiptService.getReceiptData(id)
+                .map(receiptService::renderText)
+                .orElse("Transaction not found");
         return ResponseEntity.ok(Map.of("receipt", receipt));
     }
+
+    // format: text, html or pdf; rendered straight into the response
+    @GetMapping("/{id}/receipt/{format}")
+    public ResponseEntity<StreamingResponseBody> renderTransactionReceipt(@PathVariable Long id,
+                                                                          @PathVariable String format) {
+        try {
+            ReceiptService.Format receiptFormat = ReceiptService.Format.valueOf(format.toUpperCase());
+            return receiptService.getReceiptData(id)
+                    .map(receipt -> ResponseEntity.ok()
+                            .contentType(MediaType.parseMediaType(receiptFormat.getContentType()))
+                            .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"receipt-" + id + "."
+                                    + receiptFormat.getExtension() + "\"")
+                            .body((StreamingResponseBody) out -> receiptService.render(receipt, receiptFormat, out)))
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // All receipts of transactions created in a month (yyyy-MM), zipped while streaming
+    @GetMapping("/receipts/export")
+    public ResponseEntity<StreamingResponseBody> exportReceipts(@RequestParam String month,
+                                                                @RequestParam(defaultValue = "pdf") String format) {
+        try {
+            YearMonth yearMonth = YearMonth.parse(month);
+            ReceiptService.Format receiptFormat = ReceiptService.Format.valueOf(format.toUpperCase());
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType("application/zip"))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"receipts-" + yearMonth + ".zip\"")
+                    .body(out -> receiptService.exportMonth(yearMonth, receiptFormat, out));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // Maps a refused transition to 404, 403 or 409
+    private static <T> ResponseEntity<T> refused(TransactionConflictException e) {
+        HttpStatus status = switch (e.getOutcome()) {
+            case NOT_FOUND -> HttpStatus.NOT_FOUND;
+            case FORBIDDEN -> HttpStatus.FORBIDDEN;
+            case INVALID_STATE -> HttpStatus.CONFLICT;
+        };
+        return ResponseEntity.status(status).build();
+    }
 }
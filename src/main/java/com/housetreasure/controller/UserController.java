@@ -2,15 +2,20 @@ package com.housetreasure.controller;
 
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
+import com.housetreasure.exception.PasswordHashingBusyException;
 import com.housetreasure.model.User;
 import com.housetreasure.model.UserProfile;
+import com.housetreasure.service.UserCache;
 import com.housetreasure.service.UserProfileService;
 import com.housetreasure.service.UserService;
 
@@ -27,21 +32,32 @@ public class UserController {
     }
 
     // === USER REGISTRATION & AUTH ===
+    // Password hashing completes asynchronously; 503 when the hashing queue is full
     
     @PostMapping("/register")
-    public ResponseEntity<User> registerUser(@RequestBody User user) {
-        User registeredUser = userService.registerUser(user);
-        return ResponseEntity.ok(registeredUser);
+    public CompletableFuture<ResponseEntity<User>> registerUser(@RequestBody User user) {
+        try {
+            return userService.registerUser(user)
+                .thenApply(ResponseEntity::ok)
+                .exceptionally(UserController::failed);
+        } catch (PasswordHashingBusyException e) {
+            return CompletableFuture.completedFuture(failed(e));
+        }
     }
 
     @PostMapping("/login")
-    public ResponseEntity<User> loginUser(@RequestBody Map<String, String> credentials) {
+    public CompletableFuture<ResponseEntity<User>> loginUser(@RequestBody Map<String, String> credentials) {
         String email = credentials.get("email");
         String password = credentials.get("password");
         
-        Optional<User> user = userService.loginUser(email, password);
-        return user.map(ResponseEntity::ok)
-                  .orElse(ResponseEntity.status(401).build());
+        try {
+            return userService.loginUser(email, password)
+                .thenApply(user -> user.map(ResponseEntity::ok)
+                                       .orElse(ResponseEntity.status(401).build()))
+                .exceptionally(UserController::failed);
+        } catch (PasswordHashingBusyException e) {
+            return CompletableFuture.completedFuture(failed(e));
+        }
     }
 
     @PostMapping("/verify-email")
@@ -60,24 +76,38 @@ public class UserController {
     }
 
     @PostMapping("/reset-password")
-    public ResponseEntity<String> resetPassword(@RequestBody Map<String, String> request) {
+    public CompletableFuture<ResponseEntity<String>> resetPassword(@RequestBody Map<String, String> request) {
         String token = request.get("token");
         String newPassword = request.get("newPassword");
         
-        boolean reset = userService.resetPassword(token, newPassword);
-        return reset ? ResponseEntity.ok("Password reset successfully")
-                    : ResponseEntity.badRequest().body("Invalid reset token");
+        try {
+            return userService.resetPassword(token, newPassword)
+                .thenApply(reset -> reset ? ResponseEntity.ok("Password reset successfully")
+                                          : ResponseEntity.badRequest().body("Invalid reset token"))
+                .exceptionally(UserController::failed);
+        } catch (PasswordHashingBusyException e) {
+            return CompletableFuture.completedFuture(failed(e));
+        }
     }
 
     @PutMapping("/{id}/change-password")
-    public ResponseEntity<String> changePassword(@PathVariable Long id, 
-                                                @RequestBody Map<String, String> request) {
+    public CompletableFuture<ResponseEntity<String>> changePassword(@PathVariable Long id,
+                                                                   @AuthenticationPrincipal Long userId,
+                                                                   @RequestBody Map<String, String> request) {
+        if (!isSelf(id, userId)) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.FORBIDDEN).build());
+        }
         String oldPassword = request.get("oldPassword");
         String newPassword = request.get("newPassword");
         
-        boolean changed = userService.changePassword(id, oldPassword, newPassword);
-        return changed ? ResponseEntity.ok("Password changed successfully")
-                      : ResponseEntity.badRequest().body("Invalid old password");
+        try {
+            return userService.changePassword(id, oldPassword, newPassword)
+                .thenApply(changed -> changed ? ResponseEntity.ok("Password changed successfully")
+                                              : ResponseEntity.badRequest().body("Invalid old password"))
+                .exceptionally(UserController::failed);
+        } catch (PasswordHashingBusyException e) {
+            return CompletableFuture.completedFuture(failed(e));
+        }
     }
 
     // === USER SEARCH & PROFILE ===
@@ -90,16 +120,17 @@ public class UserController {
     }
 
     @GetMapping("/search")
-    public List<User> searchUsers(@RequestParam(required = false) String name,
-                                 @RequestParam(required = false) String province,
-                                 @RequestParam(required = false) String district) {
+    public Page<User> searchUsers(@RequestParam(required = false) String name,
+                                  @RequestParam(required = false) String province,
+                                  @RequestParam(required = false) String district,
+                                  Pageable pageable) {
         if (name != null) {
-            return userService.searchUsersByName(name);
+            return userService.searchUsersByName(name, pageable);
         }
         if (province != null) {
-            return userService.searchUsersByLocation(province, district);
+            return userService.searchUsersByLocation(province, district, pageable);
         }
-        return List.of();
+        return Page.empty(pageable);
     }
 
     // === USER PROFILE MANAGEMENT ===
@@ -111,16 +142,25 @@ public class UserController {
                                 .orElse(ResponseEntity.notFound().build());
     }
 
+    // Profiles are only changed by their owner
     @PutMapping("/{id}/profile")
-    public ResponseEntity<UserProfile> updateProfile(@PathVariable Long id, 
+    public ResponseEntity<UserProfile> updateProfile(@PathVariable Long id, @AuthenticationPrincipal Long userId,
                                                     @RequestBody UserProfile profile) {
-        UserProfile updated = userProfileService.updateProfile(profile);
-        return ResponseEntity.ok(updated);
+        if (!isSelf(id, userId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        UserProfile updated = userProfileService.updateProfile(id, profile);
+        return updated != null ? ResponseEntity.ok(updated)
+                              : ResponseEntity.notFound().build();
     }
 
     @PutMapping("/{id}/profile-picture")
     public ResponseEntity<UserProfile> updateProfilePicture(@PathVariable Long id,
+                                                           @AuthenticationPrincipal Long userId,
                                                            @RequestBody Map<String, String> request) {
+        if (!isSelf(id, userId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
         String profilePictureUrl = request.get("profilePictureUrl");
         UserProfile updated = userProfileService.updateProfilePicture(id, profilePictureUrl);
         return updated != null ? ResponseEntity.ok(updated) 
@@ -129,7 +169,11 @@ public class UserController {
 
     @PutMapping("/{id}/preferences")
     public ResponseEntity<UserProfile> updatePreferences(@PathVariable Long id,
+                                                        @AuthenticationPrincipal Long userId,
                                                         @RequestBody Map<String, Object> request) {
+        if (!isSelf(id, userId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
         String language = (String) request.get("language");
         Boolean emailNotifications = (Boolean) request.get("emailNotifications");
         
@@ -177,7 +221,13 @@ public class UserController {
         );
     }
 
-    // Legacy endpoints (keep for backward compatibility)
+    // Size, hits, misses and hit ratio of each user cache region on this node
+    @GetMapping("/admin/cache-stats")
+    public Map<String, UserCache.RegionStats> getCacheStats() {
+        return userService.getCacheStats();
+    }
+
+    // Legacy endpoints (keep for backward compatibility); the raw save is admin-only (SecurityConfig)
     @GetMapping
     public List<User> getAllUsers() {
         return userService.getAllUsers();
@@ -187,4 +237,17 @@ public class UserController {
     public User saveUser(@RequestBody User user) {
         return userService.saveUser(user);
     }
+
+    // The path user is the one the access token was issued to
+    private static boolean isSelf(Long id, Long userId) {
+        return userId != null && userId.equals(id);
+    }
+
+    // 503 when hashing was refused, possibly after a first hashing step succeeded; 400 otherwise
+    private static <T> ResponseEntity<T> failed(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        return cause instanceof PasswordHashingBusyException
+            ? ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build()
+            : ResponseEntity.badRequest().build();
+    }
 }
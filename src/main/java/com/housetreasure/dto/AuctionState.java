@@ -0,0 +1,20 @@
+package com.housetreasure.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import com.housetreasure.model.Auction.AuctionStatus;
+
+// Current state of an auction as served to clients and broadcast on /topic/auctions/{id}
+public record AuctionState(
+        Long auctionId,
+        String itemId,
+        Long sellerId,
+        AuctionStatus status,
+        BigDecimal currentAmount,
+        Long currentBidderId,
+        long bidCount,
+        BigDecimal minimumNextBid,
+        LocalDateTime endsAt,
+        Long winningOfferId) {
+}
@@ -0,0 +1,15 @@
+package com.housetreasure.dto;
+
+import java.util.List;
+
+import com.housetreasure.model.Message;
+
+// Ranked search result with the messages immediately around it in the same conversation
+public record MessageSearchHit(
+        Message message,
+        String peerId,
+        int matchedTerms,
+        long score,
+        List<Message> before,
+        List<Message> after) {
+}
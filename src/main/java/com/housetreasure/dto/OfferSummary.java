@@ -0,0 +1,35 @@
+package com.housetreasure.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import com.housetreasure.model.Offer;
+import com.housetreasure.model.Offer.OfferStatus;
+
+// Offer with its parties as ids only, so serializing it never loads the buyer or seller
+public record OfferSummary(
+        Long id,
+        Long buyerId,
+        Long sellerId,
+        String itemId,
+        BigDecimal offeredAmount,
+        String message,
+        OfferStatus status,
+        BigDecimal counterOfferAmount,
+        LocalDateTime expiresAt,
+        LocalDateTime createdAt) {
+
+    public static OfferSummary from(Offer offer) {
+        return new OfferSummary(
+                offer.getId(),
+                offer.getBuyer() != null ? offer.getBuyer().getId() : null,
+                offer.getSeller() != null ? offer.getSeller().getId() : null,
+                offer.getItemId(),
+                offer.getOfferedAmount(),
+                offer.getMessage(),
+                offer.getStatus(),
+                offer.getCounterOfferAmount(),
+                offer.getExpiresAt(),
+                offer.getCreatedAt());
+    }
+}
@@ -0,0 +1,21 @@
+package com.housetreasure.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import com.housetreasure.model.Transaction.PaymentMethod;
+import com.housetreasure.model.Transaction.TransactionStatus;
+
+// Everything a receipt shows, read with the party names in one query
+public record ReceiptData(
+        Long id,
+        String transactionReference,
+        String itemId,
+        BigDecimal amount,
+        PaymentMethod paymentMethod,
+        TransactionStatus status,
+        String buyerUsername,
+        String sellerUsername,
+        LocalDateTime createdAt,
+        LocalDateTime completedAt) {
+}
@@ -0,0 +1,7 @@
+package com.housetreasure.dto;
+
+import java.math.BigDecimal;
+
+// One reporting bucket: a day, month or dimension value with its transaction count and GMV
+public record ReportRow(String key, long transactions, BigDecimal gmv) {
+}
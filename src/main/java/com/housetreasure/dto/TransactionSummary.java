@@ -0,0 +1,23 @@
+package com.housetreasure.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import com.housetreasure.model.Transaction.PaymentMethod;
+import com.housetreasure.model.Transaction.TransactionStatus;
+
+// Transaction with its parties as ids only, for list endpoints that would otherwise load every buyer and seller
+public record TransactionSummary(
+        Long id,
+        Long buyerId,
+        Long sellerId,
+        String itemId,
+        BigDecimal amount,
+        PaymentMethod paymentMethod,
+        String transactionReference,
+        TransactionStatus status,
+        LocalDateTime pickupDate,
+        LocalDateTime createdAt,
+        LocalDateTime completedAt,
+        LocalDateTime cancelledAt) {
+}
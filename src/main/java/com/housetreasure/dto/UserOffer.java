@@ -0,0 +1,5 @@
+package com.housetreasure.dto;
+
+// Offer in a user's combined listing, with the side the user is on (BUYER or SELLER)
+public record UserOffer(String role, OfferSummary offer) {
+}
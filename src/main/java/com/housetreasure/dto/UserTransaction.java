@@ -0,0 +1,5 @@
+package com.housetreasure.dto;
+
+// Transaction in a user's combined history, with the side the user is on (BUYER or SELLER)
+public record UserTransaction(String role, TransactionSummary transaction) {
+}
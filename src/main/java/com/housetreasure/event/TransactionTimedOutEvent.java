@@ -0,0 +1,16 @@
+package com.housetreasure.event;
+
+import java.time.LocalDateTime;
+
+import com.housetreasure.model.Transaction.TransactionStatus;
+
+// Published by StalePaymentSweeper after the change has committed, once per affected transaction
+public record TransactionTimedOutEvent(
+        Long transactionId,
+        String transactionReference,
+        Long buyerId,
+        Long sellerId,
+        TransactionStatus previousStatus,
+        TransactionStatus status,
+        LocalDateTime sweptAt) {
+}
@@ -0,0 +1,8 @@
+package com.housetreasure.exception;
+
+// Thrown when an offer operation loses a race with a concurrent change to the same offer or item
+public class OfferConflictException extends RuntimeException {
+    public OfferConflictException(String message) {
+        super(message);
+    }
+}
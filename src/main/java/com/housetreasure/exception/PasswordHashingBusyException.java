@@ -0,0 +1,8 @@
+package com.housetreasure.exception;
+
+// Thrown when the password hashing queue is full; the request can be retried
+public class PasswordHashingBusyException extends RuntimeException {
+    public PasswordHashingBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.housetreasure.exception;
+
+// Thrown when a payment provider's verification queue is full; the request can be retried
+public class PaymentVerificationBusyException extends RuntimeException {
+    public PaymentVerificationBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,21 @@
+package com.housetreasure.exception;
+
+// Thrown when a transaction status transition does not apply, with the reason it was refused
+public class TransactionConflictException extends RuntimeException {
+    public enum Outcome {
+        NOT_FOUND,      // no transaction with that id
+        FORBIDDEN,      // the actor is not allowed to take this transition
+        INVALID_STATE   // the transaction is not in a status the transition starts from
+    }
+
+    private final Outcome outcome;
+
+    public TransactionConflictException(Outcome outcome, String message) {
+        super(message);
+        this.outcome = outcome;
+    }
+
+    public Outcome getOutcome() {
+        return outcome;
+    }
+}
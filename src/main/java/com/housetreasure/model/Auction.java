@@ -0,0 +1,57 @@
+package com.housetreasure.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+@Entity
+@Table(name = "auctions", indexes = {
+    @Index(name = "idx_auctions_item_status", columnList = "item_id, status"),
+    @Index(name = "idx_auctions_status_ends_at", columnList = "status, ends_at")
+})
+@Getter
+@Setter
+public class Auction {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "item_id", nullable = false)
+    private String itemId;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "seller_id", nullable = false)
+    private User seller;
+
+    @Column(nullable = false, precision = 10, scale = 2)
+    private BigDecimal startingPrice;
+
+    @Column(nullable = false, precision = 10, scale = 2)
+    private BigDecimal minIncrement;
+
+    @Enumerated(EnumType.STRING)
+    private AuctionStatus status = AuctionStatus.OPEN;
+
+    // Best bid so far; written by the bid flusher, not on every bid
+    @Column(precision = 10, scale = 2)
+    private BigDecimal currentAmount;
+    private Long currentBidderId;
+    private Long bidCount = 0L;
+
+    // Offer created for the winner when the auction closed
+    private Long winningOfferId;
+
+    // Timestamps
+    private LocalDateTime createdAt = LocalDateTime.now();
+    private LocalDateTime endsAt;
+    private LocalDateTime closedAt;
+
+    public enum AuctionStatus {
+        OPEN,       // Accepting bids until endsAt
+        CLOSED,     // Ended; the best bid, if any, became an accepted offer
+        CANCELLED   // Closed by the seller before any bid
+    }
+}
@@ -0,0 +1,33 @@
+package com.housetreasure.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+// Accepted auction bid. Written in batches by AuctionService, so the auction and bidder
+// are plain id columns rather than associations.
+@Entity
+@Table(name = "auction_bids", indexes = {
+    @Index(name = "idx_auction_bids_auction_amount", columnList = "auction_id, amount")
+})
+@Getter
+@Setter
+public class AuctionBid {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "auction_id", nullable = false)
+    private Long auctionId;
+
+    @Column(name = "bidder_id", nullable = false)
+    private Long bidderId;
+
+    @Column(nullable = false, precision = 10, scale = 2)
+    private BigDecimal amount;
+
+    private LocalDateTime placedAt;
+}
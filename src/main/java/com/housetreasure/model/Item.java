@@ -5,6 +5,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Document(collection = "items")
@@ -29,6 +30,11 @@ public class Item {
     // Item status
     private String status;
 
+    // Whether the category item count includes this item: false until the outbox relay has
+    // counted it, null for items created before counting moved to the relay (already counted)
+    @Indexed(name = "category_counted", sparse = true)
+    private Boolean categoryCounted;
+
     // Negotiation settings
     private Boolean isNegotiable = true;
 
@@ -179,4 +185,12 @@ public class Item {
         this.location = location;
     }
 
+    public Boolean getCategoryCounted() {
+        return categoryCounted;
+    }
+
+    public void setCategoryCounted(Boolean categoryCounted) {
+        this.categoryCounted = categoryCounted;
+    }
+
 }
@@ -3,9 +3,18 @@ package com.housetreasure.model;
 import java.time.LocalDateTime;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Document(collection = "messages")
+@CompoundIndexes({
+    // Inbox, unread and notification queries
+    @CompoundIndex(name = "receiver_read_sent", def = "{'receiver': 1, 'isRead': 1, 'sentAt': -1}"),
+    // Conversation history and per-conversation unread counts
+    @CompoundIndex(name = "sender_receiver_sent", def = "{'sender': 1, 'receiver': 1, 'sentAt': -1}")
+})
 public class Message {
     @Id
     private String id;
@@ -33,8 +42,14 @@ public class Message {
     // Timestamps
     private LocalDateTime createdAt = LocalDateTime.now();
     private LocalDateTime updatedAt;
+
+    @Indexed
     private LocalDateTime sentAt;
 
+    // Set when retention is enabled; the TTL index removes the message once this passes
+    @Indexed(name = "expire_at_ttl", expireAfterSeconds = 0)
+    private LocalDateTime expireAt;
+
     public Message() {
         this.sentAt = LocalDateTime.now();
         this.status = "SENT";
@@ -160,6 +175,14 @@ public class Message {
         this.sentAt = sentAt;
     }
 
+    public LocalDateTime getExpireAt() {
+        return expireAt;
+    }
+
+    public void setExpireAt(LocalDateTime expireAt) {
+        this.expireAt = expireAt;
+    }
+
     
     // public enum MessageType {
     //     TEXT, IMAGE, VOICE, DOCUMENT, SYSTEM // For system notifications
@@ -0,0 +1,117 @@
+package com.housetreasure.model;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+// Up to messages.storage.bucket-size messages of one conversation sent on the same day.
+// A busy day spills over into additional buckets for the same (conversationId, day).
+@Document(collection = "message_buckets")
+@CompoundIndexes({
+    @CompoundIndex(name = "conversation_day", def = "{'conversationId': 1, 'day': 1}"),
+    @CompoundIndex(name = "conversation_first_sent", def = "{'conversationId': 1, 'firstSentAt': -1}"),
+    // Lookups and updates of a single message by id
+    @CompoundIndex(name = "message_id", def = "{'messages._id': 1}"),
+    // Inbox, unread and notification queries
+    @CompoundIndex(name = "participants_first_sent", def = "{'participants': 1, 'firstSentAt': -1}")
+})
+public class MessageBucket {
+    @Id
+    private String id;
+
+    // Both participant ids, sorted and joined with '|'
+    private String conversationId;
+    private List<String> participants;
+
+    // yyyy-MM-dd of the messages in this bucket
+    private String day;
+
+    private Integer count = 0;
+    private LocalDateTime firstSentAt;
+    private LocalDateTime lastSentAt;
+    private List<Message> messages = new ArrayList<>();
+
+    @Indexed(name = "expire_at_ttl", expireAfterSeconds = 0)
+    private LocalDateTime expireAt;
+
+    public MessageBucket() {
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getConversationId() {
+        return conversationId;
+    }
+
+    public void setConversationId(String conversationId) {
+        this.conversationId = conversationId;
+    }
+
+    public List<String> getParticipants() {
+        return participants;
+    }
+
+    public void setParticipants(List<String> participants) {
+        this.participants = participants;
+    }
+
+    public String getDay() {
+        return day;
+    }
+
+    public void setDay(String day) {
+        this.day = day;
+    }
+
+    public Integer getCount() {
+        return count;
+    }
+
+    public void setCount(Integer count) {
+        this.count = count;
+    }
+
+    public LocalDateTime getFirstSentAt() {
+        return firstSentAt;
+    }
+
+    public void setFirstSentAt(LocalDateTime firstSentAt) {
+        this.firstSentAt = firstSentAt;
+    }
+
+    public LocalDateTime getLastSentAt() {
+        return lastSentAt;
+    }
+
+    public void setLastSentAt(LocalDateTime lastSentAt) {
+        this.lastSentAt = lastSentAt;
+    }
+
+    public List<Message> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<Message> messages) {
+        this.messages = messages;
+    }
+
+    public LocalDateTime getExpireAt() {
+        return expireAt;
+    }
+
+    public void setExpireAt(LocalDateTime expireAt) {
+        this.expireAt = expireAt;
+    }
+}
@@ -0,0 +1,111 @@
+package com.housetreasure.model;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+// Posting in the message search index: one document per (participant, term, message).
+// Both sender and receiver get their own postings so every search stays inside one user's partition.
+@Document(collection = "message_search_terms")
+@CompoundIndexes({
+    @CompoundIndex(name = "user_term_sent", def = "{'userId': 1, 'term': 1, 'sentAt': -1}"),
+    @CompoundIndex(name = "user_peer", def = "{'userId': 1, 'peerId': 1}")
+})
+public class MessageSearchTerm {
+    @Id
+    private String id;
+    private String userId;
+    private String peerId;
+    private String term;
+
+    @Indexed
+    private String messageId;
+
+    private Integer frequency;
+    private LocalDateTime sentAt;
+
+    @Indexed(name = "expire_at_ttl", expireAfterSeconds = 0)
+    private LocalDateTime expireAt;
+
+    public MessageSearchTerm() {
+    }
+
+    public MessageSearchTerm(String userId, String peerId, String term, String messageId,
+                             Integer frequency, LocalDateTime sentAt, LocalDateTime expireAt) {
+        this.userId = userId;
+        this.peerId = peerId;
+        this.term = term;
+        this.messageId = messageId;
+        this.frequency = frequency;
+        this.sentAt = sentAt;
+        this.expireAt = expireAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getPeerId() {
+        return peerId;
+    }
+
+    public void setPeerId(String peerId) {
+        this.peerId = peerId;
+    }
+
+    public String getTerm() {
+        return term;
+    }
+
+    public void setTerm(String term) {
+        this.term = term;
+    }
+
+    public String getMessageId() {
+        return messageId;
+    }
+
+    public void setMessageId(String messageId) {
+        this.messageId = messageId;
+    }
+
+    public Integer getFrequency() {
+        return frequency;
+    }
+
+    public void setFrequency(Integer frequency) {
+        this.frequency = frequency;
+    }
+
+    public LocalDateTime getSentAt() {
+        return sentAt;
+    }
+
+    public void setSentAt(LocalDateTime sentAt) {
+        this.sentAt = sentAt;
+    }
+
+    public LocalDateTime getExpireAt() {
+        return expireAt;
+    }
+
+    public void setExpireAt(LocalDateTime expireAt) {
+        this.expireAt = expireAt;
+    }
+}
@@ -8,7 +8,10 @@ import lombok.Getter;
 import lombok.Setter;
 
 @Entity
-@Table(name = "offers")
+@Table(name = "offers", indexes = {
+    @Index(name = "idx_offers_buyer_created", columnList = "buyer_id, created_at, id"),
+    @Index(name = "idx_offers_seller_created", columnList = "seller_id, created_at, id")
+})
 @Getter
 @Setter
 public class Offer {
@@ -16,12 +19,13 @@ public class Offer {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @ManyToOne
-    @JoinColumn(name = "buyer_id", nullable = false)
+    // Foreign keys are named so OfferService can tell a missing buyer or seller from other violations
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "buyer_id", nullable = false, foreignKey = @ForeignKey(name = "fk_offers_buyer"))
     private User buyer;
 
-    @ManyToOne
-    @JoinColumn(name = "seller_id", nullable = false)
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "seller_id", nullable = false, foreignKey = @ForeignKey(name = "fk_offers_seller"))
     private User seller;
 
     @JoinColumn(name = "item_id", nullable = false)
@@ -36,6 +40,11 @@ public class Offer {
     @Enumerated(EnumType.STRING)
     private OfferStatus status = OfferStatus.PENDING;
 
+    // Optimistic lock; concurrent responses to the same offer fail instead of overwriting each other
+    @Version
+    @Column(columnDefinition = "bigint default 0")
+    private Long version = 0L;
+
     // Offer validity
     private LocalDateTime expiresAt;
     private Boolean isExpired = false;
@@ -51,9 +60,9 @@ public class Offer {
     private LocalDateTime acceptedAt;
     private LocalDateTime rejectedAt;
 
-    // If offer was accepted, link to transaction
-    @OneToOne
-    @JoinColumn(name = "transaction_id")
+    // If offer was accepted, link to transaction. No FK: a partitioned transactions table cannot be referenced by id
+    @OneToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "transaction_id", foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private Transaction transaction;
 
     @PreUpdate
@@ -0,0 +1,43 @@
+package com.housetreasure.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+// Cross-store side effect recorded in the same database transaction as the change that
+// causes it, and applied later by OutboxRelay. dedupeKey makes recording idempotent.
+@Entity
+@Table(name = "outbox_events", indexes = {
+    @Index(name = "idx_outbox_events_pending", columnList = "processed_at, id")
+})
+@Getter
+@Setter
+public class OutboxEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "event_type", nullable = false, length = 64)
+    private String eventType;
+
+    @Column(name = "aggregate_id", nullable = false)
+    private String aggregateId;
+
+    @Column(columnDefinition = "TEXT")
+    private String payload; // JSON
+
+    @Column(name = "dedupe_key", nullable = false, unique = true)
+    private String dedupeKey;
+
+    private Integer attempts = 0;
+    private String lastError;
+
+    // Timestamps
+    private LocalDateTime createdAt = LocalDateTime.now();
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+    @Column(name = "processed_at")
+    private LocalDateTime processedAt;
+}
@@ -0,0 +1,59 @@
+package com.housetreasure.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+// One check of a mobile money payment with a provider. The (provider, providerReference)
+// pair is unique, so repeated verify requests and provider callbacks land on the same row.
+@Entity
+@Table(name = "payment_verifications",
+    uniqueConstraints = @UniqueConstraint(name = "uk_payment_verifications_provider_ref",
+            columnNames = {"provider", "provider_reference"}),
+    indexes = {
+        @Index(name = "idx_payment_verifications_status_updated", columnList = "status, updated_at"),
+        @Index(name = "idx_payment_verifications_transaction", columnList = "transaction_id")
+    })
+@Getter
+@Setter
+public class PaymentVerification {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "transaction_id", nullable = false)
+    private Long transactionId;
+
+    @Column(nullable = false, length = 32)
+    private String provider;
+
+    @Column(name = "provider_reference", nullable = false)
+    private String providerReference;
+
+    // Copied from the transaction so retries and reconciliation need no extra read
+    @Column(nullable = false, precision = 10, scale = 2)
+    private BigDecimal amount;
+    private String payerPhone;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private VerificationStatus status = VerificationStatus.PENDING;
+
+    private Integer attempts = 0;
+    private String lastError;
+
+    // Timestamps
+    private LocalDateTime createdAt = LocalDateTime.now();
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt = LocalDateTime.now();
+    private LocalDateTime completedAt;
+
+    public enum VerificationStatus {
+        PENDING,    // Waiting on the provider, a retry, a callback or reconciliation
+        CONFIRMED,  // Provider confirmed the payment; the transaction was moved to PAYMENT_CONFIRMED
+        FAILED      // Provider declined the payment or the check expired
+    }
+}
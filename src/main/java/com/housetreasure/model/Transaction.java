@@ -3,12 +3,18 @@ package com.housetreasure.model;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
 
 @Entity
-@Table(name = "transactions")
+@Table(name = "transactions", indexes = {
+    @Index(name = "idx_transactions_buyer_created", columnList = "buyer_id, created_at, id"),
+    @Index(name = "idx_transactions_seller_created", columnList = "seller_id, created_at, id")
+})
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 @Getter
 @Setter
 public class Transaction {
@@ -27,6 +33,14 @@ public class Transaction {
     @Column(name = "item_id", nullable = false)
     private String itemId;
 
+    // Category of the item at the time of sale, copied from MongoDB for reporting
+    @Column(name = "category_id")
+    private String categoryId;
+
+    // Seller's province at the time of sale, for reporting; later profile edits do not change it
+    @Column(name = "seller_province")
+    private String sellerProvince;
+
     @Column(nullable = false, precision = 10, scale = 2)
     private BigDecimal amount;
 
@@ -34,7 +48,11 @@ public class Transaction {
     @Enumerated(EnumType.STRING)
     private PaymentMethod paymentMethod; // MTN_MOBILE_MONEY, AIRTEL_MONEY
 
-    private String transactionReference; // Mobile money transaction reference
+    private String transactionReference; // Our reference, assigned at creation and never changed
+
+    // Mobile money reference the buyer reports when sending payment
+    @Column(name = "payment_reference")
+    private String paymentReference;
     private String buyerPhoneNumber; // Phone number used for payment
     private String sellerPhoneNumber; // Phone number receiving payment
 
@@ -0,0 +1,121 @@
+package com.housetreasure.model;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import com.housetreasure.model.Transaction.TransactionStatus;
+
+/**
+ * One allowed step of the transaction state machine: the statuses it may start from, the
+ * status it moves to, who may take it and which timestamp column records it.
+ *
+ * TABLE is the complete list. Transitions are applied by TransactionRepository as a single
+ * UPDATE guarded on these fields, so the check and the write cannot be interleaved with
+ * another request. A null target leaves the status unchanged (used by REFUND).
+ */
+public record TransactionTransition(
+        String name,
+        TransactionStatus target,
+        Set<TransactionStatus> from,
+        Actor actor,
+        String timestampColumn,
+        String condition) {
+
+    public enum Actor {
+        ANY,     // no actor check
+        BUYER,   // actor must be the buyer
+        SELLER,  // actor must be the seller
+        PARTY    // actor must be the buyer or the seller
+    }
+
+    // === TRANSITION TABLE ===
+
+    public static final TransactionTransition SEND_PAYMENT = new TransactionTransition("SEND_PAYMENT",
+            TransactionStatus.PAYMENT_SENT, EnumSet.of(TransactionStatus.PENDING),
+            Actor.BUYER, null, null);
+
+    public static final TransactionTransition CONFIRM_PAYMENT = new TransactionTransition("CONFIRM_PAYMENT",
+            TransactionStatus.PAYMENT_CONFIRMED, EnumSet.of(TransactionStatus.PAYMENT_SENT),
+            Actor.SELLER, "payment_confirmed_at", null);
+
+    public static final TransactionTransition VERIFY_PAYMENT = new TransactionTransition("VERIFY_PAYMENT",
+            TransactionStatus.PAYMENT_CONFIRMED, EnumSet.of(TransactionStatus.PENDING, TransactionStatus.PAYMENT_SENT),
+            Actor.ANY, "payment_confirmed_at", null);
+
+    public static final TransactionTransition ARRANGE_PICKUP = new TransactionTransition("ARRANGE_PICKUP",
+            TransactionStatus.PICKUP_ARRANGED,
+            EnumSet.of(TransactionStatus.PAYMENT_CONFIRMED, TransactionStatus.PICKUP_ARRANGED),
+            Actor.PARTY, null, null);
+
+    public static final TransactionTransition CONFIRM_DELIVERY = new TransactionTransition("CONFIRM_DELIVERY",
+            TransactionStatus.PICKUP_COMPLETED,
+            EnumSet.of(TransactionStatus.PAYMENT_CONFIRMED, TransactionStatus.PICKUP_ARRANGED),
+            Actor.SELLER, "pickup_completed_at", null);
+
+    public static final TransactionTransition CONFIRM_RECEIPT = new TransactionTransition("CONFIRM_RECEIPT",
+            TransactionStatus.COMPLETED,
+            EnumSet.of(TransactionStatus.PICKUP_ARRANGED, TransactionStatus.PICKUP_COMPLETED),
+            Actor.BUYER, "completed_at", null);
+
+    public static final TransactionTransition COMPLETE = new TransactionTransition("COMPLETE",
+            TransactionStatus.COMPLETED, EnumSet.of(TransactionStatus.PICKUP_COMPLETED),
+            Actor.ANY, "completed_at", null);
+
+    public static final TransactionTransition CANCEL = new TransactionTransition("CANCEL",
+            TransactionStatus.CANCELLED,
+            EnumSet.of(TransactionStatus.PENDING, TransactionStatus.PAYMENT_SENT,
+                    TransactionStatus.PAYMENT_CONFIRMED, TransactionStatus.PICKUP_ARRANGED),
+            Actor.PARTY, "cancelled_at", null);
+
+    public static final TransactionTransition REPORT_ISSUE = new TransactionTransition("REPORT_ISSUE",
+            TransactionStatus.DISPUTED,
+            EnumSet.of(TransactionStatus.PAYMENT_SENT, TransactionStatus.PAYMENT_CONFIRMED,
+                    TransactionStatus.PICKUP_ARRANGED, TransactionStatus.PICKUP_COMPLETED,
+                    TransactionStatus.COMPLETED),
+            Actor.PARTY, null, null);
+
+    public static final TransactionTransition REFUND = new TransactionTransition("REFUND",
+            null, EnumSet.of(TransactionStatus.CANCELLED, TransactionStatus.DISPUTED),
+            Actor.ANY, "refunded_at", "is_refunded IS NOT TRUE");
+
+    // Taken by StalePaymentSweeper when payment does not arrive or is not confirmed in time
+    public static final TransactionTransition EXPIRE_UNPAID = new TransactionTransition("EXPIRE_UNPAID",
+            TransactionStatus.CANCELLED, EnumSet.of(TransactionStatus.PENDING),
+            Actor.ANY, "cancelled_at", null);
+
+    public static final TransactionTransition ESCALATE_PAYMENT = new TransactionTransition("ESCALATE_PAYMENT",
+            TransactionStatus.DISPUTED, EnumSet.of(TransactionStatus.PAYMENT_SENT),
+            Actor.ANY, null, null);
+
+    public static final List<TransactionTransition> TABLE = List.of(
+            SEND_PAYMENT, CONFIRM_PAYMENT, VERIFY_PAYMENT, ARRANGE_PICKUP, CONFIRM_DELIVERY,
+            CONFIRM_RECEIPT, COMPLETE, CANCEL, REPORT_ISSUE, REFUND, EXPIRE_UNPAID, ESCALATE_PAYMENT);
+
+    /**
+     * Administrative move to a status, allowed from any status some transition in TABLE
+     * reaches it from. Statuses no transition leads to (PENDING) cannot be set this way.
+     */
+    public static TransactionTransition to(TransactionStatus target) {
+        Set<TransactionStatus> from = EnumSet.noneOf(TransactionStatus.class);
+        String timestampColumn = null;
+        for (TransactionTransition transition : TABLE) {
+            if (transition.target() == target) {
+                from.addAll(transition.from());
+                if (timestampColumn == null) {
+                    timestampColumn = transition.timestampColumn();
+                }
+            }
+        }
+        return new TransactionTransition("SET_" + target, target, from, Actor.ANY, timestampColumn, null);
+    }
+
+    public boolean allowsActor(Long actorId, Long buyerId, Long sellerId) {
+        return switch (actor) {
+            case ANY -> true;
+            case BUYER -> actorId != null && actorId.equals(buyerId);
+            case SELLER -> actorId != null && actorId.equals(sellerId);
+            case PARTY -> actorId != null && (actorId.equals(buyerId) || actorId.equals(sellerId));
+        };
+    }
+}
@@ -2,12 +2,17 @@ package com.housetreasure.model;
 
 import java.time.LocalDateTime;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
 
 @Entity
 @Table(name = "users")
+// Offers and transactions reference users lazily; serializing an unloaded proxy skips Hibernate's internals
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 @Getter
 @Setter
 public class User {
@@ -50,6 +55,13 @@ public class User {
 
     // Account status
     private Boolean isActive = true;
+
+    // Carried in access tokens; null on accounts created before roles existed, read as USER.
+    // Never taken from request bodies: registration and saves assign it server-side
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private Role role = Role.USER;
     private String verificationToken;
 
     // Timestamps
@@ -57,6 +69,11 @@ public class User {
     private LocalDateTime updatedAt;
     private LocalDateTime lastLoginAt;
 
+    public enum Role {
+        USER,
+        ADMIN
+    }
+
 
     @PreUpdate
     protected void onUpdate() {
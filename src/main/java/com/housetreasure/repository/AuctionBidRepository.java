@@ -0,0 +1,13 @@
+package com.housetreasure.repository;
+
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import com.housetreasure.model.AuctionBid;
+
+public interface AuctionBidRepository extends JpaRepository<AuctionBid, Long> {
+    // Find the highest bids of an auction
+    List<AuctionBid> findByAuctionIdOrderByAmountDesc(Long auctionId, Pageable pageable);
+}
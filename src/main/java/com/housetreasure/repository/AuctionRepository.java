@@ -0,0 +1,20 @@
+package com.housetreasure.repository;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import com.housetreasure.model.Auction;
+import com.housetreasure.model.Auction.AuctionStatus;
+
+public interface AuctionRepository extends JpaRepository<Auction, Long> {
+    // Find auctions by status
+    List<Auction> findByStatus(AuctionStatus status);
+
+    // Find the auction of an item in a given status
+    Optional<Auction> findFirstByItemIdAndStatus(String itemId, AuctionStatus status);
+
+    // Find all auctions of an item, newest first
+    List<Auction> findByItemIdOrderByCreatedAtDesc(String itemId);
+}
@@ -7,7 +7,9 @@ import java.util.Optional;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 public interface CategoryRepository extends JpaRepository<Category, Long>  {
     // Find by name
     Optional<Category> findByName(String name);
@@ -21,9 +23,15 @@ public interface CategoryRepository extends JpaRepository<Category, Long>  {
     // Find subcategories
     List<Category> findByParentCategoryId(Long parentId);
     
-    // Search categories by name
-    @Query("SELECT c FROM Category c WHERE LOWER(c.name) LIKE LOWER(CONCAT('%', ?1, '%'))")
-    List<Category> searchByName(String name);
+    String NAME_MATCH = "(lower(c.name) LIKE :pattern OR lower(c.name) % :query)";
+
+    // Search active categories: substring or trigram-similar name, best match first. query is
+    // lower-cased and pattern is its escaped "%query%"; both are served by ix_categories_name_trgm.
+    @Query(value = "SELECT c.* FROM categories c WHERE c.is_active AND " + NAME_MATCH +
+                   " ORDER BY similarity(lower(c.name), :query) DESC, c.id",
+           countQuery = "SELECT COUNT(*) FROM categories c WHERE c.is_active AND " + NAME_MATCH,
+           nativeQuery = true)
+    Page<Category> searchByName(@Param("query") String query, @Param("pattern") String pattern, Pageable pageable);
     
     // Find categories with item count greater than
     @Query("SELECT c FROM Category c WHERE c.itemCount > ?1")
@@ -35,4 +43,9 @@ public interface CategoryRepository extends JpaRepository<Category, Long>  {
     
     // Count active categories
     long countByIsActive(Boolean isActive);
+
+    // Adjust the item count in place; joins the caller's transaction
+    @Modifying
+    @Query("UPDATE Category c SET c.itemCount = COALESCE(c.itemCount, 0) + :delta WHERE c.id = :id")
+    int adjustItemCount(@Param("id") Long id, @Param("delta") int delta);
 }
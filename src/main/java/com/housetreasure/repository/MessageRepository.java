@@ -19,6 +19,13 @@ public interface MessageRepository extends MongoRepository<Message, String> {
            "{'sender': ?1, 'receiver': ?0}" +
            "]}")
     List<Message> findConversationBetweenUsers(String user1, String user2);
+
+    // One page of a conversation sent before a given time (sort and size come from the pageable)
+    @Query("{'$or': [" +
+           "{'sender': ?0, 'receiver': ?1}, " +
+           "{'sender': ?1, 'receiver': ?0}" +
+           "], 'sentAt': {'$lt': ?2}}")
+    List<Message> findConversationBefore(String user1, String user2, LocalDateTime before, Pageable pageable);
     
     // Find all conversations for a user (as sender or receiver)
     @Query("{'$or': [{'sender': ?0}, {'receiver': ?0}]}")
@@ -26,6 +33,9 @@ public interface MessageRepository extends MongoRepository<Message, String> {
     
     // Find unread messages for a user
     List<Message> findByReceiverAndIsRead(String receiver, Boolean isRead);
+
+    // Newest received messages by read state (top-N, served by the receiver_read_sent index)
+    List<Message> findByReceiverAndIsReadOrderBySentAtDesc(String receiver, Boolean isRead, Pageable pageable);
     
     // Find messages by item
     List<Message> findByItemOrderBySentAtAsc(String itemId);
@@ -52,6 +62,9 @@ public interface MessageRepository extends MongoRepository<Message, String> {
     
     // Count unread messages for user
     long countByReceiverAndIsRead(String receiver, Boolean isRead);
+
+    // Count unread messages in one conversation
+    long countBySenderAndReceiverAndIsRead(String sender, String receiver, Boolean isRead);
     
     // Find conversations by item
     @Query("{'item': ?0}")
@@ -59,6 +72,13 @@ public interface MessageRepository extends MongoRepository<Message, String> {
     
     // Delete conversation between users
     void deleteBySenderAndReceiver(String sender, String receiver);
+
+    // Delete both directions of a conversation with a single deleteMany
+    @Query(value = "{'$or': [" +
+           "{'sender': ?0, 'receiver': ?1}, " +
+           "{'sender': ?1, 'receiver': ?0}" +
+           "]}", delete = true)
+    long deleteConversationBetweenUsers(String user1, String user2);
     
     // Find messages by media type
     List<Message> findByMediaTypeAndSender(String mediaType, String sender);
@@ -1,56 +1,125 @@
 package com.housetreasure.repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.housetreasure.dto.OfferSummary;
 import com.housetreasure.model.Offer;
 import com.housetreasure.model.Offer.OfferStatus;
 
 public interface OfferRepository extends JpaRepository<Offer, Long> {
+    // Constructor projection shared by the list queries; parties are read as FK ids, so no user rows are joined
+    String SUMMARY_SELECT = "SELECT new com.housetreasure.dto.OfferSummary(o.id, o.buyer.id, o.seller.id, " +
+            "o.itemId, o.offeredAmount, o.message, o.status, o.counterOfferAmount, o.expiresAt, o.createdAt) " +
+            "FROM Offer o ";
+
+    // All offers, newest first
+    @Query(SUMMARY_SELECT + "ORDER BY o.createdAt DESC")
+    List<OfferSummary> findAllSummaries();
+
     // Find offers by item
-    List<Offer> findByItemIdOrderByCreatedAtDesc(String itemId);
+    @Query(SUMMARY_SELECT + "WHERE o.itemId = :itemId ORDER BY o.createdAt DESC")
+    List<OfferSummary> findSummariesByItemId(@Param("itemId") String itemId);
     
     // Find offers made by a buyer
-    List<Offer> findByBuyerIdOrderByCreatedAtDesc(Long buyerId);
+    @Query(SUMMARY_SELECT + "WHERE o.buyer.id = :buyerId ORDER BY o.createdAt DESC")
+    List<OfferSummary> findSummariesByBuyerId(@Param("buyerId") Long buyerId);
     
     // Find offers received by a seller
-    List<Offer> findBySellerIdOrderByCreatedAtDesc(Long sellerId);
+    @Query(SUMMARY_SELECT + "WHERE o.seller.id = :sellerId ORDER BY o.createdAt DESC")
+    List<OfferSummary> findSummariesBySellerId(@Param("sellerId") Long sellerId);
     
+    // Offers where the user is buyer or seller, newest first, after a keyset position
+    @Query(SUMMARY_SELECT + "WHERE (o.buyer.id = :userId OR o.seller.id = :userId) " +
+           "AND (o.createdAt < :createdAt OR (o.createdAt = :createdAt AND o.id < :id)) " +
+           "ORDER BY o.createdAt DESC, o.id DESC")
+    List<OfferSummary> findUserOffersBefore(@Param("userId") Long userId, @Param("createdAt") LocalDateTime createdAt,
+                                            @Param("id") Long id, Pageable pageable);
+
     // Find offers by status
-    List<Offer> findByStatus(OfferStatus status);
+    @Query(SUMMARY_SELECT + "WHERE o.status = :status ORDER BY o.createdAt DESC")
+    List<OfferSummary> findSummariesByStatus(@Param("status") OfferStatus status);
     
     // Find offers by buyer and status
-    List<Offer> findByBuyerIdAndStatus(Long buyerId, OfferStatus status);
+    @Query(SUMMARY_SELECT + "WHERE o.buyer.id = :buyerId AND o.status = :status ORDER BY o.createdAt DESC")
+    List<OfferSummary> findSummariesByBuyerIdAndStatus(@Param("buyerId") Long buyerId,
+                                                       @Param("status") OfferStatus status);
     
     // Find offers by seller and status
-    List<Offer> findBySellerIdAndStatus(Long sellerId, OfferStatus status);
+    @Query(SUMMARY_SELECT + "WHERE o.seller.id = :sellerId AND o.status = :status ORDER BY o.createdAt DESC")
+    List<OfferSummary> findSummariesBySellerIdAndStatus(@Param("sellerId") Long sellerId,
+                                                        @Param("status") OfferStatus status);
     
     // Find offers by item and status
-    List<Offer> findByItemIdAndStatus(String itemId, OfferStatus status);
-    
-    // Find pending offers for a specific item
-    List<Offer> findByItemIdAndStatusOrderByCreatedAtDesc(String itemId, OfferStatus status);
+    @Query(SUMMARY_SELECT + "WHERE o.itemId = :itemId AND o.status = :status ORDER BY o.createdAt DESC")
+    List<OfferSummary> findSummariesByItemIdAndStatus(@Param("itemId") String itemId,
+                                                      @Param("status") OfferStatus status);
+
+    // Find offers by item in any of the given statuses
+    @Query(SUMMARY_SELECT + "WHERE o.itemId = :itemId AND o.status IN :statuses")
+    List<OfferSummary> findSummariesByItemIdAndStatusIn(@Param("itemId") String itemId,
+                                                        @Param("statuses") Collection<OfferStatus> statuses);
 
     // Find expired offers
     @Query("SELECT o FROM Offer o WHERE o.expiresAt < ?1 AND o.status = 'PENDING'")
     List<Offer> findExpiredOffers(LocalDateTime now);
+
+    // Id and deadline of every offer that can still expire, for seeding the expiry scheduler
+    @Query("SELECT o.id, o.expiresAt FROM Offer o WHERE o.status = :status AND o.expiresAt IS NOT NULL")
+    List<Object[]> findExpiryDeadlines(@Param("status") OfferStatus status);
+
+    // Expire the given offers in one statement, skipping any that are no longer pending. The version
+    // bump makes a concurrent accept or counter that read the offer as pending fail its optimistic lock.
+    @Modifying
+    @Transactional
+    @Query("UPDATE Offer o SET o.status = :expired, o.isExpired = true, o.version = o.version + 1 " +
+           "WHERE o.id IN :ids AND o.status = :pending")
+    int expireOffers(@Param("ids") Collection<Long> ids, @Param("pending") OfferStatus pending,
+                     @Param("expired") OfferStatus expired);
+
+    // Reject the other active offers on an item once one of them is accepted
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Offer o SET o.status = :rejected, o.rejectedAt = :now, o.respondedAt = :now, " +
+           "o.version = o.version + 1 " +
+           "WHERE o.itemId = :itemId AND o.id <> :acceptedId AND o.status IN :active")
+    int rejectCompetingOffers(@Param("itemId") String itemId, @Param("acceptedId") Long acceptedId,
+                              @Param("active") Collection<OfferStatus> active,
+                              @Param("rejected") OfferStatus rejected, @Param("now") LocalDateTime now);
+
+    // Expire every pending offer whose deadline has passed in one statement
+    @Modifying
+    @Transactional
+    @Query("UPDATE Offer o SET o.status = :expired, o.isExpired = true, o.version = o.version + 1 " +
+           "WHERE o.status = :pending AND o.expiresAt < :now")
+    int expireOffersDueBefore(@Param("now") LocalDateTime now, @Param("pending") OfferStatus pending,
+                              @Param("expired") OfferStatus expired);
     
+    // Expire the accepted offers behind transactions that timed out unpaid; the version bump makes
+    // writes still holding the accepted row fail their optimistic lock
+    @Modifying
+    @Query("UPDATE Offer o SET o.status = :expired, o.isExpired = true, o.version = o.version + 1 " +
+           "WHERE o.transaction.id IN :transactionIds AND o.status = :accepted")
+    int expireAcceptedOffers(@Param("transactionIds") List<Long> transactionIds, @Param("accepted") OfferStatus accepted,
+                             @Param("expired") OfferStatus expired);
+
     // Find offers between buyer and seller for specific item
-    List<Offer> findByBuyerIdAndSellerIdAndItemIdOrderByCreatedAtDesc(Long buyerId, Long sellerId, String itemId);
+    @Query(SUMMARY_SELECT + "WHERE o.buyer.id = :buyerId AND o.seller.id = :sellerId AND o.itemId = :itemId " +
+           "ORDER BY o.createdAt DESC")
+    List<OfferSummary> findHistorySummaries(@Param("buyerId") Long buyerId, @Param("sellerId") Long sellerId,
+                                            @Param("itemId") String itemId);
     
     // Check if buyer has pending offer for item
     Optional<Offer> findByBuyerIdAndItemIdAndStatus(Long buyerId, String itemId, OfferStatus status);
     
-    // Get highest offer for an item
-    @Query("SELECT o FROM Offer o WHERE o.itemId = ?1 AND o.status IN ('PENDING', 'COUNTERED') ORDER BY o.offeredAmount DESC")
-    Page<Offer> findHighestOfferForItem(String itemId, Pageable pageable);
-    
     // Count offers by status
     long countByStatus(OfferStatus status);
     
@@ -58,6 +127,6 @@ public interface OfferRepository extends JpaRepository<Offer, Long> {
     long countByItemId(String itemId);
     
     // Find recent offers (last 30 days)
-    @Query("SELECT o FROM Offer o WHERE o.createdAt >= ?1 ORDER BY o.createdAt DESC")
-    List<Offer> findRecentOffers(LocalDateTime since);
+    @Query(SUMMARY_SELECT + "WHERE o.createdAt >= :since ORDER BY o.createdAt DESC")
+    List<OfferSummary> findRecentSummaries(@Param("since") LocalDateTime since);
 }
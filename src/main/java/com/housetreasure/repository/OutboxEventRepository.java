@@ -0,0 +1,46 @@
+package com.housetreasure.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.housetreasure.model.OutboxEvent;
+
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+    // Record an event unless one with the same dedupe key exists; joins the caller's transaction
+    @Modifying
+    @Query(value = "INSERT INTO outbox_events (event_type, aggregate_id, payload, dedupe_key, attempts, created_at) " +
+                   "VALUES (:eventType, :aggregateId, :payload, :dedupeKey, 0, :now) " +
+                   "ON CONFLICT (dedupe_key) DO NOTHING", nativeQuery = true)
+    int record(@Param("eventType") String eventType, @Param("aggregateId") String aggregateId,
+               @Param("payload") String payload, @Param("dedupeKey") String dedupeKey,
+               @Param("now") LocalDateTime now);
+
+    // Next due events, locked for this relay; rows locked by another node are skipped
+    @Query(value = "SELECT * FROM outbox_events WHERE processed_at IS NULL AND attempts < :maxAttempts " +
+                   "AND (next_attempt_at IS NULL OR next_attempt_at <= :now) " +
+                   "ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<OutboxEvent> lockDue(@Param("now") LocalDateTime now, @Param("maxAttempts") int maxAttempts,
+                              @Param("limit") int limit);
+
+    // Mark a batch of events as applied
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.processedAt = :now WHERE e.id IN :ids")
+    int markProcessed(@Param("ids") List<Long> ids, @Param("now") LocalDateTime now);
+
+    // Record a failed attempt and push the next one back
+    @Modifying
+    @Transactional
+    @Query("UPDATE OutboxEvent e SET e.attempts = e.attempts + 1, e.lastError = :error, " +
+           "e.nextAttemptAt = :nextAttemptAt WHERE e.id = :id")
+    int recordFailure(@Param("id") Long id, @Param("error") String error,
+                      @Param("nextAttemptAt") LocalDateTime nextAttemptAt);
+
+    // Events not yet applied
+    long countByProcessedAtIsNull();
+}
@@ -0,0 +1,50 @@
+package com.housetreasure.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.housetreasure.model.PaymentVerification;
+import com.housetreasure.model.PaymentVerification.VerificationStatus;
+
+public interface PaymentVerificationRepository extends JpaRepository<PaymentVerification, Long> {
+    // Find the verification of a provider reference
+    Optional<PaymentVerification> findByProviderAndProviderReference(String provider, String providerReference);
+
+    // Find verifications of a transaction, newest first
+    List<PaymentVerification> findByTransactionIdOrderByCreatedAtDesc(Long transactionId);
+
+    // Verifications in a status that have not been touched since the cutoff, oldest first
+    @Query("SELECT v FROM PaymentVerification v WHERE v.status = :status AND v.updatedAt < :cutoff " +
+           "ORDER BY v.updatedAt ASC")
+    List<PaymentVerification> findStale(@Param("status") VerificationStatus status,
+                                        @Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+
+    // Record a provider attempt that did not settle the verification
+    @Modifying
+    @Transactional
+    @Query("UPDATE PaymentVerification v SET v.attempts = v.attempts + 1, v.lastError = :error, " +
+           "v.updatedAt = :now WHERE v.id = :id")
+    int recordAttempt(@Param("id") Long id, @Param("error") String error, @Param("now") LocalDateTime now);
+
+    // Mark a verification as being worked on without counting an attempt
+    @Modifying
+    @Transactional
+    @Query("UPDATE PaymentVerification v SET v.updatedAt = :now WHERE v.id = :id")
+    int touch(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    // Settle a verification, only if it is still in the expected status
+    @Modifying
+    @Query("UPDATE PaymentVerification v SET v.status = :status, v.lastError = :error, " +
+           "v.completedAt = :now, v.updatedAt = :now WHERE v.id = :id AND v.status = :expected")
+    int settle(@Param("id") Long id, @Param("expected") VerificationStatus expected,
+               @Param("status") VerificationStatus status, @Param("error") String error,
+               @Param("now") LocalDateTime now);
+}
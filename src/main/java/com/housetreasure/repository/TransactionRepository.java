@@ -3,26 +3,73 @@ package com.housetreasure.repository;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import com.housetreasure.dto.ReceiptData;
+import com.housetreasure.dto.TransactionSummary;
 import com.housetreasure.model.Transaction;
 import com.housetreasure.model.Transaction.PaymentMethod;
 import com.housetreasure.model.Transaction.TransactionStatus;
 
-public interface TransactionRepository extends JpaRepository<Transaction, Long> {
+import jakarta.persistence.QueryHint;
+
+public interface TransactionRepository extends JpaRepository<Transaction, Long>, TransactionTransitionRepository {
+    // Constructor projection shared by the list queries; parties are read as FK ids, so no user rows are joined
+    String SUMMARY_SELECT = "SELECT new com.housetreasure.dto.TransactionSummary(t.id, t.buyer.id, t.seller.id, " +
+            "t.itemId, t.amount, t.paymentMethod, t.transactionReference, t.status, t.pickupDate, " +
+            "t.createdAt, t.completedAt, t.cancelledAt) FROM Transaction t ";
+
+    // All transactions, newest first
+    @Query(SUMMARY_SELECT + "ORDER BY t.createdAt DESC")
+    List<TransactionSummary> findAllSummaries();
+
     // Find transactions by buyer
-    List<Transaction> findByBuyerIdOrderByCreatedAtDesc(Long buyerId);
+    @Query(SUMMARY_SELECT + "WHERE t.buyer.id = :buyerId ORDER BY t.createdAt DESC")
+    List<TransactionSummary> findSummariesByBuyerId(@Param("buyerId") Long buyerId);
     
     // Find transactions by seller
-    List<Transaction> findBySellerIdOrderByCreatedAtDesc(Long sellerId);
+    @Query(SUMMARY_SELECT + "WHERE t.seller.id = :sellerId ORDER BY t.createdAt DESC")
+    List<TransactionSummary> findSummariesBySellerId(@Param("sellerId") Long sellerId);
     
+    // Transactions where the user is buyer or seller, newest first, after a keyset position
+    @Query(SUMMARY_SELECT + "WHERE (t.buyer.id = :userId OR t.seller.id = :userId) " +
+           "AND (t.createdAt < :createdAt OR (t.createdAt = :createdAt AND t.id < :id)) " +
+           "ORDER BY t.createdAt DESC, t.id DESC")
+    List<TransactionSummary> findUserTransactionsBefore(@Param("userId") Long userId,
+                                                        @Param("createdAt") LocalDateTime createdAt,
+                                                        @Param("id") Long id, Pageable pageable);
+
     // Find transactions by item
-    List<Transaction> findByItemIdOrderByCreatedAtDesc(String itemId);
+    @Query(SUMMARY_SELECT + "WHERE t.itemId = :itemId ORDER BY t.createdAt DESC")
+    List<TransactionSummary> findSummariesByItemId(@Param("itemId") String itemId);
     
     // Find transactions by status
-    List<Transaction> findByStatus(TransactionStatus status);
+    @Query(SUMMARY_SELECT + "WHERE t.status = :status ORDER BY t.createdAt DESC")
+    List<TransactionSummary> findSummariesByStatus(@Param("status") TransactionStatus status);
+
+    // Status and parties of a transaction, to explain why a transition did not apply
+    @Query("SELECT t.status, t.buyer.id, t.seller.id FROM Transaction t WHERE t.id = :id")
+    List<Object[]> findTransitionState(@Param("id") Long id);
+
+    // Receipt fields with both party names, joined in the same query
+    String RECEIPT_SELECT = "SELECT new com.housetreasure.dto.ReceiptData(t.id, t.transactionReference, t.itemId, " +
+            "t.amount, t.paymentMethod, t.status, b.username, s.username, t.createdAt, t.completedAt) " +
+            "FROM Transaction t JOIN t.buyer b JOIN t.seller s ";
+
+    @Query(RECEIPT_SELECT + "WHERE t.id = :id")
+    Optional<ReceiptData> findReceiptById(@Param("id") Long id);
+
+    // Receipts created in [from, to), read in fetch-size chunks; the caller must hold a transaction and close the stream
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "200"))
+    @Query(RECEIPT_SELECT + "WHERE t.createdAt >= :from AND t.createdAt < :to ORDER BY t.createdAt, t.id")
+    Stream<ReceiptData> streamReceipts(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
     
     // Find transactions by payment method
     List<Transaction> findByPaymentMethod(PaymentMethod paymentMethod);
@@ -40,15 +87,22 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
     List<Transaction> findByCreatedAtBetween(LocalDateTime start, LocalDateTime end);
     
     // Find pending payments
-    @Query("SELECT t FROM Transaction t WHERE t.status IN ('PENDING', 'PAYMENT_SENT') AND t.createdAt < ?1")
-    List<Transaction> findPendingPayments(LocalDateTime cutoffTime);
+    // Bounded on both sides so a partitioned table is pruned to the months in [since, cutoffTime)
+    @Query(SUMMARY_SELECT + "WHERE t.status IN ('PENDING', 'PAYMENT_SENT') " +
+           "AND t.createdAt >= :since AND t.createdAt < :cutoffTime")
+    List<TransactionSummary> findPendingPayments(@Param("since") LocalDateTime since,
+                                                 @Param("cutoffTime") LocalDateTime cutoffTime);
+
+    // Lowest and highest id among transactions in a status created before the cutoff, bounds for chunked sweeps
+    @Query("SELECT MIN(t.id), MAX(t.id) FROM Transaction t WHERE t.status = :status AND t.createdAt < :cutoff")
+    List<Object[]> findIdRange(@Param("status") TransactionStatus status, @Param("cutoff") LocalDateTime cutoff);
     
     // Find disputed transactions
     List<Transaction> findByStatusAndCreatedAtBetween(TransactionStatus status, LocalDateTime start, LocalDateTime end);
     
     // Find transactions requiring pickup
-    @Query("SELECT t FROM Transaction t WHERE t.status = 'PAYMENT_CONFIRMED' AND t.pickupDate IS NOT NULL")
-    List<Transaction> findTransactionsRequiringPickup();
+    @Query(SUMMARY_SELECT + "WHERE t.status = 'PAYMENT_CONFIRMED' AND t.pickupDate IS NOT NULL")
+    List<TransactionSummary> findTransactionsRequiringPickup();
     
     // Count transactions by status
     long countByStatus(TransactionStatus status);
@@ -58,9 +112,4 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
     
     // Find transactions by phone number
     List<Transaction> findByBuyerPhoneNumberOrSellerPhoneNumber(String buyerPhone, String sellerPhone);
-    
-    // Monthly transaction summary
-    @Query("SELECT EXTRACT(MONTH FROM t.createdAt) as month, COUNT(t) as count, SUM(t.amount) as total " +
-           "FROM Transaction t WHERE EXTRACT(YEAR FROM t.createdAt) = ?1 GROUP BY EXTRACT(MONTH FROM t.createdAt)")
-    List<Object[]> getMonthlyTransactionSummary(int year);
 }
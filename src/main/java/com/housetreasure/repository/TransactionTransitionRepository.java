@@ -0,0 +1,30 @@
+package com.housetreasure.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import com.housetreasure.model.Transaction;
+import com.housetreasure.model.TransactionTransition;
+
+// Single-statement status transitions, implemented in TransactionTransitionRepositoryImpl
+public interface TransactionTransitionRepository {
+    /**
+     * Applies the transition with one UPDATE ... RETURNING guarded on the current status,
+     * the actor and the transition's extra condition. Columns in changes are set in the
+     * same statement, together with the move between status buckets in
+     * transaction_daily_rollups. Empty when no row matched.
+     */
+    Optional<Transaction> applyTransition(Long transactionId, TransactionTransition transition, Long actorId,
+                                          Map<String, Object> changes, LocalDateTime now);
+
+    /**
+     * Applies an actor-less transition to every matching transaction with an id in
+     * [fromId, toId] created before createdBefore, in one statement. Rows locked by
+     * others are skipped. Returns the rows as written.
+     */
+    List<Transaction> applyTransitionToRange(TransactionTransition transition, long fromId, long toId,
+                                             LocalDateTime createdBefore, Map<String, Object> changes,
+                                             LocalDateTime now);
+}
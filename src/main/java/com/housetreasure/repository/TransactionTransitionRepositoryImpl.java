@@ -0,0 +1,135 @@
+package com.housetreasure.repository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import com.housetreasure.model.Transaction;
+import com.housetreasure.model.TransactionTransition;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+
+/**
+ * Column names in transitions and changes come from TransactionTransition and
+ * TransactionService, never from request input, so they are written into the SQL directly.
+ * The returned entity is the row as written; callers apply transitions before loading the
+ * same transaction in their persistence context. The daily reporting rollups are adjusted
+ * by the same statement.
+ */
+public class TransactionTransitionRepositoryImpl implements TransactionTransitionRepository {
+    // Moves the transactions' counts and amounts from their previous status buckets in transaction_daily_rollups
+    // to the new ones; grouped so a multi-row update touches each bucket once
+    private static final String MOVE_ROLLUP =
+            "rollup AS (INSERT INTO transaction_daily_rollups " +
+            "(day, status, payment_method, province, category_id, tx_count, gmv) " +
+            "SELECT CAST(upd.created_at AS date), d.status, COALESCE(upd.payment_method, ''), " +
+            "COALESCE(upd.seller_province, ''), COALESCE(upd.category_id, ''), SUM(d.tx_count), SUM(d.gmv) " +
+            "FROM upd " +
+            "CROSS JOIN LATERAL (VALUES (upd.previous_status, -1, -upd.amount), (upd.status, 1, upd.amount)) " +
+            "AS d(status, tx_count, gmv) " +
+            "WHERE upd.previous_status <> upd.status " +
+            "GROUP BY 1, 2, 3, 4, 5 " +
+            "ON CONFLICT (day, status, payment_method, province, category_id) DO UPDATE SET " +
+            "tx_count = transaction_daily_rollups.tx_count + EXCLUDED.tx_count, " +
+            "gmv = transaction_daily_rollups.gmv + EXCLUDED.gmv) ";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Optional<Transaction> applyTransition(Long transactionId, TransactionTransition transition, Long actorId,
+                                                 Map<String, Object> changes, LocalDateTime now) {
+        if (transition.from().isEmpty()
+                || (transition.actor() != TransactionTransition.Actor.ANY && actorId == null)) {
+            return Optional.empty();
+        }
+
+        String actorCheck = switch (transition.actor()) {
+            case BUYER -> " AND buyer_id = :actorId";
+            case SELLER -> " AND seller_id = :actorId";
+            case PARTY -> " AND (buyer_id = :actorId OR seller_id = :actorId)";
+            case ANY -> "";
+        };
+        Query query = transitionQuery(transition, changes, now,
+                "id = :id FOR UPDATE", actorCheck)
+                .setParameter("id", transactionId);
+        if (transition.actor() != TransactionTransition.Actor.ANY) {
+            query.setParameter("actorId", actorId);
+        }
+
+        List<?> rows = query.getResultList();
+        return rows.isEmpty() ? Optional.empty() : Optional.of((Transaction) rows.get(0));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Transaction> applyTransitionToRange(TransactionTransition transition, long fromId, long toId,
+                                                    LocalDateTime createdBefore, Map<String, Object> changes,
+                                                    LocalDateTime now) {
+        if (transition.from().isEmpty() || transition.actor() != TransactionTransition.Actor.ANY) {
+            return List.of();
+        }
+
+        // Rows locked by a concurrent request are skipped and left for the next sweep
+        Query query = transitionQuery(transition, changes, now,
+                "id BETWEEN :fromId AND :toId AND status IN (:from) AND created_at < :createdBefore " +
+                "FOR UPDATE SKIP LOCKED", "")
+                .setParameter("fromId", fromId)
+                .setParameter("toId", toId)
+                .setParameter("createdBefore", createdBefore);
+        return query.getResultList();
+    }
+
+    // prev locks the rows and keeps their status, so upd can change them and rollup move them in one statement
+    private Query transitionQuery(TransactionTransition transition, Map<String, Object> changes,
+                                  LocalDateTime now, String prevWhere, String extraGuard) {
+        List<String> assignments = new ArrayList<>();
+        if (transition.target() != null) {
+            assignments.add("status = :target");
+        }
+        if (transition.timestampColumn() != null) {
+            assignments.add(transition.timestampColumn() + " = :now");
+        }
+        int index = 0;
+        for (Map.Entry<String, Object> change : changes.entrySet()) {
+            // Untyped null binds badly on PostgreSQL, so nulls are written as literals
+            assignments.add(change.getKey() + " = " + (change.getValue() == null ? "NULL" : ":c" + index));
+            index++;
+        }
+
+        StringBuilder sql = new StringBuilder()
+                .append("WITH prev AS (SELECT id AS prev_id, status AS previous_status FROM transactions WHERE ")
+                .append(prevWhere).append("), ")
+                .append("upd AS (UPDATE transactions SET ")
+                .append(String.join(", ", assignments))
+                .append(" FROM prev WHERE id = prev_id AND status IN (:from)")
+                .append(extraGuard);
+        if (transition.condition() != null) {
+            sql.append(" AND ").append(transition.condition());
+        }
+        sql.append(" RETURNING transactions.*, previous_status), ")
+                .append(MOVE_ROLLUP)
+                .append("SELECT * FROM upd");
+
+        Query query = entityManager.createNativeQuery(sql.toString(), Transaction.class)
+                .setParameter("from", transition.from().stream().map(Enum::name).toList());
+        if (transition.target() != null) {
+            query.setParameter("target", transition.target().name());
+        }
+        if (transition.timestampColumn() != null) {
+            query.setParameter("now", now);
+        }
+        index = 0;
+        for (Object value : changes.values()) {
+            if (value != null) {
+                query.setParameter("c" + index, value);
+            }
+            index++;
+        }
+        return query;
+    }
+}
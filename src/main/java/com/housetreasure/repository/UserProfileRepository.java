@@ -3,10 +3,25 @@ package com.housetreasure.repository;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.housetreasure.model.UserProfile;
 
 public interface UserProfileRepository extends JpaRepository<UserProfile, Long> {
     Optional<UserProfile> findByUserId(Long userId);
     Optional<UserProfile> findByUser_Email(String email);
+
+    // Count a completed sale for the seller; joins the caller's transaction
+    @Modifying
+    @Query("UPDATE UserProfile p SET p.itemsSold = COALESCE(p.itemsSold, 0) + 1, " +
+           "p.totalTransactions = COALESCE(p.totalTransactions, 0) + 1 WHERE p.user.id = :userId")
+    int recordSale(@Param("userId") Long userId);
+
+    // Count a completed purchase for the buyer; joins the caller's transaction
+    @Modifying
+    @Query("UPDATE UserProfile p SET p.itemsPurchased = COALESCE(p.itemsPurchased, 0) + 1, " +
+           "p.totalTransactions = COALESCE(p.totalTransactions, 0) + 1 WHERE p.user.id = :userId")
+    int recordPurchase(@Param("userId") Long userId);
 }
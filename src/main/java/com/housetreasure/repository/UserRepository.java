@@ -3,9 +3,13 @@ package com.housetreasure.repository;
 import java.time.LocalDateTime;
 import java.util.List;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.housetreasure.model.User;
 
@@ -19,15 +23,22 @@ public interface UserRepository extends JpaRepository<User, Long> {
     User findByUsername(@Param("username") String username);
     User findByVerificationToken(String token);
     
-    // Search users
-    @Query("SELECT u FROM User u WHERE " +
-           "LOWER(u.firstName) LIKE LOWER(CONCAT('%', ?1, '%')) OR " +
-           "LOWER(u.lastName) LIKE LOWER(CONCAT('%', ?1, '%')) OR " +
-           "LOWER(u.username) LIKE LOWER(CONCAT('%', ?1, '%'))")
-    List<User> searchByName(String name);
+    String NAME_MATCH =
+           "(lower(u.first_name) LIKE :pattern OR lower(u.last_name) LIKE :pattern OR lower(u.username) LIKE :pattern " +
+           "OR lower(u.first_name) % :query OR lower(u.last_name) % :query OR lower(u.username) % :query)";
+
+    // Search users: substring or trigram-similar on first name, last name or username, best match
+    // first. query is lower-cased and pattern is its escaped "%query%"; both are served by the
+    // ix_users_name_trgm index.
+    @Query(value = "SELECT u.* FROM users u WHERE " + NAME_MATCH +
+                   " ORDER BY GREATEST(similarity(lower(u.first_name), :query), " +
+                   "similarity(lower(u.last_name), :query), similarity(lower(u.username), :query)) DESC, u.id",
+           countQuery = "SELECT COUNT(*) FROM users u WHERE " + NAME_MATCH,
+           nativeQuery = true)
+    Page<User> searchByName(@Param("query") String query, @Param("pattern") String pattern, Pageable pageable);
     
-    List<User> findByProvinceAndDistrict(String province, String district);
-    List<User> findByProvince(String province);
+    Page<User> findByProvinceAndDistrict(String province, String district, Pageable pageable);
+    Page<User> findByProvince(String province, Pageable pageable);
     
     // Admin queries
     List<User> findByIsActive(Boolean isActive);
@@ -36,4 +47,15 @@ public interface UserRepository extends JpaRepository<User, Long> {
     List<User> findUsersCreatedBetween(LocalDateTime start, LocalDateTime end);
     
     long countByIsActive(Boolean isActive);
+
+    // Login bookkeeping in place, so a cached (detached) user is never merged back
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.lastLoginAt = :at WHERE u.id = :id")
+    int recordLogin(@Param("id") Long id, @Param("at") LocalDateTime at);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.password = :password, u.updatedAt = :at WHERE u.id = :id")
+    int updatePassword(@Param("id") Long id, @Param("password") String password, @Param("at") LocalDateTime at);
 }
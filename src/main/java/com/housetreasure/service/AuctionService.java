@@ -0,0 +1,593 @@
+package com.housetreasure.service;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.housetreasure.dto.AuctionState;
+import com.housetreasure.model.Auction;
+import com.housetreasure.model.Auction.AuctionStatus;
+import com.housetreasure.model.AuctionBid;
+import com.housetreasure.model.Offer;
+import com.housetreasure.repository.AuctionBidRepository;
+import com.housetreasure.repository.AuctionRepository;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Timed auctions for high-demand items.
+ *
+ * Open auctions live in memory. A bid is accepted with a compare-and-set on the auction's
+ * current best bid, so concurrent bidders never wait on each other or on Postgres. Accepted
+ * bids are queued and written every auctions.flush-interval-ms with one JDBC batch insert,
+ * and the auction row is updated once per flush rather than once per bid. Watchers receive
+ * the latest state on /topic/auctions/{id}, coalesced to one message per
+ * auctions.broadcast-interval-ms. When an auction ends, the winning bid becomes an accepted
+ * offer through OfferService.
+ *
+ * Bids still queued when the process dies are lost, at most one flush interval's worth.
+ *
+ * Each auction is served by one instance at a time: the instance holds a PostgreSQL session
+ * advisory lock per auction on a dedicated connection, taken before the auction goes live
+ * and released once its result is stored. Every auctions.adopt-interval-ms the instance
+ * takes over open auctions nobody holds, such as those of a node that died. Bids for an
+ * auction served elsewhere are refused as not open here. If the lock connection breaks,
+ * its locks are gone and the instance drops all its auctions before adopting again.
+ *
+ * A close that fails, including when the winning bid cannot be settled into an accepted
+ * offer, leaves the auction live and closed to bids; it is retried every
+ * auctions.close-retry-ms until the result is stored.
+ */
+@Service
+public class AuctionService {
+    private static final String INSERT_BID =
+            "INSERT INTO auction_bids (auction_id, bidder_id, amount, placed_at) VALUES (?, ?, ?, ?)";
+    private static final String UPDATE_BEST_BID =
+            "UPDATE auctions SET current_amount = ?, current_bidder_id = ?, bid_count = ? " +
+            "WHERE id = ? AND status = 'OPEN' AND bid_count < ?";
+    private static final String WINNING_BID_MESSAGE = "Winning auction bid";
+    // First key of the two-key advisory locks taken per auction; the second is the auction id
+    private static final int AUCTION_LOCK_CLASS = 4_844;
+
+    private final AuctionRepository auctionRepository;
+    private final AuctionBidRepository auctionBidRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final OfferService offerService;
+    private final UserService userService;
+    private final DataSource dataSource;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${auctions.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Value("${auctions.flush-batch-size:1000}")
+    private int flushBatchSize;
+
+    @Value("${auctions.broadcast-interval-ms:100}")
+    private long broadcastIntervalMs;
+
+    @Value("${auctions.adopt-interval-ms:10000}")
+    private long adoptIntervalMs;
+
+    @Value("${auctions.close-retry-ms:30000}")
+    private long closeRetryMs;
+
+    private final Map<Long, LiveAuction> liveAuctions = new ConcurrentHashMap<>();
+    private final Queue<PendingBid> pendingBids = new ConcurrentLinkedQueue<>();
+    private final Set<Long> changedAuctions = ConcurrentHashMap.newKeySet();
+
+    // Auctions whose lock is held on lockConnection; both guarded by ownership
+    private final Object ownership = new Object();
+    private final Set<Long> owned = new HashSet<>();
+    private Connection lockConnection;
+
+    private ScheduledExecutorService executor;
+
+    public AuctionService(AuctionRepository auctionRepository, AuctionBidRepository auctionBidRepository,
+                          JdbcTemplate jdbcTemplate, SimpMessagingTemplate messagingTemplate,
+                          OfferService offerService, UserService userService, DataSource dataSource,
+                          PlatformTransactionManager transactionManager) {
+        this.auctionRepository = auctionRepository;
+        this.auctionBidRepository = auctionBidRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.messagingTemplate = messagingTemplate;
+        this.offerService = offerService;
+        this.userService = userService;
+        this.dataSource = dataSource;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // === LIFECYCLE ===
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        adoptAuctions();
+
+        executor = Executors.newScheduledThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "auction-engine");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        executor.scheduleWithFixedDelay(this::broadcastChanges, broadcastIntervalMs, broadcastIntervalMs,
+                TimeUnit.MILLISECONDS);
+        executor.scheduleWithFixedDelay(this::closeEndedAuctions, 1, 1, TimeUnit.SECONDS);
+        executor.scheduleWithFixedDelay(this::adoptAuctions, adoptIntervalMs, adoptIntervalMs, TimeUnit.MILLISECONDS);
+        System.out.println("Auction engine started with " + liveAuctions.size() + " open auctions");
+    }
+
+    @PreDestroy
+    void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        flushQuietly();
+        // Closing the connection releases every auction lock for the other instances
+        synchronized (ownership) {
+            closeLockConnection();
+        }
+    }
+
+    // === AUCTIONS ===
+
+    public AuctionState createAuction(String itemId, Long sellerId, BigDecimal startingPrice,
+                                      BigDecimal minIncrement, int durationMinutes) {
+        if (startingPrice == null || startingPrice.signum() <= 0) {
+            throw new RuntimeException("Starting price must be positive");
+        }
+        if (minIncrement == null || minIncrement.signum() <= 0) {
+            throw new RuntimeException("Minimum increment must be positive");
+        }
+        if (durationMinutes <= 0) {
+            throw new RuntimeException("Duration must be positive");
+        }
+        if (auctionRepository.findFirstByItemIdAndStatus(itemId, AuctionStatus.OPEN).isPresent()) {
+            throw new RuntimeException("Item already has an open auction");
+        }
+
+        Auction auction = new Auction();
+        auction.setItemId(itemId);
+        auction.setSeller(userService.getUserReference(sellerId));
+        auction.setStartingPrice(startingPrice);
+        auction.setMinIncrement(minIncrement);
+        auction.setStatus(AuctionStatus.OPEN);
+        auction.setCreatedAt(LocalDateTime.now());
+        auction.setEndsAt(LocalDateTime.now().plusMinutes(durationMinutes));
+
+        Auction saved = auctionRepository.save(auction);
+        if (!own(saved.getId())) {
+            // Stored as OPEN all the same; the next adoption pass on some instance takes it
+            return stateOf(saved);
+        }
+        LiveAuction live = LiveAuction.from(saved);
+        liveAuctions.put(saved.getId(), live);
+        return live.state(live.best.get());
+    }
+
+    public Optional<AuctionState> getAuction(Long auctionId) {
+        LiveAuction live = liveAuctions.get(auctionId);
+        if (live != null) {
+            return Optional.of(live.state(live.best.get()));
+        }
+        return auctionRepository.findById(auctionId).map(AuctionService::stateOf);
+    }
+
+    public Optional<AuctionState> getAuctionForItem(String itemId) {
+        return auctionRepository.findByItemIdOrderByCreatedAtDesc(itemId).stream()
+                .findFirst()
+                .flatMap(auction -> getAuction(auction.getId()));
+    }
+
+    public List<AuctionBid> getTopBids(Long auctionId, int limit) {
+        return auctionBidRepository.findByAuctionIdOrderByAmountDesc(auctionId, PageRequest.of(0, Math.max(1, limit)));
+    }
+
+    // === BIDDING ===
+
+    public AuctionState placeBid(Long auctionId, Long bidderId, BigDecimal amount) {
+        LiveAuction auction = liveAuctions.get(auctionId);
+        if (auction == null) {
+            throw new RuntimeException("Auction is not open");
+        }
+        if (bidderId != null && bidderId.equals(auction.sellerId)) {
+            throw new RuntimeException("Sellers cannot bid on their own auction");
+        }
+        // Before the compare-and-set: a bid that wins it must be insertable and settleable.
+        // Cached, so repeated bids by the same user cost no query
+        if (bidderId == null || userService.getUserById(bidderId).isEmpty()) {
+            throw new RuntimeException("Bidder not found");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (!now.isBefore(auction.endsAt)) {
+            throw new RuntimeException("Auction has ended");
+        }
+
+        Bid accepted;
+        while (true) {
+            Bid current = auction.best.get();
+            if (current.closed()) {
+                throw new RuntimeException("Auction has ended");
+            }
+            BigDecimal minimum = auction.minimumNextBid(current);
+            if (amount == null || amount.compareTo(minimum) < 0) {
+                throw new RuntimeException("Bid must be at least " + minimum);
+            }
+            accepted = new Bid(amount, bidderId, current.count() + 1, false);
+            if (auction.best.compareAndSet(current, accepted)) {
+                break;
+            }
+        }
+
+        pendingBids.add(new PendingBid(auctionId, bidderId, amount, now, accepted.count()));
+        changedAuctions.add(auctionId);
+        return auction.state(accepted);
+    }
+
+    // === CLOSING ===
+
+    // The endpoint's version: only the seller may end their auction early
+    public AuctionState closeAuction(Long auctionId, Long sellerId) {
+        LiveAuction auction = liveAuctions.get(auctionId);
+        if (auction == null) {
+            throw new RuntimeException("Auction is not open");
+        }
+        if (sellerId == null || !sellerId.equals(auction.sellerId)) {
+            throw new RuntimeException("Only the seller can close this auction");
+        }
+        return closeAuction(auctionId);
+    }
+
+    /**
+     * Ends an auction now. The best bid, if any, is turned into an accepted offer; a seller
+     * closing an auction without bids cancels it.
+     */
+    public AuctionState closeAuction(Long auctionId) {
+        LiveAuction auction = liveAuctions.get(auctionId);
+        if (auction == null) {
+            throw new RuntimeException("Auction is not open");
+        }
+        if (!auction.closing.compareAndSet(false, true)) {
+            throw new RuntimeException("Auction is already closing");
+        }
+        AuctionState state;
+        try {
+            // Flips the best bid to a closed marker, so no bid can slip in afterwards; a retried close keeps it
+            Bid last = auction.best.updateAndGet(Bid::close);
+            // Every accepted bid is in auction_bids before the result is stored
+            flushBids();
+
+            Auction stored = auctionRepository.findById(auctionId)
+                    .orElseThrow(() -> new RuntimeException("Auction not found"));
+            boolean endedEarly = LocalDateTime.now().isBefore(auction.endsAt);
+            stored.setStatus(last.amount() == null && endedEarly ? AuctionStatus.CANCELLED : AuctionStatus.CLOSED);
+            stored.setCurrentAmount(last.amount());
+            stored.setCurrentBidderId(last.bidderId());
+            stored.setBidCount(last.count());
+            stored.setClosedAt(LocalDateTime.now());
+            if (last.amount() != null) {
+                // Settled once; a retry after a failed save reuses the accepted offer
+                if (auction.winningOfferId == null) {
+                    auction.winningOfferId = settle(auction, last);
+                }
+                stored.setWinningOfferId(auction.winningOfferId);
+            }
+
+            state = stateOf(auctionRepository.save(stored));
+            // Only now is the stored row authoritative; until here the auction stays live and closed to bids
+            liveAuctions.remove(auctionId);
+            release(auctionId);
+        } catch (RuntimeException e) {
+            // Left closed to bids; closeEndedAuctions retries it after the back-off
+            auction.retryCloseAt = System.currentTimeMillis() + closeRetryMs;
+            auction.closing.set(false);
+            throw e;
+        }
+        messagingTemplate.convertAndSend(topic(auctionId), state);
+        return state;
+    }
+
+    // Safe to repeat after a partial failure: a retry finds the offer made by the previous attempt
+    private Long settle(LiveAuction auction, Bid winner) {
+        try {
+            Offer offer = offerService.findPendingOffer(winner.bidderId(), auction.itemId)
+                    .map(existing -> offerService.updateOffer(existing.getId(), winner.amount(), WINNING_BID_MESSAGE))
+                    .orElseGet(() -> offerService.makeOffer(winner.bidderId(), auction.sellerId, auction.itemId,
+                            winner.amount(), WINNING_BID_MESSAGE, null));
+            return offerService.acceptOffer(offer.getId()).getId();
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Winning bid could not be settled: " + e.getMessage(), e);
+        }
+    }
+
+    private void closeEndedAuctions() {
+        LocalDateTime now = LocalDateTime.now();
+        long nowMillis = System.currentTimeMillis();
+        for (LiveAuction auction : liveAuctions.values()) {
+            // Includes early closes that failed part-way
+            if ((!now.isBefore(auction.endsAt) || auction.best.get().closed()) && !auction.closing.get()
+                    && nowMillis >= auction.retryCloseAt) {
+                try {
+                    closeAuction(auction.id);
+                } catch (RuntimeException e) {
+                    System.err.println("Failed to close auction " + auction.id + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // === PERSISTENCE AND BROADCAST ===
+
+    private synchronized void flushBids() {
+        List<PendingBid> batch = new ArrayList<>();
+        PendingBid bid;
+        while ((bid = pendingBids.poll()) != null) {
+            batch.add(bid);
+            if (batch.size() >= flushBatchSize) {
+                writeBatch(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeBatch(batch);
+        }
+    }
+
+    // One transaction, so bids put back after a failure were not inserted the first time
+    private void writeBatch(List<PendingBid> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(tx -> {
+                jdbcTemplate.batchUpdate(INSERT_BID, batch, batch.size(), (statement, bid) -> {
+                    statement.setLong(1, bid.auctionId());
+                    statement.setLong(2, bid.bidderId());
+                    statement.setBigDecimal(3, bid.amount());
+                    statement.setTimestamp(4, Timestamp.valueOf(bid.placedAt()));
+                });
+
+                // Bids are accepted in increasing order, so the highest count per auction is its best bid
+                Map<Long, PendingBid> best = new HashMap<>();
+                batch.forEach(pending -> best.merge(pending.auctionId(), pending,
+                        (a, b) -> a.sequence() >= b.sequence() ? a : b));
+                List<Object[]> rows = new ArrayList<>(best.size());
+                best.values().forEach(pending -> rows.add(new Object[] {
+                        pending.amount(), pending.bidderId(), pending.sequence(), pending.auctionId(),
+                        pending.sequence()}));
+                jdbcTemplate.batchUpdate(UPDATE_BEST_BID, rows);
+            });
+        } catch (DataAccessException | TransactionException e) {
+            // Put the bids back and retry on the next flush
+            pendingBids.addAll(batch);
+            throw e;
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flushBids();
+        } catch (RuntimeException e) {
+            System.err.println("Failed to persist auction bids: " + e.getMessage());
+        }
+    }
+
+    private void broadcastChanges() {
+        for (Long auctionId : changedAuctions) {
+            changedAuctions.remove(auctionId);
+            LiveAuction auction = liveAuctions.get(auctionId);
+            if (auction != null) {
+                try {
+                    messagingTemplate.convertAndSend(topic(auctionId), auction.state(auction.best.get()));
+                } catch (RuntimeException e) {
+                    System.err.println("Failed to broadcast auction " + auctionId + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // === OWNERSHIP ===
+
+    // Takes over the open auctions no instance holds, after checking the locks still held are intact
+    private void adoptAuctions() {
+        try {
+            checkLockConnection();
+            for (Auction auction : auctionRepository.findByStatus(AuctionStatus.OPEN)) {
+                if (liveAuctions.containsKey(auction.getId()) || !own(auction.getId())) {
+                    continue;
+                }
+                // Re-read under the lock: the previous holder may have stored its result meanwhile
+                Optional<Auction> current = auctionRepository.findById(auction.getId())
+                        .filter(stored -> stored.getStatus() == AuctionStatus.OPEN);
+                if (current.isPresent()) {
+                    liveAuctions.putIfAbsent(auction.getId(), LiveAuction.from(current.get()));
+                } else {
+                    release(auction.getId());
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Failed to adopt open auctions: " + e.getMessage());
+        }
+    }
+
+    // True once this instance holds the auction's lock, including when it already did
+    private boolean own(Long auctionId) {
+        synchronized (ownership) {
+            if (owned.contains(auctionId)) {
+                return true;
+            }
+            try {
+                if (lockConnection == null) {
+                    lockConnection = dataSource.getConnection();
+                }
+                if (!advisoryLock("SELECT pg_try_advisory_lock(?, ?)", auctionId)) {
+                    return false;
+                }
+            } catch (SQLException e) {
+                System.err.println("Failed to lock auction " + auctionId + ": " + e.getMessage());
+                return false;
+            }
+            owned.add(auctionId);
+            return true;
+        }
+    }
+
+    private void release(Long auctionId) {
+        synchronized (ownership) {
+            if (!owned.remove(auctionId) || lockConnection == null) {
+                return;
+            }
+            try {
+                advisoryLock("SELECT pg_advisory_unlock(?, ?)", auctionId);
+            } catch (SQLException e) {
+                // The lock goes with the connection at the latest
+                System.err.println("Failed to unlock auction " + auctionId + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // A broken connection has lost its locks, so another instance may already serve those auctions
+    private void checkLockConnection() {
+        synchronized (ownership) {
+            try {
+                if (lockConnection == null || lockConnection.isValid(5)) {
+                    return;
+                }
+            } catch (SQLException e) {
+                // Treated as broken
+            }
+            System.err.println("Auction lock connection lost; dropping " + owned.size() + " auctions");
+            owned.forEach(liveAuctions::remove);
+            closeLockConnection();
+        }
+    }
+
+    private void closeLockConnection() {
+        owned.clear();
+        if (lockConnection != null) {
+            try {
+                lockConnection.close();
+            } catch (SQLException e) {
+                System.err.println("Failed to close the auction lock connection: " + e.getMessage());
+            }
+            lockConnection = null;
+        }
+    }
+
+    private boolean advisoryLock(String sql, Long auctionId) throws SQLException {
+        try (PreparedStatement statement = lockConnection.prepareStatement(sql)) {
+            statement.setInt(1, AUCTION_LOCK_CLASS);
+            // Ids past the int range share keys; such auctions then only exclude each other needlessly
+            statement.setInt(2, Long.hashCode(auctionId));
+            try (ResultSet result = statement.executeQuery()) {
+                return result.next() && result.getBoolean(1);
+            }
+        }
+    }
+
+    // === HELPERS ===
+
+    private static String topic(Long auctionId) {
+        return "/topic/auctions/" + auctionId;
+    }
+
+    private static AuctionState stateOf(Auction auction) {
+        BigDecimal minimumNextBid = auction.getCurrentAmount() == null
+                ? auction.getStartingPrice()
+                : auction.getCurrentAmount().add(auction.getMinIncrement());
+        return new AuctionState(
+                auction.getId(),
+                auction.getItemId(),
+                auction.getSeller().getId(),
+                auction.getStatus(),
+                auction.getCurrentAmount(),
+                auction.getCurrentBidderId(),
+                auction.getBidCount() != null ? auction.getBidCount() : 0L,
+                auction.getStatus() == AuctionStatus.OPEN ? minimumNextBid : null,
+                auction.getEndsAt(),
+                auction.getWinningOfferId());
+    }
+
+    // Best bid of an auction; replaced as a whole on every accepted bid
+    private record Bid(BigDecimal amount, Long bidderId, long count, boolean closed) {
+        Bid close() {
+            return new Bid(amount, bidderId, count, true);
+        }
+    }
+
+    private record PendingBid(Long auctionId, Long bidderId, BigDecimal amount, LocalDateTime placedAt,
+                              long sequence) {
+    }
+
+    private static final class LiveAuction {
+        private final Long id;
+        private final String itemId;
+        private final Long sellerId;
+        private final BigDecimal startingPrice;
+        private final BigDecimal minIncrement;
+        private final LocalDateTime endsAt;
+        private final AtomicReference<Bid> best;
+        // Held while a close is in progress, so only one runs at a time
+        private final AtomicBoolean closing = new AtomicBoolean();
+        private volatile Long winningOfferId;
+        // Epoch millis before which a failed close is not retried
+        private volatile long retryCloseAt;
+
+        private LiveAuction(Auction auction) {
+            this.id = auction.getId();
+            this.itemId = auction.getItemId();
+            this.sellerId = auction.getSeller().getId();
+            this.startingPrice = auction.getStartingPrice();
+            this.minIncrement = auction.getMinIncrement();
+            this.endsAt = auction.getEndsAt();
+            this.best = new AtomicReference<>(new Bid(auction.getCurrentAmount(), auction.getCurrentBidderId(),
+                    auction.getBidCount() != null ? auction.getBidCount() : 0L, false));
+        }
+
+        static LiveAuction from(Auction auction) {
+            return new LiveAuction(auction);
+        }
+
+        BigDecimal minimumNextBid(Bid current) {
+            return current.amount() == null ? startingPrice : current.amount().add(minIncrement);
+        }
+
+        AuctionState state(Bid bid) {
+            return new AuctionState(id, itemId, sellerId,
+                    bid.closed() ? AuctionStatus.CLOSED : AuctionStatus.OPEN,
+                    bid.amount(), bid.bidderId(), bid.count(),
+                    bid.closed() ? null : minimumNextBid(bid),
+                    endsAt, null);
+        }
+    }
+}
@@ -37,11 +37,13 @@ public class CategoryService {
                 .toList();
     }
     
-    public List<Category> searchCategories(String name) {
-        return categoryRepository.searchByName(name)
-                .stream()
-                .filter(category -> category.getIsActive())
-                .toList();
+    // Active categories only, best matches first
+    public Page<Category> searchCategories(String name, Pageable pageable) {
+        String query = NameSearch.normalize(name);
+        if (query == null) {
+            return Page.empty(pageable);
+        }
+        return categoryRepository.searchByName(query, NameSearch.containsPattern(query), NameSearch.page(pageable));
     }
     
     public Optional<Category> getCategoryById(Long id) {
@@ -6,6 +6,10 @@ import java.util.Optional;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
 import com.housetreasure.model.Item;
@@ -15,10 +19,13 @@ import com.housetreasure.repository.ItemRepository;
 public class ItemService {
     private final ItemRepository itemRepository;
     private final CategoryService categoryService;
+    private final MongoTemplate mongoTemplate;
 
-    public ItemService(ItemRepository itemRepository, CategoryService categoryService) {
+    public ItemService(ItemRepository itemRepository, CategoryService categoryService,
+                       MongoTemplate mongoTemplate) {
         this.itemRepository = itemRepository;
         this.categoryService = categoryService;
+        this.mongoTemplate = mongoTemplate;
     }
 
     // === BASIC CRUD OPERATIONS ===
@@ -41,14 +48,10 @@ public class ItemService {
         item.setStatus("AVAILABLE");
         item.setViews(0);
         
-        Item savedItem = itemRepository.save(item);
+        // Category item count is incremented by OutboxRelay, keeping this write to MongoDB only
+        item.setCategoryCounted(item.getCategoryId() != null ? Boolean.FALSE : null);
         
-        // Increment category item count
-        if (item.getCategoryId() != null) {
-            categoryService.incrementItemCount(Long.valueOf(item.getCategoryId()));
-        }
-        
-        return savedItem;
+        return itemRepository.save(item);
     }
 
     public Item updateItem(String id, Item updatedItem) {
@@ -69,8 +72,8 @@ public class ItemService {
     public void deleteItem(String id) {
         Optional<Item> item = itemRepository.findById(id);
         if (item.isPresent()) {
-            // Decrement category item count
-            if (item.get().getCategoryId() != null) {
+            // Decrement category item count, unless the relay has not counted the item yet
+            if (item.get().getCategoryId() != null && !Boolean.FALSE.equals(item.get().getCategoryCounted())) {
                 categoryService.decrementItemCount(Long.valueOf(item.get().getCategoryId()));
             }
             itemRepository.deleteById(id);
@@ -94,6 +97,42 @@ public class ItemService {
         return updateItemStatus(id, "AVAILABLE");
     }
 
+    // Moves the item from AVAILABLE to RESERVED in one conditional update; false if it was not available
+    public boolean reserveIfAvailable(String id) {
+        return compareAndSetStatus(id, "AVAILABLE", "RESERVED");
+    }
+
+    // Undoes reserveIfAvailable, leaving the item alone if its status has moved on since
+    public boolean releaseReservation(String id) {
+        return compareAndSetStatus(id, "RESERVED", "AVAILABLE");
+    }
+
+    // Sets SOLD unless already sold; safe to repeat
+    public boolean markSoldIfUnsold(String id, LocalDateTime soldAt) {
+        return mongoTemplate.updateFirst(
+                Query.query(Criteria.where("id").is(id).and("status").ne("SOLD")),
+                new Update().set("status", "SOLD").set("soldAt", soldAt).set("updatedAt", LocalDateTime.now()),
+                Item.class).getModifiedCount() > 0;
+    }
+
+    // === CATEGORY COUNTING ===
+
+    public List<Item> findItemsAwaitingCategoryCount(int limit) {
+        return mongoTemplate.find(Query.query(Criteria.where("categoryCounted").is(false)).limit(limit), Item.class);
+    }
+
+    public void markCategoryCounted(String id) {
+        mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(id)),
+                new Update().set("categoryCounted", true), Item.class);
+    }
+
+    private boolean compareAndSetStatus(String id, String expected, String status) {
+        return mongoTemplate.updateFirst(
+                Query.query(Criteria.where("id").is(id).and("status").is(expected)),
+                new Update().set("status", status).set("updatedAt", LocalDateTime.now()),
+                Item.class).getModifiedCount() > 0;
+    }
+
     private Item updateItemStatus(String id, String status) {
         return itemRepository.findById(id)
             .map(item -> {
@@ -0,0 +1,208 @@
+package com.housetreasure.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import com.housetreasure.model.Message;
+import com.mongodb.bulk.BulkWriteError;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Group-commit write path for new messages (messages.batching.enabled=true).
+ *
+ * Callers hand over a message and wait on a future. A single writer thread collects
+ * messages for up to messages.batching.linger-ms or messages.batching.max-batch-size
+ * entries and stores them with one unordered insertMany. Ids are assigned up front, so
+ * every caller gets back its own message, or its own error if only that insert failed.
+ * A caller waits at most messages.batching.write-timeout-ms; messages still queued when
+ * the application stops are failed rather than left waiting.
+ *
+ * A timed-out message may still be stored by a later batch, so the work that has to follow
+ * a stored message is handed in with it and run on the writer thread once the insert has
+ * succeeded, whether or not its caller is still waiting.
+ */
+@Service
+public class MessageBatchWriter {
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${messages.batching.enabled:false}")
+    private boolean enabled;
+
+    @Value("${messages.batching.max-batch-size:100}")
+    private int maxBatchSize;
+
+    @Value("${messages.batching.linger-ms:5}")
+    private long lingerMs;
+
+    @Value("${messages.batching.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${messages.batching.write-timeout-ms:5000}")
+    private long writeTimeoutMs;
+
+    private BlockingQueue<PendingWrite> queue;
+    private Thread writer;
+    private volatile boolean running;
+
+    public MessageBatchWriter(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        writer = new Thread(this::run, "message-batch-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        writer.interrupt();
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+        // Whatever the writer did not get to in time is failed, not left waiting
+        List<PendingWrite> abandoned = new ArrayList<>();
+        queue.drainTo(abandoned);
+        abandoned.forEach(pending -> pending.future().completeExceptionally(
+                new RejectedExecutionException("Message writer stopped before the message was stored")));
+    }
+
+    public boolean isEnabled() {
+        return enabled && running;
+    }
+
+    /**
+     * Queues a new message and blocks until its batch has been written, or fails after
+     * write-timeout-ms. onStored runs once the message is stored, also after a timeout.
+     */
+    public Message write(Message message, Consumer<Message> onStored) {
+        try {
+            return submit(message, onStored).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                throw new RuntimeException("Timed out storing message " + message.getId());
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    public CompletableFuture<Message> submit(Message message, Consumer<Message> onStored) {
+        if (message.getId() == null) {
+            message.setId(new ObjectId().toHexString());
+        }
+        PendingWrite pending = new PendingWrite(message, onStored, new CompletableFuture<>());
+        if (!running) {
+            pending.future().completeExceptionally(new RejectedExecutionException("Message writer is stopped"));
+        } else if (!queue.offer(pending)) {
+            pending.future().completeExceptionally(new RejectedExecutionException("Message write queue is full"));
+        }
+        return pending.future().orTimeout(writeTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void run() {
+        List<PendingWrite> batch = new ArrayList<>(maxBatchSize);
+        long lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMs);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < maxBatchSize) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingWrite next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Shutdown: fall through, write what was collected and drain the rest
+            }
+
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingWrite> batch) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Message.class);
+        batch.forEach(pending -> bulk.insert(pending.message()));
+
+        try {
+            bulk.execute();
+            batch.forEach(this::stored);
+        } catch (BulkOperationException e) {
+            // Unordered: every insert was attempted, only the listed ones failed
+            Map<Integer, BulkWriteError> errors = new HashMap<>();
+            e.getErrors().forEach(error -> errors.put(error.getIndex(), error));
+            for (int i = 0; i < batch.size(); i++) {
+                PendingWrite pending = batch.get(i);
+                BulkWriteError error = errors.get(i);
+                if (error == null) {
+                    stored(pending);
+                } else {
+                    pending.future().completeExceptionally(
+                            new RuntimeException("Failed to store message: " + error.getMessage()));
+                }
+            }
+        } catch (RuntimeException e) {
+            batch.forEach(pending -> pending.future().completeExceptionally(e));
+        }
+    }
+
+    // Runs the follow-up work before completing, so a caller still waiting sees it done
+    private void stored(PendingWrite pending) {
+        try {
+            pending.onStored().accept(pending.message());
+        } catch (RuntimeException e) {
+            // The message is stored all the same; the caller is not failed for it
+            System.err.println("Follow-up of stored message " + pending.message().getId() + " failed: "
+                    + e.getMessage());
+        }
+        pending.future().complete(pending.message());
+    }
+
+    private record PendingWrite(Message message, Consumer<Message> onStored, CompletableFuture<Message> future) {
+    }
+}
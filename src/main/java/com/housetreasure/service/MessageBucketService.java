@@ -0,0 +1,442 @@
+package com.housetreasure.service;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.housetreasure.model.Message;
+import com.housetreasure.model.MessageBucket;
+import com.mongodb.client.result.UpdateResult;
+
+/**
+ * Bucketed storage layout for conversation history (messages.storage.layout=bucketed).
+ *
+ * Messages are appended to per-conversation, per-day bucket documents holding at most
+ * messages.storage.bucket-size entries, so a history page is served from one or two
+ * bucket fetches instead of one document per message. With the layout enabled the buckets
+ * are the only copy: MessageService stores, updates, reads and counts messages here and
+ * no longer touches the messages collection, which is only read by migrate(). Single
+ * messages are found and changed through the index on messages._id.
+ * All write methods are no-ops while the layout is disabled.
+ *
+ * Enabling the layout hides everything still only in the messages collection until
+ * migrate() has copied it. Cut over by running migrate() with the layout still disabled,
+ * switching messages.storage.layout to bucketed, then running migrate() once more to pick
+ * up the messages written in between.
+ */
+@Service
+public class MessageBucketService {
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ISO_LOCAL_DATE;
+    private static final int BUCKETS_PER_FETCH = 2;
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${messages.storage.layout:document}")
+    private String layout;
+
+    @Value("${messages.storage.bucket-size:200}")
+    private int bucketSize;
+
+    public MessageBucketService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    public boolean isEnabled() {
+        return "bucketed".equalsIgnoreCase(layout);
+    }
+
+    // === WRITES ===
+
+    // Stores a new message; the id is assigned here, as an insert into the messages collection would
+    public Message insert(Message message) {
+        if (!isBucketable(message)) {
+            throw new RuntimeException("Message needs a sender, a receiver and a send time");
+        }
+        if (message.getId() == null) {
+            message.setId(new ObjectId().toHexString());
+        }
+        append(message);
+        return message;
+    }
+
+    public void append(Message message) {
+        if (isEnabled() && isBucketable(message)) {
+            push(message);
+        }
+    }
+
+    private void push(Message message) {
+        LocalDateTime sentAt = message.getSentAt();
+        // Matches only a bucket with room left; when the day's bucket is full the upsert starts a new one
+        Query query = Query.query(Criteria.where("conversationId").is(conversationId(message))
+                .and("day").is(day(sentAt))
+                .and("count").lt(bucketSize));
+        Update update = new Update()
+                .push("messages", message)
+                .inc("count", 1)
+                .min("firstSentAt", sentAt)
+                .max("lastSentAt", sentAt)
+                .setOnInsert("participants", participants(message.getSender(), message.getReceiver()));
+        if (message.getExpireAt() != null) {
+            update.max("expireAt", message.getExpireAt());
+        }
+        mongoTemplate.upsert(query, update, MessageBucket.class);
+    }
+
+    // Overwrites the stored copy wherever it is; false when no bucket holds the message
+    public boolean replace(Message message) {
+        if (!isEnabled() || !isBucketable(message) || message.getId() == null) {
+            return false;
+        }
+        List<Object> ids = idValues(message.getId());
+        Update update = new Update().set("messages.$[m]", message)
+                .filterArray(Criteria.where("m._id").in(ids));
+        update.max("lastSentAt", message.getSentAt());
+        return mongoTemplate.updateFirst(Query.query(Criteria.where("messages._id").in(ids)), update,
+                MessageBucket.class).getMatchedCount() > 0;
+    }
+
+    // Marks one message read; returns it when it was unread, null otherwise
+    public Message markRead(String id, LocalDateTime readAt) {
+        Update update = new Update().set("messages.$.isRead", true)
+                .set("messages.$.readAt", readAt)
+                .set("messages.$.status", "READ")
+                .set("messages.$.updatedAt", readAt);
+        return updateMessage(id, Criteria.where("isRead").is(false), update);
+    }
+
+    // Marks one message unread; returns it when it was read, null otherwise
+    public Message markUnread(String id, LocalDateTime now) {
+        Update update = new Update().set("messages.$.isRead", false)
+                .unset("messages.$.readAt")
+                .set("messages.$.status", "DELIVERED")
+                .set("messages.$.updatedAt", now);
+        return updateMessage(id, Criteria.where("isRead").is(true), update);
+    }
+
+    public Message setStatus(String id, String status, LocalDateTime now) {
+        Update update = new Update().set("messages.$.status", status)
+                .set("messages.$.updatedAt", now);
+        return updateMessage(id, null, update);
+    }
+
+    // Applies a positional update to the message while it matches state (any state when null)
+    private Message updateMessage(String id, Criteria state, Update update) {
+        if (!isEnabled() || id == null) {
+            return null;
+        }
+        Criteria message = Criteria.where("_id").in(idValues(id));
+        if (state != null) {
+            message = new Criteria().andOperator(message, state);
+        }
+        UpdateResult result = mongoTemplate.updateFirst(
+                Query.query(Criteria.where("messages").elemMatch(message)), update, MessageBucket.class);
+        return result.getModifiedCount() > 0 ? findById(id).orElse(null) : null;
+    }
+
+    public void markAllRead(String receiver, String sender, LocalDateTime readAt) {
+        if (!isEnabled()) {
+            return;
+        }
+        mongoTemplate.updateMulti(
+                Query.query(Criteria.where("conversationId").is(conversationId(sender, receiver))),
+                new Update().set("messages.$[m].isRead", true)
+                        .set("messages.$[m].readAt", readAt)
+                        .set("messages.$[m].status", "READ")
+                        .set("messages.$[m].updatedAt", readAt)
+                        .filterArray(Criteria.where("m.sender").is(sender).and("m.isRead").is(false)),
+                MessageBucket.class);
+    }
+
+    public void remove(Message message) {
+        if (!isEnabled() || !isBucketable(message) || message.getId() == null) {
+            return;
+        }
+        List<Object> ids = idValues(message.getId());
+        mongoTemplate.updateFirst(
+                Query.query(Criteria.where("messages._id").in(ids)),
+                new Update().pull("messages", new Document("_id", new Document("$in", ids)))
+                        .inc("count", -1),
+                MessageBucket.class);
+    }
+
+    public void removeConversation(String user1, String user2) {
+        if (!isEnabled()) {
+            return;
+        }
+        mongoTemplate.remove(Query.query(Criteria.where("conversationId").is(conversationId(user1, user2))),
+                MessageBucket.class);
+    }
+
+    // === READS ===
+
+    public Optional<Message> findById(String id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        List<Object> ids = idValues(id);
+        Query query = Query.query(Criteria.where("messages._id").in(ids));
+        query.fields().elemMatch("messages", Criteria.where("_id").in(ids));
+        MessageBucket bucket = mongoTemplate.findOne(query, MessageBucket.class);
+        if (bucket == null || bucket.getMessages() == null || bucket.getMessages().isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(bucket.getMessages().get(0));
+    }
+
+    public List<Message> findAllById(List<String> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        List<Object> values = new ArrayList<>();
+        ids.forEach(id -> values.addAll(idValues(id)));
+        return findMessages(Criteria.where("messages._id").in(values), Criteria.where("_id").in(values), null, 0);
+    }
+
+    /**
+     * Messages of the buckets a user takes part in (all buckets when participant is null)
+     * that match the criteria, in the given order; limit 0 returns every match.
+     */
+    public List<Message> findMessages(String participant, Criteria criteria, Sort sort, int limit) {
+        Criteria buckets = participant != null ? Criteria.where("participants").is(participant) : new Criteria();
+        return findMessages(buckets, criteria, sort, limit);
+    }
+
+    // Sent strictly between start and end, oldest first
+    public List<Message> findSentBetween(LocalDateTime start, LocalDateTime end) {
+        return findMessages(Criteria.where("lastSentAt").gt(start).and("firstSentAt").lt(end),
+                Criteria.where("sentAt").gt(start).lt(end), Sort.by(Sort.Direction.ASC, "sentAt"), 0);
+    }
+
+    // Unread messages for receiver, from one sender or from everyone when sender is null
+    public long countUnread(String receiver, String sender) {
+        Criteria buckets = sender != null
+                ? Criteria.where("conversationId").is(conversationId(receiver, sender))
+                : Criteria.where("participants").is(receiver);
+        Criteria unread = Criteria.where("receiver").is(receiver).and("isRead").is(false);
+        if (sender != null) {
+            unread = unread.and("sender").is(sender);
+        }
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(buckets),
+                Aggregation.unwind("messages"),
+                Aggregation.replaceRoot("messages"),
+                Aggregation.match(unread),
+                Aggregation.count().as("count"));
+        Document row = mongoTemplate.aggregate(aggregation, mongoTemplate.getCollectionName(MessageBucket.class),
+                Document.class).getUniqueMappedResult();
+        return row != null ? ((Number) row.get("count")).longValue() : 0L;
+    }
+
+    // Every stored message, bucket by bucket; the caller closes the stream
+    public Stream<Message> streamAll() {
+        return mongoTemplate.stream(new Query(), MessageBucket.class)
+                .flatMap(bucket -> bucket.getMessages().stream());
+    }
+
+    private List<Message> findMessages(Criteria buckets, Criteria messages, Sort sort, int limit) {
+        List<AggregationOperation> stages = new ArrayList<>();
+        stages.add(Aggregation.match(buckets));
+        stages.add(Aggregation.unwind("messages"));
+        stages.add(Aggregation.replaceRoot("messages"));
+        if (messages != null) {
+            stages.add(Aggregation.match(messages));
+        }
+        if (sort != null) {
+            stages.add(Aggregation.sort(sort));
+        }
+        if (limit > 0) {
+            stages.add(Aggregation.limit(limit));
+        }
+        return mongoTemplate.aggregate(Aggregation.newAggregation(stages),
+                mongoTemplate.getCollectionName(MessageBucket.class), Message.class).getMappedResults();
+    }
+
+    public List<Message> findConversation(String user1, String user2) {
+        Query query = Query.query(Criteria.where("conversationId").is(conversationId(user1, user2)))
+                .with(Sort.by(Sort.Direction.ASC, "firstSentAt"));
+        List<Message> history = new ArrayList<>();
+        mongoTemplate.find(query, MessageBucket.class).forEach(bucket -> history.addAll(bucket.getMessages()));
+        history.sort(Comparator.comparing(Message::getSentAt));
+        return history;
+    }
+
+    /**
+     * Returns up to {@code limit} messages sent before {@code before} (or the newest ones
+     * when it is null), oldest first.
+     */
+    public List<Message> findConversationPage(String user1, String user2, LocalDateTime before, int limit) {
+        String conversationId = conversationId(user1, user2);
+        List<Message> collected = new ArrayList<>();
+        List<String> fetchedIds = new ArrayList<>();
+        LocalDateTime cursor = before;
+
+        while (collected.size() < limit) {
+            Criteria criteria = Criteria.where("conversationId").is(conversationId);
+            if (cursor != null) {
+                criteria = criteria.and("firstSentAt").lte(cursor);
+            }
+            if (!fetchedIds.isEmpty()) {
+                criteria = criteria.and("id").nin(fetchedIds);
+            }
+            List<MessageBucket> buckets = mongoTemplate.find(Query.query(criteria)
+                    .with(Sort.by(Sort.Direction.DESC, "firstSentAt"))
+                    .limit(BUCKETS_PER_FETCH), MessageBucket.class);
+
+            for (MessageBucket bucket : buckets) {
+                fetchedIds.add(bucket.getId());
+                for (Message message : bucket.getMessages()) {
+                    if (before == null || message.getSentAt().isBefore(before)) {
+                        collected.add(message);
+                    }
+                }
+                cursor = bucket.getFirstSentAt();
+            }
+            if (buckets.size() < BUCKETS_PER_FETCH) {
+                break;
+            }
+        }
+
+        collected.sort(Comparator.comparing(Message::getSentAt).reversed());
+        List<Message> page = new ArrayList<>(collected.subList(0, Math.min(limit, collected.size())));
+        page.sort(Comparator.comparing(Message::getSentAt));
+        return page;
+    }
+
+    public Message findLatest(String user1, String user2) {
+        MessageBucket newest = mongoTemplate.findOne(
+                Query.query(Criteria.where("conversationId").is(conversationId(user1, user2)))
+                        .with(Sort.by(Sort.Direction.DESC, "firstSentAt")),
+                MessageBucket.class);
+        if (newest == null) {
+            return null;
+        }
+        return newest.getMessages().stream()
+                .max(Comparator.comparing(Message::getSentAt))
+                .orElse(null);
+    }
+
+    // === MIGRATION ===
+
+    /**
+     * Copies the messages collection into the buckets, one (conversation, day) at a time,
+     * and returns the number of messages copied. Messages already in a bucket are skipped,
+     * so the bucketed copy and its read state win and re-running it is safe, including
+     * after the layout has been enabled. See the class comment for the cut-over order.
+     */
+    public long migrate() {
+        long migrated = 0;
+        String currentDay = null;
+        Map<String, List<Message>> conversations = new LinkedHashMap<>();
+
+        Query query = new Query().with(Sort.by(Sort.Direction.ASC, "sentAt"));
+        try (Stream<Message> messages = mongoTemplate.stream(query, Message.class)) {
+            for (Message message : (Iterable<Message>) messages::iterator) {
+                if (!isBucketable(message)) {
+                    continue;
+                }
+                String day = day(message.getSentAt());
+                if (!day.equals(currentDay)) {
+                    migrated += writeDay(currentDay, conversations);
+                    conversations.clear();
+                    currentDay = day;
+                }
+                conversations.computeIfAbsent(conversationId(message), key -> new ArrayList<>()).add(message);
+            }
+        }
+        migrated += writeDay(currentDay, conversations);
+        return migrated;
+    }
+
+    private long writeDay(String day, Map<String, List<Message>> conversations) {
+        long written = 0;
+        for (Map.Entry<String, List<Message>> conversation : conversations.entrySet()) {
+            Query existing = Query.query(Criteria.where("conversationId").is(conversation.getKey()).and("day").is(day));
+            existing.fields().include("messages._id");
+            Set<String> bucketed = new HashSet<>();
+            mongoTemplate.find(existing, MessageBucket.class)
+                    .forEach(bucket -> bucket.getMessages().forEach(message -> bucketed.add(message.getId())));
+
+            List<Message> messages = conversation.getValue().stream()
+                    .filter(message -> !bucketed.contains(message.getId()))
+                    .toList();
+            if (messages.isEmpty()) {
+                continue;
+            }
+            if (!bucketed.isEmpty()) {
+                // The day already has buckets: add the missing messages where there is room
+                messages.forEach(this::push);
+                written += messages.size();
+                continue;
+            }
+            List<MessageBucket> buckets = new ArrayList<>();
+            for (int start = 0; start < messages.size(); start += bucketSize) {
+                List<Message> chunk = messages.subList(start, Math.min(start + bucketSize, messages.size()));
+                MessageBucket bucket = new MessageBucket();
+                bucket.setConversationId(conversation.getKey());
+                bucket.setParticipants(participants(chunk.get(0).getSender(), chunk.get(0).getReceiver()));
+                bucket.setDay(day);
+                bucket.setCount(chunk.size());
+                bucket.setFirstSentAt(chunk.get(0).getSentAt());
+                bucket.setLastSentAt(chunk.get(chunk.size() - 1).getSentAt());
+                bucket.setMessages(new ArrayList<>(chunk));
+                bucket.setExpireAt(chunk.stream()
+                        .map(Message::getExpireAt)
+                        .filter(expireAt -> expireAt != null)
+                        .max(Comparator.naturalOrder())
+                        .orElse(null));
+                buckets.add(bucket);
+            }
+            mongoTemplate.insert(buckets, MessageBucket.class);
+            written += messages.size();
+        }
+        return written;
+    }
+
+    // === HELPERS ===
+
+    private static boolean isBucketable(Message message) {
+        return message.getSender() != null && message.getReceiver() != null && message.getSentAt() != null;
+    }
+
+    private static String conversationId(Message message) {
+        return conversationId(message.getSender(), message.getReceiver());
+    }
+
+    static String conversationId(String user1, String user2) {
+        return user1.compareTo(user2) <= 0 ? user1 + "|" + user2 : user2 + "|" + user1;
+    }
+
+    private static List<String> participants(String user1, String user2) {
+        return user1.compareTo(user2) <= 0 ? List.of(user1, user2) : List.of(user2, user1);
+    }
+
+    private static String day(LocalDateTime sentAt) {
+        return sentAt.toLocalDate().format(DAY_FORMAT);
+    }
+
+    // Embedded message ids are stored as ObjectId when they are valid hex ids
+    private static List<Object> idValues(String id) {
+        return ObjectId.isValid(id) ? List.<Object>of(new ObjectId(id), id) : List.<Object>of(id);
+    }
+}
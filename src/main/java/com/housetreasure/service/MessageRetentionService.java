@@ -0,0 +1,287 @@
+package com.housetreasure.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.housetreasure.model.Message;
+import com.housetreasure.model.MessageBucket;
+import com.housetreasure.model.MessageSearchTerm;
+
+/**
+ * TTL-based retention for inactive conversations (messages.retention.inactive-days > 0).
+ *
+ * Every new message is stamped with an expireAt of now + inactive-days and MongoDB's TTL
+ * monitor removes documents once it has passed. Activity in a conversation pushes the
+ * expiry of its older messages, buckets and search postings forward, at most once per
+ * messages.retention.refresh-interval-hours per conversation, so a conversation only
+ * expires as a whole once nobody has written to it for the full period.
+ *
+ * Unread messages never expire: the TTL monitor removes documents without touching the
+ * unread counters, so a sweep every messages.retention.sweep-interval-ms pushes back the
+ * expiry of every conversation that still holds an unread message and would otherwise
+ * expire before the sweep after next. Marking a message unread refreshes its
+ * conversation the same way a new message does. Counters, search postings and buckets
+ * therefore only ever lose read messages to the TTL.
+ */
+@Service
+public class MessageRetentionService {
+    private static final int MAX_TRACKED_CONVERSATIONS = 100_000;
+
+    private final MongoTemplate mongoTemplate;
+    private final MessageBucketService messageBucketService;
+
+    @Value("${messages.retention.inactive-days:0}")
+    private int inactiveDays;
+
+    @Value("${messages.retention.refresh-interval-hours:24}")
+    private int refreshIntervalHours;
+
+    @Value("${messages.retention.sweep-interval-ms:3600000}")
+    private long sweepIntervalMs;
+
+    // conversationId -> last time this node pushed the conversation's expiry forward
+    private final Map<String, LocalDateTime> lastRefreshed = new ConcurrentHashMap<>();
+
+    public MessageRetentionService(MongoTemplate mongoTemplate, MessageBucketService messageBucketService) {
+        this.mongoTemplate = mongoTemplate;
+        this.messageBucketService = messageBucketService;
+    }
+
+    public boolean isEnabled() {
+        return inactiveDays > 0;
+    }
+
+    // === NEW MESSAGES ===
+
+    public void stamp(Message message) {
+        if (isEnabled()) {
+            message.setExpireAt(expiryFrom(LocalDateTime.now()));
+        }
+    }
+
+    /**
+     * Extends the expiry of everything already stored for the conversation of a new message.
+     * Documents whose expiry is still within the refresh interval of the new one are skipped.
+     */
+    public void onMessageSent(Message message) {
+        if (isEnabled()) {
+            LocalDateTime expireAt = message.getExpireAt() != null ? message.getExpireAt() : expiryFrom(LocalDateTime.now());
+            refresh(message.getSender(), message.getReceiver(), expireAt);
+        }
+    }
+
+    // A message marked unread must outlive the TTL until it is read again, as a new one would
+    public void onMessageUnread(Message message) {
+        if (isEnabled()) {
+            refresh(message.getSender(), message.getReceiver(), expiryFrom(LocalDateTime.now()));
+        }
+    }
+
+    // At most once per refresh interval and conversation on this node
+    private void refresh(String sender, String receiver, LocalDateTime expireAt) {
+        if (sender == null || receiver == null) {
+            return;
+        }
+        String conversationId = MessageBucketService.conversationId(sender, receiver);
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime previous = lastRefreshed.get(conversationId);
+        if (previous != null && previous.isAfter(now.minusHours(refreshIntervalHours))) {
+            return;
+        }
+        if (lastRefreshed.size() >= MAX_TRACKED_CONVERSATIONS) {
+            lastRefreshed.clear();
+        }
+        lastRefreshed.put(conversationId, now);
+        extend(sender, receiver, expireAt);
+    }
+
+    private void extend(String user1, String user2, LocalDateTime expireAt) {
+        Criteria stale = new Criteria().orOperator(
+                Criteria.where("expireAt").lt(expireAt.minusHours(refreshIntervalHours)),
+                Criteria.where("expireAt").exists(false));
+        Update extend = new Update().set("expireAt", expireAt);
+
+        if (!messageBucketService.isEnabled()) {
+            mongoTemplate.updateMulti(Query.query(new Criteria().andOperator(
+                    conversation(user1, user2), stale)), extend, Message.class);
+        }
+        mongoTemplate.updateMulti(Query.query(new Criteria().andOperator(
+                Criteria.where("conversationId").is(MessageBucketService.conversationId(user1, user2)), stale)),
+                extend, MessageBucket.class);
+        mongoTemplate.updateMulti(Query.query(new Criteria().andOperator(
+                new Criteria().orOperator(
+                        Criteria.where("userId").is(user1).and("peerId").is(user2),
+                        Criteria.where("userId").is(user2).and("peerId").is(user1)),
+                stale)), extend, MessageSearchTerm.class);
+    }
+
+    // === UNREAD MESSAGES ===
+
+    /**
+     * Extends every conversation holding an unread message that would expire before the
+     * sweep after next, so the TTL never removes a message that is still counted as unread.
+     * Returns the number of conversations extended.
+     */
+    @Scheduled(fixedDelayString = "${messages.retention.sweep-interval-ms:3600000}")
+    public long keepUnreadConversations() {
+        if (!isEnabled()) {
+            return 0;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        Date horizon = toDate(now.plus(Duration.ofMillis(2 * sweepIntervalMs)));
+        List<Document> pipeline = messageBucketService.isEnabled()
+                ? List.of(
+                        new Document("$match", new Document("expireAt", new Document("$lt", horizon))
+                                .append("messages.isRead", false)),
+                        new Document("$group", new Document("_id", "$participants")))
+                : List.of(
+                        new Document("$match", new Document("expireAt", new Document("$lt", horizon))
+                                .append("isRead", false)),
+                        new Document("$group", new Document("_id", participants())));
+        String collection = mongoTemplate.getCollectionName(
+                messageBucketService.isEnabled() ? MessageBucket.class : Message.class);
+
+        long extended = 0;
+        for (Document row : mongoTemplate.getCollection(collection).aggregate(pipeline)) {
+            List<?> participants = row.getList("_id", Object.class);
+            if (participants == null || participants.size() < 2 || participants.get(0) == null
+                    || participants.get(1) == null) {
+                continue;
+            }
+            extend(participants.get(0).toString(), participants.get(1).toString(), expiryFrom(now));
+            extended++;
+        }
+        if (extended > 0) {
+            System.out.println("Message retention: extended " + extended + " conversations with unread messages");
+        }
+        return extended;
+    }
+
+    public void forget(String user1, String user2) {
+        lastRefreshed.remove(MessageBucketService.conversationId(user1, user2));
+    }
+
+    // === BACKFILL ===
+
+    /**
+     * Stamps messages stored before retention was enabled. Each conversation expires
+     * inactive-days after its own latest message, so conversations that have already been
+     * quiet for longer are removed by the next TTL pass.
+     */
+    public long backfill() {
+        if (!isEnabled()) {
+            throw new RuntimeException("Message retention is disabled");
+        }
+        if (messageBucketService.isEnabled()) {
+            return backfillBuckets();
+        }
+        List<Document> pipeline = List.of(
+                new Document("$group", new Document("_id", participants())
+                        .append("lastSentAt", new Document("$max", "$sentAt"))
+                        .append("unstamped", new Document("$sum", new Document("$cond", List.of(
+                                new Document("$ifNull", List.of("$expireAt", false)), 0, 1))))),
+                new Document("$match", new Document("unstamped", new Document("$gt", 0))));
+
+        long stamped = 0;
+        for (Document row : mongoTemplate.getCollection(mongoTemplate.getCollectionName(Message.class))
+                .aggregate(pipeline).allowDiskUse(true)) {
+            List<?> participants = row.getList("_id", Object.class);
+            Date lastSentAt = row.getDate("lastSentAt");
+            if (participants.size() < 2 || participants.get(0) == null || participants.get(1) == null
+                    || lastSentAt == null) {
+                continue;
+            }
+            String user1 = participants.get(0).toString();
+            String user2 = participants.get(1).toString();
+            LocalDateTime expireAt = expiryFrom(LocalDateTime.ofInstant(lastSentAt.toInstant(), ZoneId.systemDefault()));
+            Update update = new Update().set("expireAt", expireAt);
+
+            stamped += mongoTemplate.updateMulti(Query.query(new Criteria().andOperator(
+                    conversation(user1, user2), Criteria.where("expireAt").exists(false))),
+                    update, Message.class).getModifiedCount();
+            mongoTemplate.updateMulti(Query.query(Criteria.where("conversationId")
+                    .is(MessageBucketService.conversationId(user1, user2))
+                    .and("expireAt").exists(false)), update, MessageBucket.class);
+            mongoTemplate.updateMulti(Query.query(new Criteria().andOperator(
+                    new Criteria().orOperator(
+                            Criteria.where("userId").is(user1).and("peerId").is(user2),
+                            Criteria.where("userId").is(user2).and("peerId").is(user1)),
+                    Criteria.where("expireAt").exists(false))), update, MessageSearchTerm.class);
+        }
+        return stamped;
+    }
+
+    // Same as backfill, for the bucketed layout: buckets are stamped per conversation and
+    // the number of messages they hold is returned
+    private long backfillBuckets() {
+        List<Document> pipeline = List.of(
+                new Document("$group", new Document("_id", "$participants")
+                        .append("lastSentAt", new Document("$max", "$lastSentAt"))
+                        .append("unstamped", new Document("$sum", new Document("$cond", List.of(
+                                new Document("$ifNull", List.of("$expireAt", false)), 0, "$count"))))),
+                new Document("$match", new Document("unstamped", new Document("$gt", 0))));
+
+        long stamped = 0;
+        for (Document row : mongoTemplate.getCollection(mongoTemplate.getCollectionName(MessageBucket.class))
+                .aggregate(pipeline).allowDiskUse(true)) {
+            List<?> participants = row.getList("_id", Object.class);
+            Date lastSentAt = row.getDate("lastSentAt");
+            if (participants == null || participants.size() < 2 || lastSentAt == null) {
+                continue;
+            }
+            String user1 = participants.get(0).toString();
+            String user2 = participants.get(1).toString();
+            LocalDateTime expireAt = expiryFrom(LocalDateTime.ofInstant(lastSentAt.toInstant(), ZoneId.systemDefault()));
+            Update update = new Update().set("expireAt", expireAt);
+
+            mongoTemplate.updateMulti(Query.query(Criteria.where("conversationId")
+                    .is(MessageBucketService.conversationId(user1, user2))
+                    .and("expireAt").exists(false)), update, MessageBucket.class);
+            mongoTemplate.updateMulti(Query.query(new Criteria().andOperator(
+                    new Criteria().orOperator(
+                            Criteria.where("userId").is(user1).and("peerId").is(user2),
+                            Criteria.where("userId").is(user2).and("peerId").is(user1)),
+                    Criteria.where("expireAt").exists(false))), update, MessageSearchTerm.class);
+            stamped += ((Number) row.get("unstamped")).longValue();
+        }
+        return stamped;
+    }
+
+    // === HELPERS ===
+
+    private LocalDateTime expiryFrom(LocalDateTime lastActivity) {
+        return lastActivity.plusDays(inactiveDays);
+    }
+
+    private static Date toDate(LocalDateTime time) {
+        return Date.from(time.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    // The sorted [sender, receiver] pair of a stored message, as a group key
+    private static Document participants() {
+        return new Document("$cond", List.of(
+                new Document("$lt", List.of("$sender", "$receiver")),
+                List.of("$sender", "$receiver"),
+                List.of("$receiver", "$sender")));
+    }
+
+    private static Criteria conversation(String user1, String user2) {
+        return new Criteria().orOperator(
+                Criteria.where("sender").is(user1).and("receiver").is(user2),
+                Criteria.where("sender").is(user2).and("receiver").is(user1));
+    }
+}
@@ -0,0 +1,303 @@
+package com.housetreasure.service;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import com.housetreasure.dto.MessageSearchHit;
+import com.housetreasure.model.Message;
+import com.housetreasure.model.MessageBucket;
+import com.housetreasure.model.MessageSearchTerm;
+import com.housetreasure.repository.MessageRepository;
+
+/**
+ * Tokenized search index over message content, partitioned by participant.
+ *
+ * Every message produces one posting per distinct term for the sender and for the
+ * receiver, so a search only touches the postings of the searching user. Postings are
+ * written when a message is saved and removed together with the message.
+ */
+@Service
+public class MessageSearchService {
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int MIN_TERM_LENGTH = 2;
+    private static final int MAX_TERM_LENGTH = 64;
+    private static final int MAX_TERMS_PER_MESSAGE = 200;
+    private static final int REBUILD_BATCH_SIZE = 500;
+
+    private final MongoTemplate mongoTemplate;
+    private final MessageRepository messageRepository;
+    private final MessageBucketService messageBucketService;
+
+    @Value("${messages.search.context-size:1}")
+    private int contextSize;
+
+    public MessageSearchService(MongoTemplate mongoTemplate, MessageRepository messageRepository,
+                                MessageBucketService messageBucketService) {
+        this.mongoTemplate = mongoTemplate;
+        this.messageRepository = messageRepository;
+        this.messageBucketService = messageBucketService;
+    }
+
+    // === INDEX MAINTENANCE ===
+
+    public void index(Message message) {
+        List<MessageSearchTerm> postings = postingsFor(message);
+        if (!postings.isEmpty()) {
+            mongoTemplate.insert(postings, MessageSearchTerm.class);
+        }
+    }
+
+    public void reindex(Message message) {
+        remove(message.getId());
+        index(message);
+    }
+
+    public void remove(String messageId) {
+        mongoTemplate.remove(Query.query(Criteria.where("messageId").is(messageId)), MessageSearchTerm.class);
+    }
+
+    public void removeConversation(String user1, String user2) {
+        mongoTemplate.remove(Query.query(new Criteria().orOperator(
+                Criteria.where("userId").is(user1).and("peerId").is(user2),
+                Criteria.where("userId").is(user2).and("peerId").is(user1))),
+                MessageSearchTerm.class);
+    }
+
+    /**
+     * Rebuilds the whole index from the stored messages (the buckets when the bucketed
+     * layout is enabled). Searches return partial results while this runs.
+     */
+    public long rebuild() {
+        mongoTemplate.remove(new Query(), MessageSearchTerm.class);
+
+        long indexed = 0;
+        List<MessageSearchTerm> batch = new ArrayList<>();
+        try (Stream<Message> messages = messageBucketService.isEnabled()
+                ? messageBucketService.streamAll()
+                : mongoTemplate.stream(new Query(), Message.class)) {
+            for (Message message : (Iterable<Message>) messages::iterator) {
+                batch.addAll(postingsFor(message));
+                indexed++;
+                if (indexed % REBUILD_BATCH_SIZE == 0 && !batch.isEmpty()) {
+                    mongoTemplate.insert(batch, MessageSearchTerm.class);
+                    batch = new ArrayList<>();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            mongoTemplate.insert(batch, MessageSearchTerm.class);
+        }
+        return indexed;
+    }
+
+    // === SEARCH ===
+
+    /**
+     * Returns one page of a user's messages matching the query, ranked by the number of
+     * distinct query terms they contain, then term frequency, then recency. The last query
+     * term also matches as a prefix so partially typed words still find results; all
+     * postings it matches in a message count as that one term.
+     */
+    public List<MessageSearchHit> search(String userId, String queryText, int page, int size) {
+        List<String> terms = new ArrayList<>(tokenize(queryText).keySet());
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+
+        List<String> exactTerms = terms.subList(0, terms.size() - 1);
+        String prefixTerm = terms.get(terms.size() - 1);
+        List<Object> termMatchers = new ArrayList<>(exactTerms);
+        termMatchers.add(Pattern.compile("^" + prefixTerm));
+
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("userId").is(userId).and("term").in(termMatchers)),
+                // The query term each posting answers: itself when typed in full, otherwise the prefix
+                stage("$addFields", new Document("queryTerm", new Document("$cond", List.of(
+                        new Document("$in", List.of("$term", exactTerms)), "$term", prefixTerm)))),
+                stage("$group", new Document("_id", "$messageId")
+                        .append("queryTerms", new Document("$addToSet", "$queryTerm"))
+                        .append("score", new Document("$sum", "$frequency"))
+                        .append("sentAt", new Document("$first", "$sentAt"))
+                        .append("peerId", new Document("$first", "$peerId"))),
+                stage("$addFields", new Document("matchedTerms", new Document("$size", "$queryTerms"))),
+                stage("$sort", new Document("matchedTerms", -1).append("score", -1).append("sentAt", -1)),
+                Aggregation.skip((long) Math.max(0, page) * Math.max(1, size)),
+                Aggregation.limit(Math.max(1, size)));
+
+        List<Document> rows = mongoTemplate.aggregate(aggregation, MessageSearchTerm.class, Document.class)
+                .getMappedResults();
+        if (rows.isEmpty()) {
+            return List.of();
+        }
+
+        List<String> ids = rows.stream().map(row -> row.getString("_id")).toList();
+        Map<String, Message> messages = new LinkedHashMap<>();
+        (messageBucketService.isEnabled() ? messageBucketService.findAllById(ids) : messageRepository.findAllById(ids))
+                .forEach(message -> messages.put(message.getId(), message));
+
+        List<Message> found = new ArrayList<>();
+        List<Document> foundRows = new ArrayList<>();
+        for (Document row : rows) {
+            Message message = messages.get(row.getString("_id"));
+            if (message == null) {
+                // Posting outlived its message (deleted or expired); it is cleaned up on the next delete, TTL pass or rebuild
+                continue;
+            }
+            found.add(message);
+            foundRows.add(row);
+        }
+
+        Map<String, List<Message>> context = context(found);
+        List<MessageSearchHit> hits = new ArrayList<>(found.size());
+        for (int i = 0; i < found.size(); i++) {
+            Document row = foundRows.get(i);
+            List<Message> before = new ArrayList<>(context.getOrDefault(contextKey(i, true), List.of()));
+            Collections.reverse(before);
+            hits.add(new MessageSearchHit(
+                    found.get(i),
+                    row.getString("peerId"),
+                    ((Number) row.get("matchedTerms")).intValue(),
+                    ((Number) row.get("score")).longValue(),
+                    before,
+                    context.getOrDefault(contextKey(i, false), List.of())));
+        }
+        return hits;
+    }
+
+    // === CONTEXT ===
+
+    /**
+     * Loads the messages around every hit in one aggregation: one $unionWith branch per hit
+     * and side, each an indexed range read of the conversation (of its buckets under the
+     * bucketed layout). Keyed by contextKey; "before" lists come newest first.
+     */
+    private Map<String, List<Message>> context(List<Message> hits) {
+        Map<String, List<Message>> context = new LinkedHashMap<>();
+        if (contextSize <= 0) {
+            return context;
+        }
+        String collection = mongoTemplate.getCollectionName(
+                messageBucketService.isEnabled() ? MessageBucket.class : Message.class);
+        List<Document> pipeline = new ArrayList<>();
+        for (int i = 0; i < hits.size(); i++) {
+            Message hit = hits.get(i);
+            if (hit.getSentAt() == null || hit.getSender() == null || hit.getReceiver() == null) {
+                continue;
+            }
+            for (boolean before : new boolean[] { true, false }) {
+                List<Document> branch = new ArrayList<>(contextBranch(hit, before));
+                branch.add(new Document("$addFields", new Document("contextKey", contextKey(i, before))));
+                if (pipeline.isEmpty()) {
+                    pipeline.addAll(branch);
+                } else {
+                    pipeline.add(new Document("$unionWith", new Document("coll", collection).append("pipeline", branch)));
+                }
+            }
+        }
+        if (pipeline.isEmpty()) {
+            return context;
+        }
+        for (Document row : mongoTemplate.getCollection(collection).aggregate(pipeline)) {
+            String key = row.getString("contextKey");
+            context.computeIfAbsent(key, k -> new ArrayList<>()).add(mongoTemplate.getConverter().read(Message.class, row));
+        }
+        return context;
+    }
+
+    private List<Document> contextBranch(Message hit, boolean before) {
+        Date sentAt = Date.from(hit.getSentAt().atZone(ZoneId.systemDefault()).toInstant());
+        int direction = before ? -1 : 1;
+        Document sentAtRange = new Document(before ? "$lt" : "$gt", sentAt);
+        List<Document> stages = new ArrayList<>();
+        if (messageBucketService.isEnabled()) {
+            // Every bucket holds at least one message, so contextSize + 1 buckets from the hit's own cover the context
+            stages.add(new Document("$match", new Document("conversationId",
+                    MessageBucketService.conversationId(hit.getSender(), hit.getReceiver()))
+                    .append(before ? "firstSentAt" : "lastSentAt", new Document(before ? "$lte" : "$gte", sentAt))));
+            stages.add(new Document("$sort", new Document("firstSentAt", direction)));
+            stages.add(new Document("$limit", contextSize + 1));
+            stages.add(new Document("$unwind", "$messages"));
+            stages.add(new Document("$replaceRoot", new Document("newRoot", "$messages")));
+            stages.add(new Document("$match", new Document("sentAt", sentAtRange)));
+        } else {
+            stages.add(new Document("$match", new Document("$or", List.of(
+                    new Document("sender", hit.getSender()).append("receiver", hit.getReceiver()),
+                    new Document("sender", hit.getReceiver()).append("receiver", hit.getSender())))
+                    .append("sentAt", sentAtRange)));
+        }
+        stages.add(new Document("$sort", new Document("sentAt", direction)));
+        stages.add(new Document("$limit", contextSize));
+        return stages;
+    }
+
+    private static String contextKey(int hit, boolean before) {
+        return hit + (before ? ":before" : ":after");
+    }
+
+    private static AggregationOperation stage(String operator, Document body) {
+        return context -> new Document(operator, body);
+    }
+
+    // === TOKENIZATION ===
+
+    private List<MessageSearchTerm> postingsFor(Message message) {
+        if (message.getId() == null || message.getContent() == null) {
+            return List.of();
+        }
+        Map<String, Integer> terms = tokenize(message.getContent());
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+
+        List<MessageSearchTerm> postings = new ArrayList<>();
+        addPostings(postings, message.getSender(), message.getReceiver(), terms, message);
+        if (message.getReceiver() != null && !message.getReceiver().equals(message.getSender())) {
+            addPostings(postings, message.getReceiver(), message.getSender(), terms, message);
+        }
+        return postings;
+    }
+
+    private static void addPostings(List<MessageSearchTerm> postings, String userId, String peerId,
+                                    Map<String, Integer> terms, Message message) {
+        if (userId == null) {
+            return;
+        }
+        terms.forEach((term, frequency) -> postings.add(
+                new MessageSearchTerm(userId, peerId, term, message.getId(), frequency,
+                        message.getSentAt(), message.getExpireAt())));
+    }
+
+    static Map<String, Integer> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return Map.of();
+        }
+        return TOKEN_SEPARATOR.splitAsStream(text.toLowerCase(Locale.ROOT))
+                .filter(token -> token.length() >= MIN_TERM_LENGTH)
+                .map(token -> token.length() > MAX_TERM_LENGTH ? token.substring(0, MAX_TERM_LENGTH) : token)
+                .collect(Collectors.groupingBy(Function.identity(), LinkedHashMap::new,
+                        Collectors.summingInt(token -> 1)))
+                .entrySet().stream()
+                .limit(MAX_TERMS_PER_MESSAGE)
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue,
+                        (a, b) -> a, LinkedHashMap::new));
+    }
+}
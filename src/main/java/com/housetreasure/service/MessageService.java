@@ -1,38 +1,103 @@
 package com.housetreasure.service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
+import com.housetreasure.dto.MessageSearchHit;
 import com.housetreasure.model.Message;
 import com.housetreasure.repository.MessageRepository;
+import com.mongodb.client.result.UpdateResult;
 
 @Service
 public class MessageService {
     private final MessageRepository messageRepository;
-
-    public MessageService(MessageRepository messageRepository) {
+    private final MongoTemplate mongoTemplate;
+    private final UnreadCounterService unreadCounterService;
+    private final MessageSearchService messageSearchService;
+    private final MessageBucketService messageBucketService;
+    private final MessageBatchWriter messageBatchWriter;
+    private final MessageRetentionService messageRetentionService;
+
+    public MessageService(MessageRepository messageRepository, MongoTemplate mongoTemplate,
+                          UnreadCounterService unreadCounterService,
+                          MessageSearchService messageSearchService,
+                          MessageBucketService messageBucketService,
+                          MessageBatchWriter messageBatchWriter,
+                          MessageRetentionService messageRetentionService) {
         this.messageRepository = messageRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.unreadCounterService = unreadCounterService;
+        this.messageSearchService = messageSearchService;
+        this.messageBucketService = messageBucketService;
+        this.messageBatchWriter = messageBatchWriter;
+        this.messageRetentionService = messageRetentionService;
     }
 
     // === BASIC OPERATIONS ===
+    // With the bucketed layout (MessageBucketService) every read and write below goes to the
+    // buckets only and the messages collection is left alone.
     
     public List<Message> getAllMessages() {
+        if (messageBucketService.isEnabled()) {
+            return messageBucketService.findMessages(null, null, null, 0);
+        }
         return messageRepository.findAll();
     }
 
     public Message saveMessage(Message message) {
+        boolean isNew = message.getId() == null;
         message.setSentAt(LocalDateTime.now());
         message.setUpdatedAt(LocalDateTime.now());
-        return messageRepository.save(message);
+        if (isNew) {
+            messageRetentionService.stamp(message);
+        }
+        Message saved;
+        if (messageBucketService.isEnabled()) {
+            saved = isNew || !messageBucketService.replace(message) ? messageBucketService.insert(message) : message;
+        } else if (isNew && messageBatchWriter.isEnabled()) {
+            // New messages go through the group-commit writer when it is enabled. It runs the
+            // follow-up itself once the message is stored, even if this call times out first
+            return messageBatchWriter.write(message, this::onMessageStored);
+        } else {
+            saved = messageRepository.save(message);
+        }
+
+        if (!isNew) {
+            // Overwrites of existing messages are not tracked incrementally
+            unreadCounterService.invalidate(saved.getReceiver(), saved.getSender());
+            messageSearchService.reindex(saved);
+        } else {
+            onMessageStored(saved);
+        }
+        return saved;
+    }
+
+    // Counters, search postings and retention of a newly stored message
+    private void onMessageStored(Message saved) {
+        if (!Boolean.TRUE.equals(saved.getIsRead())) {
+            unreadCounterService.onMessageCreated(saved.getReceiver(), saved.getSender());
+        }
+        messageSearchService.index(saved);
+        messageRetentionService.onMessageSent(saved);
     }
 
     public Optional<Message> getMessageById(String id) {
+        if (messageBucketService.isEnabled()) {
+            return messageBucketService.findById(id);
+        }
         return messageRepository.findById(id);
     }
 
@@ -70,104 +135,205 @@ public class MessageService {
     }
 
     public List<Message> getConversationHistory(String user1, String user2) {
+        if (messageBucketService.isEnabled()) {
+            return messageBucketService.findConversation(user1, user2);
+        }
         return messageRepository.findConversationBetweenUsers(user1, user2)
                 .stream()
                 .sorted((m1, m2) -> m1.getSentAt().compareTo(m2.getSentAt()))
                 .collect(Collectors.toList());
     }
 
+    public List<Message> getConversationPage(String user1, String user2, LocalDateTime before, int limit) {
+        int size = Math.max(1, limit);
+        if (messageBucketService.isEnabled()) {
+            return messageBucketService.findConversationPage(user1, user2, before, size);
+        }
+        List<Message> page = new ArrayList<>(messageRepository.findConversationBefore(user1, user2,
+                before != null ? before : LocalDateTime.now().plusYears(100),
+                PageRequest.of(0, size, Sort.by(Sort.Direction.DESC, "sentAt"))));
+        Collections.reverse(page);
+        return page;
+    }
+
     // === MESSAGE STATUS MANAGEMENT ===
     public Message markAsRead(String messageId) {
-        return messageRepository.findById(messageId)
-                .map(message -> {
-                    message.setIsRead(true);
-                    message.setReadAt(LocalDateTime.now());
-                    message.setStatus("READ");
-                    message.setUpdatedAt(LocalDateTime.now());
-                    return messageRepository.save(message);
-                })
-                .orElse(null);
+        LocalDateTime now = LocalDateTime.now();
+        // Only the unread -> read transition touches the counters
+        Message message = messageBucketService.isEnabled()
+                ? messageBucketService.markRead(messageId, now)
+                : mongoTemplate.findAndModify(
+                        Query.query(Criteria.where("id").is(messageId).and("isRead").is(false)),
+                        new Update().set("isRead", true).set("readAt", now).set("status", "READ").set("updatedAt", now),
+                        FindAndModifyOptions.options().returnNew(true),
+                        Message.class);
+
+        if (message == null) {
+            return getMessageById(messageId).orElse(null);
+        }
+        unreadCounterService.onMessagesRead(message.getReceiver(), message.getSender(), 1);
+        return message;
     }
 
     public Message markAsUnread(String messageId) {
-        return messageRepository.findById(messageId)
-                .map(message -> {
-                    message.setIsRead(false);
-                    message.setReadAt(null);
-                    message.setStatus("DELIVERED");
-                    message.setUpdatedAt(LocalDateTime.now());
-                    return messageRepository.save(message);
-                })
-                .orElse(null);
+        LocalDateTime now = LocalDateTime.now();
+        Message message = messageBucketService.isEnabled()
+                ? messageBucketService.markUnread(messageId, now)
+                : mongoTemplate.findAndModify(
+                        Query.query(Criteria.where("id").is(messageId).and("isRead").is(true)),
+                        new Update().set("isRead", false).unset("readAt").set("status", "DELIVERED")
+                                .set("updatedAt", now),
+                        FindAndModifyOptions.options().returnNew(true),
+                        Message.class);
+
+        if (message == null) {
+            return getMessageById(messageId).orElse(null);
+        }
+        unreadCounterService.onMessageUnread(message.getReceiver(), message.getSender());
+        messageRetentionService.onMessageUnread(message);
+        return message;
     }
 
     public void markAllAsRead(String receiver, String sender) {
-        List<Message> unreadMessages = messageRepository.findBySenderAndReceiverOrderBySentAtAsc(sender, receiver)
-                .stream()
-                .filter(message -> !message.getIsRead())
-                .collect(Collectors.toList());
-        
-        unreadMessages.forEach(message -> {
-            message.setIsRead(true);
-            message.setReadAt(LocalDateTime.now());
-            message.setStatus("READ");
-            messageRepository.save(message);
-        });
+        LocalDateTime now = LocalDateTime.now();
+        if (messageBucketService.isEnabled()) {
+            // Bucket updates report buckets, not messages, so the counters are recounted instead
+            messageBucketService.markAllRead(receiver, sender, now);
+            unreadCounterService.invalidate(receiver, sender);
+            return;
+        }
+        UpdateResult result = mongoTemplate.updateMulti(
+                Query.query(Criteria.where("sender").is(sender).and("receiver").is(receiver).and("isRead").is(false)),
+                new Update().set("isRead", true).set("readAt", now).set("status", "READ").set("updatedAt", now),
+                Message.class);
+
+        unreadCounterService.onMessagesRead(receiver, sender, result.getModifiedCount());
     }
 
     // === CONVERSATION RETRIEVAL ===
     public List<Message> getAllConversationsForUser(String userId) {
+        if (messageBucketService.isEnabled()) {
+            return messageBucketService.findMessages(userId, null, null, 0);
+        }
         return messageRepository.findAllConversationsForUser(userId);
     }
 
     public List<Message> getUnreadMessages(String userId) {
+        if (messageBucketService.isEnabled()) {
+            return messageBucketService.findMessages(userId,
+                    Criteria.where("receiver").is(userId).and("isRead").is(false), null, 0);
+        }
         return messageRepository.findByReceiverAndIsRead(userId, false);
     }
 
     public long getUnreadMessageCount(String userId) {
-        return messageRepository.countByReceiverAndIsRead(userId, false);
+        return unreadCounterService.getUnreadCount(userId);
+    }
+
+    public long getUnreadMessageCount(String userId, String peerId) {
+        return unreadCounterService.getUnreadCount(userId, peerId);
     }
 
     // === CONVERSATION FILTERING ===
     public List<Message> getConversationsByItem(String itemId) {
+        if (messageBucketService.isEnabled()) {
+            return messageBucketService.findMessages(null, Criteria.where("item").is(itemId),
+                    Sort.by(Sort.Direction.ASC, "sentAt"), 0);
+        }
         return messageRepository.findByItemOrderBySentAtAsc(itemId);
     }
 
     public List<Message> getConversationsByTransaction(String transactionId) {
+        if (messageBucketService.isEnabled()) {
+            return messageBucketService.findMessages(null, Criteria.where("transaction").is(transactionId),
+                    Sort.by(Sort.Direction.ASC, "sentAt"), 0);
+        }
         return messageRepository.findByTransactionOrderBySentAtAsc(transactionId);
     }
 
     public List<Message> getMessagesByDateRange(LocalDateTime start, LocalDateTime end) {
+        if (messageBucketService.isEnabled()) {
+            return messageBucketService.findSentBetween(start, end);
+        }
         return messageRepository.findBySentAtBetween(start, end);
     }
 
-    public List<Message> getReadConversations(String userId) {
-        return messageRepository.findAllConversationsForUser(userId)
-                .stream()
-                .filter(message -> message.getReceiver().equals(userId) && message.getIsRead())
-                .collect(Collectors.toList());
+    public List<Message> getReadConversations(String userId, int limit) {
+        return getReceivedByReadState(userId, true, limit);
+    }
+
+    public List<Message> getUnreadConversations(String userId, int limit) {
+        return getReceivedByReadState(userId, false, limit);
+    }
+
+    // Newest messages received by the user in one read state
+    private List<Message> getReceivedByReadState(String userId, boolean isRead, int limit) {
+        if (messageBucketService.isEnabled()) {
+            return messageBucketService.findMessages(userId,
+                    Criteria.where("receiver").is(userId).and("isRead").is(isRead),
+                    Sort.by(Sort.Direction.DESC, "sentAt"), Math.max(1, limit));
+        }
+        return messageRepository.findByReceiverAndIsReadOrderBySentAtDesc(
+                userId, isRead, PageRequest.of(0, Math.max(1, limit)));
     }
 
-    public List<Message> getUnreadConversations(String userId) {
-        return messageRepository.findAllConversationsForUser(userId)
+    // === SEARCH ===
+    public List<Message> searchMessages(String userId, String searchTerm, int page, int size) {
+        return messageSearchService.search(userId, searchTerm, page, size)
                 .stream()
-                .filter(message -> message.getReceiver().equals(userId) && !message.getIsRead())
+                .map(MessageSearchHit::message)
                 .collect(Collectors.toList());
     }
 
-    // === SEARCH ===
-    public List<Message> searchMessages(String userId, String searchTerm) {
-        return messageRepository.searchMessagesByContent(userId, searchTerm);
+    public List<MessageSearchHit> searchMessagesWithContext(String userId, String searchTerm, int page, int size) {
+        return messageSearchService.search(userId, searchTerm, page, size);
+    }
+
+    public long rebuildSearchIndex() {
+        return messageSearchService.rebuild();
+    }
+
+    public long migrateToBuckets() {
+        return messageBucketService.migrate();
     }
 
     // === CONVERSATION MANAGEMENT ===
     public void deleteConversation(String user1, String user2) {
-        List<Message> conversation = messageRepository.findConversationBetweenUsers(user1, user2);
-        messageRepository.deleteAll(conversation);
+        // One deleteMany per collection instead of loading and deleting message by message
+        if (messageBucketService.isEnabled()) {
+            messageBucketService.removeConversation(user1, user2);
+        }
+        // Also under the bucketed layout, so a later migrate() cannot bring legacy copies back
+        messageRepository.deleteConversationBetweenUsers(user1, user2);
+        messageSearchService.removeConversation(user1, user2);
+        unreadCounterService.invalidate(user1, user2);
+        unreadCounterService.invalidate(user2, user1);
+        messageRetentionService.forget(user1, user2);
+    }
+
+    public long applyRetentionToExistingMessages() {
+        return messageRetentionService.backfill();
     }
 
     public void deleteMessage(String messageId) {
-        messageRepository.deleteById(messageId);
+        Message removed;
+        if (messageBucketService.isEnabled()) {
+            removed = messageBucketService.findById(messageId).orElse(null);
+            if (removed != null) {
+                messageBucketService.remove(removed);
+                // The legacy copy too, so a later migrate() cannot bring it back
+                messageRepository.deleteById(messageId);
+            }
+        } else {
+            removed = mongoTemplate.findAndRemove(Query.query(Criteria.where("id").is(messageId)), Message.class);
+        }
+        if (removed == null) {
+            return;
+        }
+        messageSearchService.remove(messageId);
+        if (!Boolean.TRUE.equals(removed.getIsRead())) {
+            unreadCounterService.onMessagesRead(removed.getReceiver(), removed.getSender(), 1);
+        }
     }
 
     // === PRICE NEGOTIATION ===
@@ -244,6 +410,10 @@ public class MessageService {
     public Message reportMessage(String messageId, String reporterId, String reason) {
         // This would typically create a report record in a separate table
         // For now, we'll mark the message with a special status
+        if (messageBucketService.isEnabled()) {
+            Message reported = messageBucketService.setStatus(messageId, "REPORTED", LocalDateTime.now());
+            return reported != null ? reported : messageBucketService.findById(messageId).orElse(null);
+        }
         return messageRepository.findById(messageId)
                 .map(message -> {
                     message.setStatus("REPORTED");
@@ -255,15 +425,14 @@ public class MessageService {
 
     // === NOTIFICATIONS ===
     public List<Message> getRecentNotifications(String userId, int limit) {
-        return getUnreadMessages(userId)
-                .stream()
-                .sorted((m1, m2) -> m2.getSentAt().compareTo(m1.getSentAt()))
-                .limit(limit)
-                .collect(Collectors.toList());
+        return getReceivedByReadState(userId, false, limit);
     }
 
     // === UTILITY METHODS ===
     public Message getLatestMessageBetweenUsers(String user1, String user2) {
+        if (messageBucketService.isEnabled()) {
+            return messageBucketService.findLatest(user1, user2);
+        }
         return messageRepository.findLatestMessageBetweenUsers(user1, user2, 
                 PageRequest.of(0, 1, Sort.by(Sort.Direction.DESC, "sentAt")))
                 .getContent()
@@ -273,6 +442,10 @@ public class MessageService {
     }
 
     public List<Message> getMediaMessages(String userId, String mediaType) {
+        if (messageBucketService.isEnabled()) {
+            return messageBucketService.findMessages(userId,
+                    Criteria.where("mediaType").is(mediaType).and("sender").is(userId), null, 0);
+        }
         return messageRepository.findByMediaTypeAndSender(mediaType, userId);
     }
 }
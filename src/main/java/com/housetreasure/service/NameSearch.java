@@ -0,0 +1,36 @@
+package com.housetreasure.service;
+
+import java.util.Locale;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+/**
+ * Arguments for the trigram name searches in UserRepository and CategoryRepository, which
+ * compare lower-cased columns against a lower-cased query, both as a substring (LIKE) and
+ * by similarity, and order by similarity themselves.
+ */
+final class NameSearch {
+    static final int MAX_PAGE_SIZE = 100;
+
+    private NameSearch() {
+    }
+
+    // Trimmed and lower-cased, as the indexed expressions are; null when there is nothing to search for
+    static String normalize(String query) {
+        if (query == null || query.isBlank()) {
+            return null;
+        }
+        return query.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // "%query%" with LIKE wildcards in the query matched literally
+    static String containsPattern(String normalized) {
+        return "%" + normalized.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+
+    // The query's own ordering applies, so any requested sort is dropped
+    static Pageable page(Pageable pageable) {
+        return PageRequest.of(pageable.getPageNumber(), Math.min(pageable.getPageSize(), MAX_PAGE_SIZE));
+    }
+}
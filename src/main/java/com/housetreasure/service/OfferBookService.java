@@ -0,0 +1,263 @@
+package com.housetreasure.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.housetreasure.dto.OfferSummary;
+import com.housetreasure.model.Offer;
+import com.housetreasure.model.Offer.OfferStatus;
+import com.housetreasure.repository.OfferRepository;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * In-memory offer book per item: the active (PENDING/COUNTERED) offers sorted by amount,
+ * plus the item's total offer count. Offers are held as OfferSummary, so a book never
+ * keeps entities or user proxies alive.
+ *
+ * Books are loaded from OfferRepository on first use and then kept current by OfferService
+ * and OfferExpiryScheduler. Highest offer, offer count and the pending list are cached on
+ * each book and recomputed on change, so reads do not allocate. At most
+ * offers.book.max-items books are kept, least recently used first out. The book only sees
+ * changes made through this instance; offer writes from elsewhere should call invalidate.
+ */
+@Service
+public class OfferBookService {
+    private static final EnumSet<OfferStatus> ACTIVE = EnumSet.of(OfferStatus.PENDING, OfferStatus.COUNTERED);
+
+    private final OfferRepository offerRepository;
+
+    @Value("${offers.book.max-items:10000}")
+    private int maxItems;
+
+    private Map<String, OfferBook> books;
+
+    // offerId -> itemId for active offers in loaded books, so expiry by id can find its book
+    private final Map<Long, String> itemByOffer = new ConcurrentHashMap<>();
+
+    // itemId -> dirty flag for books being loaded; a change during the load discards the result
+    private final Map<String, AtomicBoolean> loading = new ConcurrentHashMap<>();
+
+    public OfferBookService(OfferRepository offerRepository) {
+        this.offerRepository = offerRepository;
+    }
+
+    @PostConstruct
+    void init() {
+        books = Collections.synchronizedMap(new LinkedHashMap<String, OfferBook>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, OfferBook> eldest) {
+                if (size() > maxItems) {
+                    eldest.getValue().forEachOfferId(itemByOffer::remove);
+                    return true;
+                }
+                return false;
+            }
+        });
+    }
+
+    // === READS ===
+
+    public Optional<OfferSummary> getHighestOffer(String itemId) {
+        return book(itemId).highest;
+    }
+
+    public long getOfferCount(String itemId) {
+        return book(itemId).totalCount;
+    }
+
+    public long getActiveOfferCount(String itemId) {
+        return book(itemId).activeCount;
+    }
+
+    // PENDING offers only, newest first
+    public List<OfferSummary> getPendingOffers(String itemId) {
+        return book(itemId).pending();
+    }
+
+    // === UPDATES ===
+
+    public void onOfferSaved(Offer offer, boolean isNew) {
+        if (offer.getItemId() == null || offer.getId() == null) {
+            return;
+        }
+        OfferBook book = books.get(offer.getItemId());
+        if (book == null) {
+            markDirty(offer.getItemId());
+            return;
+        }
+        book.apply(OfferSummary.from(offer), isNew);
+        if (ACTIVE.contains(offer.getStatus())) {
+            itemByOffer.put(offer.getId(), offer.getItemId());
+        } else {
+            itemByOffer.remove(offer.getId());
+        }
+    }
+
+    public void onOffersExpired(Collection<Long> offerIds) {
+        for (Long offerId : offerIds) {
+            String itemId = itemByOffer.remove(offerId);
+            if (itemId == null) {
+                continue;
+            }
+            OfferBook book = books.get(itemId);
+            if (book != null) {
+                book.removeIfPending(offerId);
+            }
+        }
+    }
+
+    public void invalidate(String itemId) {
+        markDirty(itemId);
+        OfferBook book = books.remove(itemId);
+        if (book != null) {
+            book.forEachOfferId(itemByOffer::remove);
+        }
+    }
+
+    public void invalidateAll() {
+        loading.values().forEach(dirty -> dirty.set(true));
+        books.clear();
+        itemByOffer.clear();
+    }
+
+    // === LOADING ===
+
+    private OfferBook book(String itemId) {
+        OfferBook book = books.get(itemId);
+        if (book != null) {
+            return book;
+        }
+
+        AtomicBoolean dirty = new AtomicBoolean(false);
+        loading.put(itemId, dirty);
+        try {
+            OfferBook loaded = new OfferBook(
+                    offerRepository.findSummariesByItemIdAndStatusIn(itemId, ACTIVE),
+                    offerRepository.countByItemId(itemId));
+            if (dirty.get()) {
+                // Changed while loading: serve this read from what was loaded, don't cache it
+                return loaded;
+            }
+            OfferBook existing = books.putIfAbsent(itemId, loaded);
+            if (existing != null) {
+                return existing;
+            }
+            loaded.forEachOfferId(offerId -> itemByOffer.put(offerId, itemId));
+            return loaded;
+        } finally {
+            loading.remove(itemId, dirty);
+        }
+    }
+
+    private void markDirty(String itemId) {
+        AtomicBoolean dirty = loading.get(itemId);
+        if (dirty != null) {
+            dirty.set(true);
+        }
+    }
+
+    // === BOOK ===
+
+    private static final class OfferBook {
+        private static final Comparator<OfferSummary> BY_AMOUNT = Comparator
+                .comparing(OfferSummary::offeredAmount, Comparator.reverseOrder())
+                .thenComparing(OfferSummary::id);
+        private static final Comparator<OfferSummary> NEWEST_FIRST = Comparator
+                .comparing(OfferSummary::createdAt, Comparator.nullsLast(Comparator.reverseOrder()))
+                .thenComparing(OfferSummary::id, Comparator.reverseOrder());
+
+        private final TreeSet<OfferSummary> byAmount = new TreeSet<>(BY_AMOUNT);
+        private final Map<Long, OfferSummary> byId = new HashMap<>();
+
+        private volatile Optional<OfferSummary> highest = Optional.empty();
+        private volatile long activeCount;
+        private volatile long totalCount;
+        private volatile List<OfferSummary> pending;
+
+        OfferBook(List<OfferSummary> activeOffers, long totalCount) {
+            activeOffers.forEach(this::add);
+            this.totalCount = totalCount;
+            refresh();
+        }
+
+        synchronized void apply(OfferSummary offer, boolean isNew) {
+            remove(offer.id());
+            if (ACTIVE.contains(offer.status())) {
+                add(offer);
+            }
+            if (isNew) {
+                totalCount++;
+            }
+            refresh();
+        }
+
+        synchronized void removeIfPending(Long offerId) {
+            OfferSummary current = byId.get(offerId);
+            if (current != null && current.status() == OfferStatus.PENDING) {
+                remove(offerId);
+                refresh();
+            }
+        }
+
+        synchronized void forEachOfferId(Consumer<Long> action) {
+            byId.keySet().forEach(action);
+        }
+
+        List<OfferSummary> pending() {
+            List<OfferSummary> view = pending;
+            if (view != null) {
+                return view;
+            }
+            synchronized (this) {
+                if (pending == null) {
+                    List<OfferSummary> sorted = new ArrayList<>();
+                    for (OfferSummary offer : byAmount) {
+                        if (offer.status() == OfferStatus.PENDING) {
+                            sorted.add(offer);
+                        }
+                    }
+                    sorted.sort(NEWEST_FIRST);
+                    pending = Collections.unmodifiableList(sorted);
+                }
+                return pending;
+            }
+        }
+
+        private void add(OfferSummary offer) {
+            if (offer.id() == null || offer.offeredAmount() == null) {
+                return;
+            }
+            byId.put(offer.id(), offer);
+            byAmount.add(offer);
+        }
+
+        private void remove(Long offerId) {
+            OfferSummary previous = byId.remove(offerId);
+            if (previous != null) {
+                byAmount.remove(previous);
+            }
+        }
+
+        private void refresh() {
+            highest = byAmount.isEmpty() ? Optional.empty() : Optional.of(byAmount.first());
+            activeCount = byAmount.size();
+            pending = null;
+        }
+    }
+}
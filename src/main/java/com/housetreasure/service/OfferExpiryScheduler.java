@@ -0,0 +1,247 @@
+package com.housetreasure.service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.housetreasure.model.Offer;
+import com.housetreasure.model.Offer.OfferStatus;
+import com.housetreasure.repository.OfferRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Expires pending offers when their expiresAt passes.
+ *
+ * Deadlines live in a hierarchical timing wheel: 4 levels of 512 slots, the lowest level
+ * advancing one slot per offers.expiry.tick-ms. Scheduling and cancelling are O(1);
+ * entries in higher levels cascade down as the wheel turns. Cancelled or rescheduled
+ * offers are not removed from their slot, they are skipped when the slot fires because
+ * their deadline no longer matches. Due offers are expired with one bulk UPDATE per batch,
+ * guarded on status = PENDING so offers that changed in the meantime are left alone. A
+ * batch that fails goes back into the wheel offers.expiry.retry-delay-ms later, unless
+ * the offer has been given a new deadline since.
+ */
+@Service
+public class OfferExpiryScheduler {
+    private static final int WHEEL_BITS = 9;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4;
+    private static final long HORIZON_TICKS = 1L << (WHEEL_BITS * LEVELS);
+
+    private final OfferRepository offerRepository;
+    private final OfferBookService offerBookService;
+
+    @Value("${offers.expiry.enabled:true}")
+    private boolean enabled;
+
+    @Value("${offers.expiry.tick-ms:100}")
+    private long tickMs;
+
+    @Value("${offers.expiry.batch-size:500}")
+    private int batchSize;
+
+    @Value("${offers.expiry.retry-delay-ms:5000}")
+    private long retryDelayMs;
+
+    // offerId -> tick of its current deadline; anything else found in the wheel is stale
+    private final Map<Long, Long> deadlines = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    private final List<WheelEntry>[][] wheel = new List[LEVELS][WHEEL_SIZE];
+    private final List<Long> due = new ArrayList<>();
+    private long currentTick;
+
+    private ScheduledExecutorService ticker;
+
+    public OfferExpiryScheduler(OfferRepository offerRepository, OfferBookService offerBookService) {
+        this.offerRepository = offerRepository;
+        this.offerBookService = offerBookService;
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = 0; slot < WHEEL_SIZE; slot++) {
+                wheel[level][slot] = new ArrayList<>();
+            }
+        }
+    }
+
+    // === LIFECYCLE ===
+
+    @PostConstruct
+    void init() {
+        currentTick = System.currentTimeMillis() / tickMs;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        List<Object[]> pending = offerRepository.findExpiryDeadlines(OfferStatus.PENDING);
+        pending.forEach(row -> schedule((Long) row[0], (LocalDateTime) row[1]));
+        System.out.println("Offer expiry scheduler started with " + pending.size() + " pending offers");
+
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "offer-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+
+    // === SCHEDULING ===
+
+    public void schedule(Offer offer) {
+        if (offer.getId() == null) {
+            return;
+        }
+        if (offer.getStatus() == OfferStatus.PENDING && offer.getExpiresAt() != null) {
+            schedule(offer.getId(), offer.getExpiresAt());
+        } else {
+            cancel(offer.getId());
+        }
+    }
+
+    public void schedule(Long offerId, LocalDateTime expiresAt) {
+        if (!enabled || offerId == null || expiresAt == null) {
+            return;
+        }
+        long deadline = expiresAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() / tickMs;
+        Long previous = deadlines.put(offerId, deadline);
+        if (previous != null && previous == deadline) {
+            return;
+        }
+        synchronized (this) {
+            place(new WheelEntry(offerId, deadline));
+        }
+    }
+
+    public void cancel(Long offerId) {
+        if (offerId != null) {
+            deadlines.remove(offerId);
+        }
+    }
+
+    public int getScheduledCount() {
+        return deadlines.size();
+    }
+
+    // === WHEEL ===
+
+    private void place(WheelEntry entry) {
+        long delta = entry.deadline() - currentTick;
+        if (delta <= 0) {
+            if (deadlines.remove(entry.offerId(), entry.deadline())) {
+                due.add(entry.offerId());
+            }
+            return;
+        }
+        // Past the top level: park at the horizon and re-place when that slot cascades
+        long target = delta < HORIZON_TICKS ? entry.deadline() : currentTick + HORIZON_TICKS - 1;
+        long span = Math.min(delta, HORIZON_TICKS - 1);
+        int level = 0;
+        while (span >= 1L << (WHEEL_BITS * (level + 1))) {
+            level++;
+        }
+        int slot = (int) ((target >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+        wheel[level][slot].add(entry);
+    }
+
+    private void tick() {
+        List<Long> expired;
+        try {
+            synchronized (this) {
+                long now = System.currentTimeMillis() / tickMs;
+                while (currentTick < now) {
+                    currentTick++;
+                    cascade(1);
+                    List<WheelEntry> slot = wheel[0][(int) (currentTick & WHEEL_MASK)];
+                    for (WheelEntry entry : slot) {
+                        if (deadlines.remove(entry.offerId(), entry.deadline())) {
+                            due.add(entry.offerId());
+                        }
+                    }
+                    slot.clear();
+                }
+                if (due.isEmpty()) {
+                    return;
+                }
+                expired = new ArrayList<>(due);
+                due.clear();
+            }
+            expire(expired);
+        } catch (RuntimeException e) {
+            // Keep the ticker alive; failed batches have been put back into the wheel
+            System.err.println("Offer expiry tick failed: " + e.getMessage());
+        }
+    }
+
+    // Moves the entries of the next slot of a level down once all lower levels have wrapped
+    private void cascade(int level) {
+        if (level >= LEVELS || (currentTick & ((1L << (WHEEL_BITS * level)) - 1)) != 0) {
+            return;
+        }
+        cascade(level + 1);
+        List<WheelEntry> slot = wheel[level][(int) ((currentTick >>> (WHEEL_BITS * level)) & WHEEL_MASK)];
+        List<WheelEntry> entries = new ArrayList<>(slot);
+        slot.clear();
+        for (WheelEntry entry : entries) {
+            Long deadline = deadlines.get(entry.offerId());
+            if (deadline != null && deadline == entry.deadline()) {
+                place(entry);
+            }
+        }
+    }
+
+    private void expire(List<Long> offerIds) {
+        RuntimeException failure = null;
+        for (int start = 0; start < offerIds.size(); start += batchSize) {
+            List<Long> batch = offerIds.subList(start, Math.min(start + batchSize, offerIds.size()));
+            try {
+                offerRepository.expireOffers(batch, OfferStatus.PENDING, OfferStatus.EXPIRED);
+                offerBookService.onOffersExpired(batch);
+            } catch (RuntimeException e) {
+                retry(batch);
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // Both steps are idempotent, so a batch that failed halfway is simply run again
+    private void retry(List<Long> offerIds) {
+        synchronized (this) {
+            long deadline = Math.max(currentTick + 1, currentTick + retryDelayMs / tickMs);
+            for (Long offerId : offerIds) {
+                // An offer rescheduled or cancelled meanwhile already has its own entry
+                if (deadlines.putIfAbsent(offerId, deadline) == null) {
+                    place(new WheelEntry(offerId, deadline));
+                }
+            }
+        }
+    }
+
+    private record WheelEntry(Long offerId, long deadline) {
+    }
+}
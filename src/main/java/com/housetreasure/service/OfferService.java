@@ -2,34 +2,63 @@ package com.housetreasure.service;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
-
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.housetreasure.dto.CursorPage;
+import com.housetreasure.dto.OfferSummary;
+import com.housetreasure.dto.PageCursor;
+import com.housetreasure.dto.UserOffer;
+import com.housetreasure.exception.OfferConflictException;
 import com.housetreasure.model.Offer;
 import com.housetreasure.model.Offer.OfferStatus;
-import com.housetreasure.model.User;
+import com.housetreasure.model.Transaction;
 import com.housetreasure.repository.OfferRepository;
 
 @Service
 public class OfferService {
+    // Partial unique index from db/schema-postgresql.sql
+    private static final String PENDING_OFFER_CONSTRAINT = "ux_offers_pending_buyer_item";
+    // Foreign keys named on Offer.buyer and Offer.seller
+    private static final String BUYER_CONSTRAINT = "fk_offers_buyer";
+    private static final String SELLER_CONSTRAINT = "fk_offers_seller";
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final OfferRepository offerRepository;
     private final UserService userService;
-
-    public OfferService(OfferRepository offerRepository, UserService userService) {
+    private final OfferExpiryScheduler offerExpiryScheduler;
+    private final OfferBookService offerBookService;
+    private final TransactionService transactionService;
+    private final ItemService itemService;
+
+    public OfferService(OfferRepository offerRepository, UserService userService,
+                        OfferExpiryScheduler offerExpiryScheduler, OfferBookService offerBookService,
+                        TransactionService transactionService, ItemService itemService) {
         this.offerRepository = offerRepository;
         this.userService = userService;
+        this.offerExpiryScheduler = offerExpiryScheduler;
+        this.offerBookService = offerBookService;
+        this.transactionService = transactionService;
+        this.itemService = itemService;
     }
 
     // === BASIC OPERATIONS ===
-    public List<Offer> getAllOffers() {
-        return offerRepository.findAll();
+    public List<OfferSummary> getAllOffers() {
+        return offerRepository.findAllSummaries();
     }
 
     public Offer saveOffer(Offer offer) {
-        return offerRepository.save(offer);
+        return saveAndTrack(offer);
     }
 
     public Optional<Offer> getOfferById(Long id) {
@@ -37,27 +66,18 @@ public class OfferService {
     }
 
     // === MAKING OFFERS ===
+    /**
+     * Creates a PENDING offer with a single INSERT. Buyer and seller are set as references,
+     * and "one pending offer per buyer and item" is enforced by the partial unique index
+     * ux_offers_pending_buyer_item rather than a prior lookup.
+     */
     public Offer makeOffer(Long buyerId, Long sellerId, String itemId, BigDecimal amount, 
                           String message, Integer validityHours) {
-        
-        // Check if buyer already has a pending offer for this item
-        Optional<Offer> existingOffer = offerRepository.findByBuyerIdAndItemIdAndStatus(
-            buyerId, itemId, OfferStatus.PENDING);
-        
-        if (existingOffer.isPresent()) {
-            throw new RuntimeException("You already have a pending offer for this item");
-        }
-
         Offer offer = new Offer();
         
-        // Set users and item (you'd typically fetch these from database)
-        User buyer = userService.getUserById(buyerId).orElseThrow(() -> 
-            new RuntimeException("Buyer not found"));
-        User seller = userService.getUserById(sellerId).orElseThrow(() -> 
-            new RuntimeException("Seller not found"));
-        
-        offer.setBuyer(buyer);
-        offer.setSeller(seller);
+        offer.setBuyer(userService.getUserReference(buyerId));
+        offer.setSeller(userService.getUserReference(sellerId));
+        offer.setItemId(itemId);
         offer.setOfferedAmount(amount);
         offer.setMessage(message);
         offer.setStatus(OfferStatus.PENDING);
@@ -68,7 +88,21 @@ public class OfferService {
             offer.setExpiresAt(LocalDateTime.now().plusHours(validityHours));
         }
 
-        return offerRepository.save(offer);
+        try {
+            return saveAndTrack(offer);
+        } catch (DataIntegrityViolationException e) {
+            String constraint = constraintName(e);
+            if (constraint != null && constraint.contains(PENDING_OFFER_CONSTRAINT)) {
+                throw new RuntimeException("You already have a pending offer for this item");
+            }
+            if (constraint != null && constraint.contains(BUYER_CONSTRAINT)) {
+                throw new RuntimeException("Buyer not found");
+            }
+            if (constraint != null && constraint.contains(SELLER_CONSTRAINT)) {
+                throw new RuntimeException("Seller not found");
+            }
+            throw e;
+        }
     }
 
     // === UPDATING OFFERS ===
@@ -82,30 +116,63 @@ public class OfferService {
                 
                 offer.setOfferedAmount(newAmount);
                 offer.setMessage(newMessage);
-                return offerRepository.save(offer);
+                return saveAndTrack(offer);
             })
             .orElseThrow(() -> new RuntimeException("Offer not found"));
     }
 
     // === OFFER RESPONSES ===
     
+    /**
+     * Accepts an offer and settles the item in one database transaction: the item is
+     * reserved in MongoDB with a conditional update, the offer is flipped under its
+     * optimistic lock, the other active offers on the item are rejected in one UPDATE and
+     * the Transaction is created. Losing a race surfaces as OfferConflictException or an
+     * optimistic locking failure, and the reservation is released if the transaction rolls back.
+     */
+    @Transactional
     public Offer acceptOffer(Long offerId) {
-        return offerRepository.findById(offerId)
-            .map(offer -> {
-                if (offer.getStatus() != OfferStatus.PENDING && offer.getStatus() != OfferStatus.COUNTERED) {
-                    throw new RuntimeException("Can only accept pending or countered offers");
-                }
-                
-                offer.setStatus(OfferStatus.ACCEPTED);
-                offer.setAcceptedAt(LocalDateTime.now());
-                offer.setRespondedAt(LocalDateTime.now());
-                
-                // Here you might want to create a transaction
-                // offer.setTransaction(createTransactionFromOffer(offer));
-                
-                return offerRepository.save(offer);
-            })
+        Offer offer = offerRepository.findById(offerId)
             .orElseThrow(() -> new RuntimeException("Offer not found"));
+        if (offer.getStatus() != OfferStatus.PENDING && offer.getStatus() != OfferStatus.COUNTERED) {
+            throw new RuntimeException("Can only accept pending or countered offers");
+        }
+
+        String itemId = offer.getItemId();
+        if (itemId != null) {
+            if (!itemService.reserveIfAvailable(itemId)) {
+                throw new OfferConflictException("Item is no longer available");
+            }
+            afterCompletion(committed -> {
+                if (!committed) {
+                    itemService.releaseReservation(itemId);
+                }
+            });
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        offer.setStatus(OfferStatus.ACCEPTED);
+        offer.setAcceptedAt(now);
+        offer.setRespondedAt(now);
+        Offer accepted = offerRepository.saveAndFlush(offer);
+
+        if (itemId != null) {
+            offerRepository.rejectCompetingOffers(itemId, offerId,
+                    EnumSet.of(OfferStatus.PENDING, OfferStatus.COUNTERED), OfferStatus.REJECTED, now);
+        }
+
+        Transaction transaction = transactionService.createTransactionFromOffer(accepted);
+        accepted.setTransaction(transaction);
+
+        afterCompletion(committed -> {
+            if (committed) {
+                offerExpiryScheduler.cancel(offerId);
+                if (itemId != null) {
+                    offerBookService.invalidate(itemId);
+                }
+            }
+        });
+        return accepted;
     }
 
     public Offer rejectOffer(Long offerId, String reason) {
@@ -120,7 +187,7 @@ public class OfferService {
                 offer.setRespondedAt(LocalDateTime.now());
                 offer.setCounterOfferMessage(reason); // Store rejection reason
                 
-                return offerRepository.save(offer);
+                return saveAndTrack(offer);
             })
             .orElseThrow(() -> new RuntimeException("Offer not found"));
     }
@@ -138,11 +205,64 @@ public class OfferService {
                 offer.setCounterOfferCreatedAt(LocalDateTime.now());
                 offer.setRespondedAt(LocalDateTime.now());
                 
-                return offerRepository.save(offer);
+                // Countered offers wait for the buyer and do not expire
+                return saveAndTrack(offer);
             })
             .orElseThrow(() -> new RuntimeException("Offer not found"));
     }
 
+    // === ACTING AS BUYER OR SELLER ===
+    // The endpoints' versions of the operations above: the acting user must be the seller
+    // (accept, reject, counter) or the buyer (update, respond to a counter) of the offer.
+    // Auctions act on behalf of both sides and use the unchecked versions.
+
+    @Transactional
+    public Offer acceptOffer(Long offerId, Long sellerId) {
+        requireSeller(offerId, sellerId);
+        return acceptOffer(offerId);
+    }
+
+    @Transactional
+    public Offer rejectOffer(Long offerId, String reason, Long sellerId) {
+        requireSeller(offerId, sellerId);
+        return rejectOffer(offerId, reason);
+    }
+
+    @Transactional
+    public Offer counterOffer(Long originalOfferId, BigDecimal counterAmount, String counterMessage, Long sellerId) {
+        requireSeller(originalOfferId, sellerId);
+        return counterOffer(originalOfferId, counterAmount, counterMessage);
+    }
+
+    @Transactional
+    public Offer updateOffer(Long offerId, BigDecimal newAmount, String newMessage, Long buyerId) {
+        requireBuyer(offerId, buyerId);
+        return updateOffer(offerId, newAmount, newMessage);
+    }
+
+    @Transactional
+    public Offer respondToCounterOffer(Long offerId, boolean accept, BigDecimal newCounterAmount, String message,
+                                       Long buyerId) {
+        requireBuyer(offerId, buyerId);
+        return respondToCounterOffer(offerId, accept, newCounterAmount, message);
+    }
+
+    private void requireSeller(Long offerId, Long sellerId) {
+        Offer offer = offerRepository.findById(offerId)
+            .orElseThrow(() -> new RuntimeException("Offer not found"));
+        if (sellerId == null || !offer.getSeller().getId().equals(sellerId)) {
+            throw new RuntimeException("Only the seller can respond to this offer");
+        }
+    }
+
+    private void requireBuyer(Long offerId, Long buyerId) {
+        Offer offer = offerRepository.findById(offerId)
+            .orElseThrow(() -> new RuntimeException("Offer not found"));
+        if (buyerId == null || !offer.getBuyer().getId().equals(buyerId)) {
+            throw new RuntimeException("Can only change your own offers");
+        }
+    }
+
     // === CANCELING OFFERS ===
     
     public Offer cancelOffer(Long offerId, Long buyerId) {
@@ -159,91 +279,108 @@ public class OfferService {
                 offer.setStatus(OfferStatus.WITHDRAWN);
                 offer.setRespondedAt(LocalDateTime.now());
                 
-                return offerRepository.save(offer);
+                return saveAndTrack(offer);
             })
             .orElseThrow(() -> new RuntimeException("Offer not found"));
     }
 
     // === RETRIEVING OFFERS ===
     
-    public List<Offer> getOffersForItem(String itemId) {
-        return offerRepository.findByItemIdOrderByCreatedAtDesc(itemId);
+    public List<OfferSummary> getOffersForItem(String itemId) {
+        return offerRepository.findSummariesByItemId(itemId);
+    }
+
+    public List<OfferSummary> getOffersMadeByUser(Long buyerId) {
+        return offerRepository.findSummariesByBuyerId(buyerId);
     }
 
-    public List<Offer> getOffersMadeByUser(Long buyerId) {
-        return offerRepository.findByBuyerIdOrderByCreatedAtDesc(buyerId);
+    public List<OfferSummary> getOffersReceivedByUser(Long sellerId) {
+        return offerRepository.findSummariesBySellerId(sellerId);
     }
 
-    public List<Offer> getOffersReceivedByUser(Long sellerId) {
-        return offerRepository.findBySellerIdOrderByCreatedAtDesc(sellerId);
+    // Offers made and received in one newest-first listing, one keyset page at a time
+    public CursorPage<UserOffer> getOffersForUser(Long userId, String cursor, int size) {
+        int limit = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        PageCursor position = PageCursor.decode(cursor);
+        List<OfferSummary> rows = offerRepository.findUserOffersBefore(
+                userId, position.createdAt(), position.id(), PageRequest.of(0, limit + 1));
+
+        boolean hasMore = rows.size() > limit;
+        List<OfferSummary> page = hasMore ? rows.subList(0, limit) : rows;
+        List<UserOffer> items = page.stream()
+                .map(offer -> new UserOffer(userId.equals(offer.buyerId()) ? "BUYER" : "SELLER", offer))
+                .toList();
+        OfferSummary last = page.isEmpty() ? null : page.get(page.size() - 1);
+        return new CursorPage<>(items,
+                hasMore ? new PageCursor(last.createdAt(), last.id()).encode() : null);
     }
 
-    public List<Offer> getOffersByStatus(OfferStatus status) {
-        return offerRepository.findByStatus(status);
+    public List<OfferSummary> getOffersByStatus(OfferStatus status) {
+        return offerRepository.findSummariesByStatus(status);
     }
 
-    public List<Offer> getOffersByBuyerAndStatus(Long buyerId, OfferStatus status) {
-        return offerRepository.findByBuyerIdAndStatus(buyerId, status);
+    public List<OfferSummary> getOffersByBuyerAndStatus(Long buyerId, OfferStatus status) {
+        return offerRepository.findSummariesByBuyerIdAndStatus(buyerId, status);
     }
 
-    public List<Offer> getOffersBySellerAndStatus(Long sellerId, OfferStatus status) {
-        return offerRepository.findBySellerIdAndStatus(sellerId, status);
+    public List<OfferSummary> getOffersBySellerAndStatus(Long sellerId, OfferStatus status) {
+        return offerRepository.findSummariesBySellerIdAndStatus(sellerId, status);
     }
 
-    public List<Offer> getOffersByItemAndStatus(String itemId, OfferStatus status) {
-        return offerRepository.findByItemIdAndStatus(itemId, status);
+    public List<OfferSummary> getOffersByItemAndStatus(String itemId, OfferStatus status) {
+        return offerRepository.findSummariesByItemIdAndStatus(itemId, status);
     }
 
     // === OFFER HISTORY & NEGOTIATIONS ===
 
-    public List<Offer> getOfferHistory(Long buyerId, Long sellerId, String itemId) {
-        return offerRepository.findByBuyerIdAndSellerIdAndItemIdOrderByCreatedAtDesc(buyerId, sellerId, itemId);
+    public List<OfferSummary> getOfferHistory(Long buyerId, Long sellerId, String itemId) {
+        return offerRepository.findHistorySummaries(buyerId, sellerId, itemId);
     }
 
-    public List<Offer> getPendingOffersForItem(String itemId) {
-        return offerRepository.findByItemIdAndStatusOrderByCreatedAtDesc(itemId, OfferStatus.PENDING);
+    public List<OfferSummary> getPendingOffersForItem(String itemId) {
+        return offerBookService.getPendingOffers(itemId);
     }
 
-    public Optional<Offer> getHighestOfferForItem(String itemId) {
-        return offerRepository.findHighestOfferForItem(itemId, PageRequest.of(0, 1))
-                .getContent()
-                .stream()
-                .findFirst();
+    public Optional<OfferSummary> getHighestOfferForItem(String itemId) {
+        return offerBookService.getHighestOffer(itemId);
     }
 
     // === UTILITY METHODS ===
 
     public long getOfferCountForItem(String itemId) {
-        return offerRepository.countByItemId(itemId);
+        return offerBookService.getOfferCount(itemId);
     }
 
     public long getOfferCountByStatus(OfferStatus status) {
         return offerRepository.countByStatus(status);
     }
 
-    public List<Offer> getRecentOffers(int days) {
+    public List<OfferSummary> getRecentOffers(int days) {
         LocalDateTime since = LocalDateTime.now().minusDays(days);
-        return offerRepository.findRecentOffers(since);
+        return offerRepository.findRecentSummaries(since);
     }
 
     // === EXPIRED OFFERS MANAGEMENT ===
     
-    public void markExpiredOffers() {
-        List<Offer> expiredOffers = offerRepository.findExpiredOffers(LocalDateTime.now());
-        
-        expiredOffers.forEach(offer -> {
-            offer.setStatus(OfferStatus.EXPIRED);
-            offer.setIsExpired(true);
-            offerRepository.save(offer);
-        });
+    // Offers normally expire through OfferExpiryScheduler; this sweeps anything it missed
+    public int markExpiredOffers() {
+        int expired = offerRepository.expireOffersDueBefore(LocalDateTime.now(), OfferStatus.PENDING, OfferStatus.EXPIRED);
+        if (expired > 0) {
+            offerBookService.invalidateAll();
+        }
+        return expired;
     }
 
-    public List<Offer> getExpiredOffers() {
-        return offerRepository.findByStatus(OfferStatus.EXPIRED);
+    public List<OfferSummary> getExpiredOffers() {
+        return offerRepository.findSummariesByStatus(OfferStatus.EXPIRED);
     }
 
     // === NEGOTIATION HELPERS ===
 
+    public Optional<Offer> findPendingOffer(Long buyerId, String itemId) {
+        return offerRepository.findByBuyerIdAndItemIdAndStatus(buyerId, itemId, OfferStatus.PENDING);
+    }
+
     public boolean hasPendingOffer(Long buyerId, String itemId) {
         return offerRepository.findByBuyerIdAndItemIdAndStatus(buyerId, itemId, OfferStatus.PENDING).isPresent();
     }
@@ -253,6 +390,7 @@ public class OfferService {
         return !hasPendingOffer(buyerId, itemId);
     }
 
+    @Transactional
     public Offer respondToCounterOffer(Long offerId, boolean accept, BigDecimal newCounterAmount, String message) {
         return offerRepository.findById(offerId)
             .map(offer -> {
@@ -269,7 +407,7 @@ public class OfferService {
                     offer.setMessage(message);
                     offer.setStatus(OfferStatus.PENDING);
                     offer.setCreatedAt(LocalDateTime.now());
-                    return offerRepository.save(offer);
+                    return saveAndTrack(offer);
                 } else {
                     // Reject the counter offer
                     return rejectOffer(offerId, message);
@@ -277,4 +415,41 @@ public class OfferService {
             })
             .orElseThrow(() -> new RuntimeException("Offer not found"));
     }
+
+    // Saves an offer and brings the expiry wheel and the offer book up to date with it once the
+    // save has committed; a rollback or version conflict at commit leaves both untouched
+    private Offer saveAndTrack(Offer offer) {
+        boolean isNew = offer.getId() == null;
+        Offer saved = offerRepository.save(offer);
+        afterCompletion(committed -> {
+            if (committed) {
+                offerExpiryScheduler.schedule(saved);
+                offerBookService.onOfferSaved(saved, isNew);
+            }
+        });
+        return saved;
+    }
+
+    private static String constraintName(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation && violation.getConstraintName() != null) {
+                return violation.getConstraintName();
+            }
+        }
+        return error.getMessage();
+    }
+
+    // Runs the callback once the surrounding transaction has finished, or right away without one
+    private static void afterCompletion(Consumer<Boolean> callback) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            callback.accept(true);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                callback.accept(status == STATUS_COMMITTED);
+            }
+        });
+    }
 }
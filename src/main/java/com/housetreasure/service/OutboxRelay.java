@@ -0,0 +1,200 @@
+package com.housetreasure.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.housetreasure.model.Item;
+import com.housetreasure.model.OutboxEvent;
+import com.housetreasure.repository.CategoryRepository;
+import com.housetreasure.repository.OutboxEventRepository;
+import com.housetreasure.repository.UserProfileRepository;
+
+/**
+ * Applies outbox events in batches.
+ *
+ * Each batch is locked with FOR UPDATE SKIP LOCKED, so several nodes can relay at once
+ * without applying an event twice. PostgreSQL effects (category and profile counters)
+ * commit together with the processed mark; MongoDB effects are written as conditional
+ * updates that can safely be repeated if the batch is retried. A failing event rolls its
+ * batch back and is retried with backoff, up to outbox.relay.max-attempts.
+ *
+ * New items are written to MongoDB only, flagged categoryCounted = false. The relay turns
+ * them into ITEM_CREATED events before clearing the flag, so a crash in between only
+ * repeats the (deduplicated) recording.
+ */
+@Service
+public class OutboxRelay {
+    private static final long MAX_BACKOFF_SECONDS = 300;
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final OutboxService outboxService;
+    private final ItemService itemService;
+    private final CategoryRepository categoryRepository;
+    private final UserProfileRepository userProfileRepository;
+    private final UserCache userCache;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${outbox.relay.enabled:true}")
+    private boolean enabled;
+
+    @Value("${outbox.relay.batch-size:100}")
+    private int batchSize;
+
+    @Value("${outbox.relay.max-batches-per-run:10}")
+    private int maxBatchesPerRun;
+
+    @Value("${outbox.relay.max-attempts:10}")
+    private int maxAttempts;
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository, OutboxService outboxService,
+                       ItemService itemService, CategoryRepository categoryRepository,
+                       UserProfileRepository userProfileRepository, UserCache userCache,
+                       ObjectMapper objectMapper, PlatformTransactionManager transactionManager) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.outboxService = outboxService;
+        this.itemService = itemService;
+        this.categoryRepository = categoryRepository;
+        this.userProfileRepository = userProfileRepository;
+        this.userCache = userCache;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.relay.interval-ms:1000}")
+    public void relay() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            captureNewItems();
+            for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+                if (processBatch() < batchSize) {
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            // Keep the schedule alive; unapplied events stay in the outbox
+            System.err.println("Outbox relay run failed: " + e.getMessage());
+        }
+    }
+
+    public long getPendingCount() {
+        return outboxEventRepository.countByProcessedAtIsNull();
+    }
+
+    // === CAPTURE ===
+
+    private void captureNewItems() {
+        for (Item item : itemService.findItemsAwaitingCategoryCount(batchSize)) {
+            transactionTemplate.executeWithoutResult(status -> outboxService.itemCreated(item));
+            itemService.markCategoryCounted(item.getId());
+        }
+    }
+
+    // === APPLY ===
+
+    private int processBatch() {
+        OutboxEvent[] current = new OutboxEvent[1];
+        try {
+            Integer applied = transactionTemplate.execute(status -> {
+                LocalDateTime now = LocalDateTime.now();
+                List<OutboxEvent> events = outboxEventRepository.lockDue(now, maxAttempts, batchSize);
+                for (OutboxEvent event : events) {
+                    current[0] = event;
+                    apply(event);
+                }
+                if (!events.isEmpty()) {
+                    outboxEventRepository.markProcessed(events.stream().map(OutboxEvent::getId).toList(), now);
+                }
+                return events.size();
+            });
+            return applied != null ? applied : 0;
+        } catch (RuntimeException e) {
+            OutboxEvent failed = current[0];
+            if (failed == null) {
+                throw e;
+            }
+            int attempts = failed.getAttempts() != null ? failed.getAttempts() : 0;
+            long backoff = Math.min(MAX_BACKOFF_SECONDS, 1L << Math.min(attempts, 20));
+            outboxEventRepository.recordFailure(failed.getId(), e.getMessage(), LocalDateTime.now().plusSeconds(backoff));
+            System.err.println("Outbox event " + failed.getId() + " (" + failed.getEventType() + ") failed: "
+                    + e.getMessage());
+            return 0;
+        }
+    }
+
+    private void apply(OutboxEvent event) {
+        Map<String, Object> payload = payload(event);
+        switch (event.getEventType()) {
+            case OutboxService.ITEM_CREATED -> {
+                Long categoryId = asLong(payload.get("categoryId"));
+                if (categoryId != null) {
+                    categoryRepository.adjustItemCount(categoryId, 1);
+                }
+            }
+            case OutboxService.TRANSACTION_COMPLETED -> {
+                Object itemId = payload.get("itemId");
+                Object completedAt = payload.get("completedAt");
+                if (itemId != null) {
+                    itemService.markSoldIfUnsold(itemId.toString(),
+                            completedAt != null ? LocalDateTime.parse(completedAt.toString()) : event.getCreatedAt());
+                }
+                Long sellerId = asLong(payload.get("sellerId"));
+                Long buyerId = asLong(payload.get("buyerId"));
+                if (sellerId != null) {
+                    userProfileRepository.recordSale(sellerId);
+                    userCache.evictProfile(sellerId);
+                }
+                if (buyerId != null) {
+                    userProfileRepository.recordPurchase(buyerId);
+                    userCache.evictProfile(buyerId);
+                }
+            }
+            case OutboxService.TRANSACTION_EXPIRED -> {
+                // Conditional on RESERVED, so repeating it or racing a new reservation is harmless
+                Object itemId = payload.get("itemId");
+                if (itemId != null) {
+                    itemService.releaseReservation(itemId.toString());
+                }
+            }
+            default -> System.err.println("Skipping outbox event " + event.getId() + " of unknown type "
+                    + event.getEventType());
+        }
+    }
+
+    private Map<String, Object> payload(OutboxEvent event) {
+        if (event.getPayload() == null) {
+            return Map.of();
+        }
+        try {
+            return objectMapper.readValue(event.getPayload(), new TypeReference<Map<String, Object>>() {});
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Unreadable outbox payload: " + e.getMessage());
+        }
+    }
+
+    private static Long asLong(Object value) {
+        if (value instanceof Number number) {
+            return number.longValue();
+        }
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.valueOf(value.toString());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
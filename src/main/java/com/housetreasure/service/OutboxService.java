@@ -0,0 +1,66 @@
+package com.housetreasure.service;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.housetreasure.model.Item;
+import com.housetreasure.model.Transaction;
+import com.housetreasure.repository.OutboxEventRepository;
+
+/**
+ * Records cross-store side effects in the outbox_events table. Callers record inside the
+ * JPA transaction of the change itself, so an event exists exactly when the change was
+ * committed; OutboxRelay applies it afterwards. Recording the same event twice is a no-op.
+ */
+@Service
+public class OutboxService {
+    public static final String ITEM_CREATED = "ITEM_CREATED";
+    public static final String TRANSACTION_COMPLETED = "TRANSACTION_COMPLETED";
+    public static final String TRANSACTION_EXPIRED = "TRANSACTION_EXPIRED";
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+
+    public OutboxService(OutboxEventRepository outboxEventRepository, ObjectMapper objectMapper) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    // Item counted towards its category's item count
+    public void itemCreated(Item item) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("categoryId", item.getCategoryId());
+        record(ITEM_CREATED, item.getId(), payload);
+    }
+
+    // Item sold in MongoDB and sale/purchase counters of both parties
+    public void transactionCompleted(Transaction transaction) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("itemId", transaction.getItemId());
+        payload.put("buyerId", transaction.getBuyer() != null ? transaction.getBuyer().getId() : null);
+        payload.put("sellerId", transaction.getSeller() != null ? transaction.getSeller().getId() : null);
+        payload.put("completedAt", transaction.getCompletedAt() != null ? transaction.getCompletedAt().toString() : null);
+        record(TRANSACTION_COMPLETED, String.valueOf(transaction.getId()), payload);
+    }
+
+    // Unpaid transaction cancelled by the sweeper: its item goes back from RESERVED to AVAILABLE
+    public void transactionExpired(Transaction transaction) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("itemId", transaction.getItemId());
+        record(TRANSACTION_EXPIRED, String.valueOf(transaction.getId()), payload);
+    }
+
+    private void record(String eventType, String aggregateId, Map<String, Object> payload) {
+        try {
+            outboxEventRepository.record(eventType, aggregateId, objectMapper.writeValueAsString(payload),
+                    eventType + ":" + aggregateId, LocalDateTime.now());
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Could not serialize outbox payload: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.housetreasure.service;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Keeps the monthly range partitions of the partitioned tables (transactions and offers,
+ * after db/partitioning-postgresql.sql has converted them) ahead of the clock.
+ *
+ * Each run creates the partitions for the current month and partitioning.months-ahead
+ * months after it, starting from the highest existing upper bound. With
+ * partitioning.retention-months above zero, partitions that end before that many months
+ * ago are detached and moved to partitioning.archive-schema, where they stay queryable
+ * but out of the planner's way. The reporting rollups keep their totals.
+ *
+ * Runs hold a transaction-level advisory lock, so nodes never issue partition DDL
+ * concurrently. Tables that are not partitioned are left alone.
+ */
+@Service
+public class PartitionMaintenanceService {
+    private static final long LOCK_KEY = 4_844_002L;
+    private static final Pattern IDENTIFIER = Pattern.compile("[a-z_][a-z0-9_]*");
+    private static final Pattern UPPER_BOUND = Pattern.compile("TO \\('(\\d{4}-\\d{2}-\\d{2})");
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("'_p'yyyy_MM");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${partitioning.enabled:false}")
+    private boolean enabled;
+
+    @Value("${partitioning.tables:transactions,offers}")
+    private List<String> tables;
+
+    @Value("${partitioning.months-ahead:3}")
+    private int monthsAhead;
+
+    @Value("${partitioning.retention-months:0}")
+    private int retentionMonths;
+
+    @Value("${partitioning.archive-schema:archive}")
+    private String archiveSchema;
+
+    public PartitionMaintenanceService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintain();
+    }
+
+    @Scheduled(cron = "${partitioning.maintenance-cron:0 30 3 * * *}")
+    public void maintain() {
+        if (!enabled) {
+            return;
+        }
+        for (String table : tables) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    jdbcTemplate.queryForObject("SELECT pg_advisory_xact_lock(?)", Object.class, LOCK_KEY);
+                    maintain(table.trim());
+                });
+            } catch (RuntimeException e) {
+                System.err.println("Partition maintenance failed for " + table + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void maintain(String table) {
+        if (!IDENTIFIER.matcher(table).matches() || !IDENTIFIER.matcher(archiveSchema).matches()) {
+            throw new RuntimeException("Invalid table or schema name");
+        }
+        String kind = jdbcTemplate.queryForObject(
+                "SELECT COALESCE((SELECT relkind::text FROM pg_class WHERE oid = to_regclass(?)), '')",
+                String.class, table);
+        if (!"p".equals(kind)) {
+            System.err.println("Partition maintenance skipped: " + table + " is not partitioned");
+            return;
+        }
+
+        List<Map<String, Object>> partitions = jdbcTemplate.queryForList(
+                "SELECT c.relname AS name, pg_get_expr(c.relpartbound, c.oid) AS bound " +
+                "FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                "WHERE i.inhparent = to_regclass(?)", table);
+
+        YearMonth current = YearMonth.now();
+        YearMonth next = current;
+        for (Map<String, Object> partition : partitions) {
+            LocalDate upper = upperBound((String) partition.get("bound"));
+            if (upper != null && YearMonth.from(upper).isAfter(next)) {
+                next = YearMonth.from(upper);
+            }
+        }
+        for (YearMonth month = next; !month.isAfter(current.plusMonths(monthsAhead)); month = month.plusMonths(1)) {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + table + month.format(SUFFIX)
+                    + " PARTITION OF " + table + " FOR VALUES FROM ('" + month.atDay(1) + "') TO ('"
+                    + month.plusMonths(1).atDay(1) + "')");
+        }
+
+        if (retentionMonths <= 0) {
+            return;
+        }
+        LocalDate cutoff = current.minusMonths(retentionMonths).atDay(1);
+        for (Map<String, Object> partition : partitions) {
+            LocalDate upper = upperBound((String) partition.get("bound"));
+            if (upper == null || upper.isAfter(cutoff)) {
+                continue;
+            }
+            String name = (String) partition.get("name");
+            jdbcTemplate.execute("CREATE SCHEMA IF NOT EXISTS " + archiveSchema);
+            jdbcTemplate.execute("ALTER TABLE " + table + " DETACH PARTITION \"" + name + "\"");
+            jdbcTemplate.execute("ALTER TABLE \"" + name + "\" SET SCHEMA " + archiveSchema);
+            System.out.println("Archived partition " + name + " to schema " + archiveSchema);
+        }
+    }
+
+    // "FOR VALUES FROM ('2026-10-01 00:00:00') TO ('2026-11-01 00:00:00')" -> 2026-11-01; null for MAXVALUE or DEFAULT
+    private static LocalDate upperBound(String bound) {
+        if (bound == null) {
+            return null;
+        }
+        Matcher matcher = UPPER_BOUND.matcher(bound);
+        return matcher.find() ? LocalDate.parse(matcher.group(1)) : null;
+    }
+}
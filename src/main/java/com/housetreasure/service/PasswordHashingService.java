@@ -0,0 +1,123 @@
+package com.housetreasure.service;
+
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import com.housetreasure.exception.PasswordHashingBusyException;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Runs BCrypt off the request threads.
+ *
+ * Hashing and checking passwords is deliberately slow, so it runs on a pool of
+ * auth.password.hashing.threads threads (default: half the cores) behind a queue of
+ * auth.password.hashing.queue-capacity. When the queue is full the call fails at once
+ * with PasswordHashingBusyException instead of making the caller wait; a burst of logins
+ * then costs a bounded share of the CPU and never ties up the servlet threads.
+ *
+ * The work factor is auth.password.bcrypt-strength; the time one hash takes at that
+ * strength is measured and logged at startup. A successful check of a hash made at
+ * another strength also returns a new hash at the current one, so stored hashes follow
+ * the setting as users log in.
+ */
+@Service
+public class PasswordHashingService {
+    // $2a$10$... / $2b$12$... -> the cost
+    private static final Pattern BCRYPT_COST = Pattern.compile("^\\$2[abxy]?\\$(\\d{2})\\$");
+
+    private final PasswordEncoder passwordEncoder;
+
+    @Value("${auth.password.bcrypt-strength:10}")
+    private int strength;
+
+    @Value("${auth.password.hashing.threads:0}")
+    private int threads;
+
+    @Value("${auth.password.hashing.queue-capacity:100}")
+    private int queueCapacity;
+
+    private ThreadPoolExecutor executor;
+
+    // Checked against when the account does not exist, so unknown emails take as long as wrong passwords
+    private String decoyHash;
+
+    // matches, plus the password rehashed at the current strength when the stored cost differs
+    public record Verification(boolean matches, String upgradedHash) {
+    }
+
+    public PasswordHashingService(PasswordEncoder passwordEncoder) {
+        this.passwordEncoder = passwordEncoder;
+    }
+
+    @PostConstruct
+    void init() {
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+
+        // The first hash also warms up the encoder; time the second
+        decoyHash = passwordEncoder.encode(UUID.randomUUID().toString());
+        long started = System.nanoTime();
+        passwordEncoder.matches(UUID.randomUUID().toString(), decoyHash);
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        System.out.println("Password hashing: BCrypt strength " + strength + " takes " + millis
+                + " ms per hash, " + poolSize + " threads, queue " + queueCapacity);
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    // === HASHING ===
+
+    public CompletableFuture<String> encode(String rawPassword) {
+        return submit(() -> passwordEncoder.encode(rawPassword));
+    }
+
+    // A null encodedPassword (no such account) never matches but costs the same as a real check
+    public CompletableFuture<Verification> verify(String rawPassword, String encodedPassword) {
+        return submit(() -> {
+            if (rawPassword == null || encodedPassword == null) {
+                passwordEncoder.matches(rawPassword != null ? rawPassword : "", decoyHash);
+                return new Verification(false, null);
+            }
+            if (!passwordEncoder.matches(rawPassword, encodedPassword)) {
+                return new Verification(false, null);
+            }
+            return new Verification(true, needsRehash(encodedPassword) ? passwordEncoder.encode(rawPassword) : null);
+        });
+    }
+
+    // Stored cost differs from the configured strength, in either direction
+    public boolean needsRehash(String encodedPassword) {
+        Matcher matcher = BCRYPT_COST.matcher(encodedPassword);
+        return !matcher.find() || Integer.parseInt(matcher.group(1)) != strength;
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> work) {
+        try {
+            return CompletableFuture.supplyAsync(work, executor);
+        } catch (RejectedExecutionException e) {
+            throw new PasswordHashingBusyException("Too many password checks in progress, try again shortly");
+        }
+    }
+}
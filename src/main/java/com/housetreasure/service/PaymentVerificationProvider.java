@@ -0,0 +1,45 @@
+package com.housetreasure.service;
+
+import java.math.BigDecimal;
+
+import com.housetreasure.model.Transaction.PaymentMethod;
+
+/**
+ * A mobile money provider that can check whether a payment was received. Implementations
+ * are Spring beans picked up by PaymentVerificationService.
+ *
+ * verify may block on the network; it is only called from the provider's own bounded
+ * executor. Throwing means the check could not be made and will be retried with backoff.
+ */
+public interface PaymentVerificationProvider {
+
+    // Short stable name, stored on each verification and used in the callback URL
+    String name();
+
+    boolean supports(PaymentMethod paymentMethod);
+
+    Result verify(Check check);
+
+    record Check(Long verificationId, String providerReference, BigDecimal amount, String payerPhone) {
+    }
+
+    record Result(Outcome outcome, String message) {
+        public static Result confirmed() {
+            return new Result(Outcome.CONFIRMED, null);
+        }
+
+        public static Result declined(String message) {
+            return new Result(Outcome.DECLINED, message);
+        }
+
+        public static Result pending() {
+            return new Result(Outcome.PENDING, null);
+        }
+    }
+
+    enum Outcome {
+        CONFIRMED,  // payment received for the expected amount
+        DECLINED,   // payment unknown, failed or for another amount
+        PENDING     // provider has not settled it yet; a callback or a later check will
+    }
+}
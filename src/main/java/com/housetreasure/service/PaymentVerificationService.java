@@ -0,0 +1,386 @@
+package com.housetreasure.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.housetreasure.exception.PaymentVerificationBusyException;
+import com.housetreasure.exception.TransactionConflictException;
+import com.housetreasure.exception.TransactionConflictException.Outcome;
+import com.housetreasure.model.PaymentVerification;
+import com.housetreasure.model.PaymentVerification.VerificationStatus;
+import com.housetreasure.model.Transaction;
+import com.housetreasure.model.Transaction.PaymentMethod;
+import com.housetreasure.model.TransactionTransition;
+import com.housetreasure.repository.PaymentVerificationRepository;
+import com.housetreasure.repository.TransactionRepository;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Verifies mobile money payments with the provider off the request thread.
+ *
+ * A verify request stores a PENDING PaymentVerification and hands the provider call to
+ * that provider's executor, which runs at most payments.verification.max-concurrency
+ * checks at once and queues up to queue-capacity more. Failed checks are retried with
+ * exponential backoff. A confirmed payment settles the verification and moves the
+ * transaction to PAYMENT_CONFIRMED in one database transaction, guarded so a provider
+ * callback, a retry and reconciliation can race without confirming twice.
+ *
+ * Verifications left PENDING (provider still processing, retries used up, node restart)
+ * are picked up again by the reconciliation sweep and failed once they pass expire-after-hours.
+ */
+@Service
+public class PaymentVerificationService {
+    private static final long MAX_BACKOFF_MS = 30_000;
+
+    private final PaymentVerificationRepository verificationRepository;
+    private final TransactionRepository transactionRepository;
+    private final List<PaymentVerificationProvider> providers;
+    private final TransactionTemplate transactionTemplate;
+    private final Environment environment;
+
+    @Value("${payments.verification.max-concurrency:8}")
+    private int maxConcurrency;
+
+    @Value("${payments.verification.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${payments.verification.max-attempts:4}")
+    private int maxAttempts;
+
+    @Value("${payments.verification.initial-backoff-ms:500}")
+    private long initialBackoffMs;
+
+    @Value("${payments.verification.response-timeout-ms:10000}")
+    private long responseTimeoutMs;
+
+    @Value("${payments.verification.stale-after-seconds:120}")
+    private long staleAfterSeconds;
+
+    @Value("${payments.verification.expire-after-hours:24}")
+    private long expireAfterHours;
+
+    @Value("${payments.verification.reconcile-batch-size:200}")
+    private int reconcileBatchSize;
+
+    // provider name -> bounded executor for that provider's checks
+    private final Map<String, ThreadPoolExecutor> executors = new ConcurrentHashMap<>();
+
+    // verificationId -> result of the checks this node is running for it; presence means "owned here"
+    private final Map<Long, CompletableFuture<PaymentVerification>> inFlight = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "payment-verify-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public PaymentVerificationService(PaymentVerificationRepository verificationRepository,
+                                      TransactionRepository transactionRepository,
+                                      List<PaymentVerificationProvider> providers,
+                                      PlatformTransactionManager transactionManager,
+                                      Environment environment) {
+        this.verificationRepository = verificationRepository;
+        this.transactionRepository = transactionRepository;
+        this.providers = providers;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.environment = environment;
+    }
+
+    @PreDestroy
+    void stop() {
+        retryScheduler.shutdownNow();
+        executors.values().forEach(ThreadPoolExecutor::shutdownNow);
+    }
+
+    // === VERIFY ===
+
+    /**
+     * Starts (or joins) the buyer's verification of a payment reference for a transaction.
+     * The future completes when the provider has answered, or with the still-PENDING
+     * verification after response-timeout-ms; the check carries on in the background.
+     */
+    public CompletableFuture<PaymentVerification> verify(Long transactionId, String providerReference, Long buyerId) {
+        if (providerReference == null || providerReference.isBlank()) {
+            throw new RuntimeException("Payment reference is required");
+        }
+        Transaction transaction = transactionRepository.findById(transactionId)
+            .orElseThrow(() -> new TransactionConflictException(Outcome.NOT_FOUND, "Transaction not found"));
+        if (buyerId == null || transaction.getBuyer() == null || !buyerId.equals(transaction.getBuyer().getId())) {
+            throw new TransactionConflictException(Outcome.FORBIDDEN, "Only the buyer can verify payment");
+        }
+        if (!TransactionTransition.VERIFY_PAYMENT.from().contains(transaction.getStatus())) {
+            throw new TransactionConflictException(Outcome.INVALID_STATE,
+                    "Cannot verify payment of a transaction in status " + transaction.getStatus());
+        }
+        PaymentVerificationProvider provider = providerFor(transaction.getPaymentMethod());
+
+        PaymentVerification verification = findOrCreate(transaction, provider, providerReference);
+        // Before the status check, so another transaction's settled verification is never returned as ours
+        if (!verification.getTransactionId().equals(transactionId)) {
+            throw new RuntimeException("Payment reference already used for another transaction");
+        }
+        if (verification.getStatus() != VerificationStatus.PENDING) {
+            return CompletableFuture.completedFuture(verification);
+        }
+
+        CompletableFuture<PaymentVerification> result = new CompletableFuture<>();
+        CompletableFuture<PaymentVerification> running = inFlight.putIfAbsent(verification.getId(), result);
+        if (running == null) {
+            running = result;
+            if (!submit(provider, verification, 1)) {
+                // Stays PENDING; reconciliation retries it once the provider has room again
+                inFlight.remove(verification.getId(), result);
+                throw new PaymentVerificationBusyException("Payment verification queue for " + provider.name() + " is full");
+            }
+        }
+        return running.copy()
+                .completeOnTimeout(verification, responseTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    public Optional<PaymentVerification> getVerification(Long id) {
+        return verificationRepository.findById(id);
+    }
+
+    public List<PaymentVerification> getVerificationsForTransaction(Long transactionId) {
+        return verificationRepository.findByTransactionIdOrderByCreatedAtDesc(transactionId);
+    }
+
+    // === PROVIDER CALLBACK ===
+
+    /**
+     * True when signature is the hex HMAC-SHA256 of the raw callback body under the
+     * provider's shared secret, payments.callback.secrets.<provider>. Providers without a
+     * configured secret cannot deliver callbacks; their payments settle through polling.
+     */
+    public boolean isAuthenticCallback(String providerName, byte[] body, String signature) {
+        String secret = environment.getProperty("payments.callback.secrets." + providerName.toLowerCase());
+        if (secret == null || secret.isBlank() || signature == null || body == null) {
+            return false;
+        }
+        String hex = signature.trim();
+        if (hex.startsWith("sha256=")) {
+            hex = hex.substring("sha256=".length());
+        }
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return MessageDigest.isEqual(mac.doFinal(body), HexFormat.of().parseHex(hex.toLowerCase()));
+        } catch (IllegalArgumentException e) {
+            // Not hex
+            return false;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e);
+        }
+    }
+
+    /**
+     * Applies a result pushed by a provider, once the caller has checked its signature with
+     * isAuthenticCallback. Callbacks for verifications that are already
+     * settled return the stored verification unchanged, so providers may deliver them
+     * more than once.
+     */
+    public PaymentVerification handleCallback(String providerName, String providerReference,
+                                              PaymentVerificationProvider.Result result) {
+        PaymentVerification verification = verificationRepository
+            .findByProviderAndProviderReference(providerName.toUpperCase(), providerReference)
+            .orElseThrow(() -> new RuntimeException("Payment verification not found"));
+        if (verification.getStatus() == VerificationStatus.PENDING
+                && result.outcome() != PaymentVerificationProvider.Outcome.PENDING) {
+            settle(verification, result);
+        }
+        return refreshed(verification);
+    }
+
+    // === RECONCILIATION ===
+
+    // Re-checks verifications nobody has touched for stale-after-seconds
+    @Scheduled(fixedDelayString = "${payments.verification.reconcile-interval-ms:60000}",
+               initialDelayString = "${payments.verification.reconcile-interval-ms:60000}")
+    public void reconcile() {
+        LocalDateTime now = LocalDateTime.now();
+        List<PaymentVerification> stale = verificationRepository.findStale(VerificationStatus.PENDING,
+                now.minusSeconds(staleAfterSeconds), PageRequest.of(0, reconcileBatchSize));
+        int resubmitted = 0;
+        for (PaymentVerification verification : stale) {
+            if (verification.getCreatedAt() != null
+                    && verification.getCreatedAt().isBefore(now.minusHours(expireAfterHours))) {
+                settle(verification, PaymentVerificationProvider.Result.declined("Verification expired"));
+                continue;
+            }
+            Optional<PaymentVerificationProvider> provider = providers.stream()
+                .filter(candidate -> candidate.name().equals(verification.getProvider()))
+                .findFirst();
+            if (provider.isEmpty()) {
+                continue;
+            }
+            CompletableFuture<PaymentVerification> result = new CompletableFuture<>();
+            if (inFlight.putIfAbsent(verification.getId(), result) != null) {
+                continue;
+            }
+            // Bump updatedAt first so the next sweep does not pick it up again while queued
+            verificationRepository.touch(verification.getId(), now);
+            if (submit(provider.get(), verification, 1)) {
+                resubmitted++;
+            } else {
+                inFlight.remove(verification.getId(), result);
+                break;
+            }
+        }
+        if (resubmitted > 0) {
+            System.out.println("Payment reconciliation resubmitted " + resubmitted + " verifications");
+        }
+    }
+
+    // === PIPELINE ===
+
+    private boolean submit(PaymentVerificationProvider provider, PaymentVerification verification, int attempt) {
+        PaymentVerificationProvider.Check check = new PaymentVerificationProvider.Check(
+                verification.getId(), verification.getProviderReference(),
+                verification.getAmount(), verification.getPayerPhone());
+        try {
+            executor(provider).execute(() -> attempt(provider, verification, check, attempt));
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private void attempt(PaymentVerificationProvider provider, PaymentVerification verification,
+                         PaymentVerificationProvider.Check check, int attempt) {
+        PaymentVerificationProvider.Result result;
+        String error;
+        try {
+            result = provider.verify(check);
+            error = null;
+        } catch (RuntimeException e) {
+            result = null;
+            error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        }
+
+        try {
+            if (result != null && result.outcome() != PaymentVerificationProvider.Outcome.PENDING) {
+                settle(verification, result);
+                finish(verification);
+                return;
+            }
+            verificationRepository.recordAttempt(verification.getId(),
+                    error != null ? error : "Provider has not settled the payment yet", LocalDateTime.now());
+            if (attempt >= maxAttempts) {
+                // Left PENDING for a callback or the reconciliation sweep
+                finish(verification);
+                return;
+            }
+            long backoff = Math.min(MAX_BACKOFF_MS, initialBackoffMs << (attempt - 1));
+            long delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+            retryScheduler.schedule(() -> {
+                if (!submit(provider, verification, attempt + 1)) {
+                    finish(verification);
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            System.err.println("Payment verification " + verification.getId() + " failed: " + e.getMessage());
+            finish(verification);
+        }
+    }
+
+    // Settles the verification and, for a confirmed payment, the transaction, in one database transaction
+    private void settle(PaymentVerification verification, PaymentVerificationProvider.Result result) {
+        boolean confirmed = result.outcome() == PaymentVerificationProvider.Outcome.CONFIRMED;
+        transactionTemplate.executeWithoutResult(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            int settled = verificationRepository.settle(verification.getId(), VerificationStatus.PENDING,
+                    confirmed ? VerificationStatus.CONFIRMED : VerificationStatus.FAILED, result.message(), now);
+            if (settled == 0 || !confirmed) {
+                return;
+            }
+            if (transactionRepository.applyTransition(verification.getTransactionId(),
+                    TransactionTransition.VERIFY_PAYMENT, null, Map.of(), now).isEmpty()) {
+                System.err.println("Payment " + verification.getProviderReference() + " confirmed but transaction "
+                        + verification.getTransactionId() + " is no longer awaiting payment");
+            }
+        });
+    }
+
+    private void finish(PaymentVerification verification) {
+        CompletableFuture<PaymentVerification> result = inFlight.remove(verification.getId());
+        if (result != null) {
+            result.complete(refreshed(verification));
+        }
+    }
+
+    // === HELPERS ===
+
+    private PaymentVerificationProvider providerFor(PaymentMethod paymentMethod) {
+        return providers.stream()
+            .filter(provider -> provider.supports(paymentMethod))
+            .findFirst()
+            .orElseThrow(() -> new RuntimeException("No payment provider for " + paymentMethod));
+    }
+
+    private PaymentVerification findOrCreate(Transaction transaction, PaymentVerificationProvider provider,
+                                             String providerReference) {
+        Optional<PaymentVerification> existing =
+                verificationRepository.findByProviderAndProviderReference(provider.name(), providerReference);
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+        PaymentVerification verification = new PaymentVerification();
+        verification.setTransactionId(transaction.getId());
+        verification.setProvider(provider.name());
+        verification.setProviderReference(providerReference);
+        verification.setAmount(transaction.getAmount());
+        verification.setPayerPhone(transaction.getBuyerPhoneNumber());
+        try {
+            return verificationRepository.saveAndFlush(verification);
+        } catch (DataIntegrityViolationException e) {
+            // Same reference submitted concurrently; use the row that won
+            return verificationRepository.findByProviderAndProviderReference(provider.name(), providerReference)
+                .orElseThrow(() -> e);
+        }
+    }
+
+    private PaymentVerification refreshed(PaymentVerification verification) {
+        return verificationRepository.findById(verification.getId()).orElse(verification);
+    }
+
+    private ThreadPoolExecutor executor(PaymentVerificationProvider provider) {
+        return executors.computeIfAbsent(provider.name(), name -> {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency,
+                    60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                        Thread thread = new Thread(runnable, "payment-verify-" + name.toLowerCase());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        });
+    }
+}
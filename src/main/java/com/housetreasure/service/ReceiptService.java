@@ -0,0 +1,330 @@
+package com.housetreasure.service;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.housetreasure.dto.ReceiptData;
+import com.housetreasure.repository.TransactionRepository;
+
+/**
+ * Renders transaction receipts as text, HTML or PDF from the templates in
+ * templates/receipts.
+ *
+ * A template is parsed once into literal and field segments and cached, so rendering is a
+ * walk over the segments writing straight to the output. Receipt data comes from one
+ * projection query with both party names joined. The monthly export streams receipts from
+ * the database into a zip as it goes; only the current receipt is held in memory.
+ */
+@Service
+public class ReceiptService {
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{\\{\\s*(\\w+)\\s*}}");
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    // Placeholder name -> value; templates naming anything else fail when they are compiled
+    private static final Map<String, Function<ReceiptData, Object>> FIELDS = Map.ofEntries(
+            Map.entry("id", ReceiptData::id),
+            Map.entry("reference", ReceiptData::transactionReference),
+            Map.entry("itemId", ReceiptData::itemId),
+            Map.entry("amount", ReceiptData::amount),
+            Map.entry("paymentMethod", ReceiptData::paymentMethod),
+            Map.entry("status", ReceiptData::status),
+            Map.entry("buyer", ReceiptData::buyerUsername),
+            Map.entry("seller", ReceiptData::sellerUsername),
+            Map.entry("date", receipt -> formatDate(receipt.createdAt())),
+            Map.entry("completed", receipt -> formatDate(receipt.completedAt())));
+
+    public enum Format {
+        TEXT("receipt.txt", "text/plain;charset=UTF-8", "txt"),
+        HTML("receipt.html", "text/html;charset=UTF-8", "html"),
+        PDF("receipt.txt", "application/pdf", "pdf");
+
+        private final String template;
+        private final String contentType;
+        private final String extension;
+
+        Format(String template, String contentType, String extension) {
+            this.template = template;
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    private final TransactionRepository transactionRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Map<String, CompiledTemplate> templates = new ConcurrentHashMap<>();
+
+    public ReceiptService(TransactionRepository transactionRepository, PlatformTransactionManager transactionManager) {
+        this.transactionRepository = transactionRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    // === SINGLE RECEIPTS ===
+
+    public Optional<ReceiptData> getReceiptData(Long transactionId) {
+        return transactionRepository.findReceiptById(transactionId);
+    }
+
+    public void render(ReceiptData receipt, Format format, OutputStream out) throws IOException {
+        CompiledTemplate template = template(format.template);
+        if (format == Format.PDF) {
+            writePdf(template.renderLines(receipt), out);
+            return;
+        }
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        template.render(receipt, writer, format == Format.HTML);
+        writer.flush();
+    }
+
+    public String renderText(ReceiptData receipt) {
+        return String.join("\n", template(Format.TEXT.template).renderLines(receipt)) + "\n";
+    }
+
+    // === BATCH EXPORT ===
+
+    /**
+     * Writes one receipt per transaction created in the month into a zip on out. Rows are
+     * read in fetch-size chunks inside a read-only transaction.
+     */
+    public int exportMonth(YearMonth month, Format format, OutputStream out) {
+        LocalDateTime from = month.atDay(1).atStartOfDay();
+        LocalDateTime to = month.plusMonths(1).atDay(1).atStartOfDay();
+        Integer exported = readOnlyTransaction.execute(status -> {
+            int count = 0;
+            try (Stream<ReceiptData> receipts = transactionRepository.streamReceipts(from, to);
+                 ZipOutputStream zip = new ZipOutputStream(out)) {
+                OutputStream entry = new NonClosingOutputStream(zip);
+                for (ReceiptData receipt : (Iterable<ReceiptData>) receipts::iterator) {
+                    zip.putNextEntry(new ZipEntry(entryName(receipt, format)));
+                    render(receipt, format, entry);
+                    zip.closeEntry();
+                    count++;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return count;
+        });
+        return exported == null ? 0 : exported;
+    }
+
+    private static String entryName(ReceiptData receipt, Format format) {
+        String name = receipt.transactionReference() != null ? receipt.transactionReference() : "transaction-" + receipt.id();
+        return "receipt-" + name.replaceAll("[^A-Za-z0-9_-]", "_") + "-" + receipt.id() + "." + format.extension;
+    }
+
+    // === TEMPLATES ===
+
+    private CompiledTemplate template(String name) {
+        return templates.computeIfAbsent(name, CompiledTemplate::load);
+    }
+
+    private static String formatDate(LocalDateTime value) {
+        return value == null ? "" : value.format(DATE);
+    }
+
+    private static String escapeHtml(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '<' -> escaped.append("&lt;");
+                case '>' -> escaped.append("&gt;");
+                case '&' -> escaped.append("&amp;");
+                case '"' -> escaped.append("&quot;");
+                case '\'' -> escaped.append("&#39;");
+                default -> escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    // Template split into literal text and field lookups, in order
+    private static final class CompiledTemplate {
+        private final List<Object> segments;
+
+        private CompiledTemplate(List<Object> segments) {
+            this.segments = segments;
+        }
+
+        static CompiledTemplate load(String name) {
+            String source;
+            try (InputStream in = new ClassPathResource("templates/receipts/" + name).getInputStream()) {
+                source = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Receipt template not found: " + name, e);
+            }
+
+            List<Object> segments = new ArrayList<>();
+            Matcher matcher = PLACEHOLDER.matcher(source);
+            int last = 0;
+            while (matcher.find()) {
+                Function<ReceiptData, Object> field = FIELDS.get(matcher.group(1));
+                if (field == null) {
+                    throw new RuntimeException("Unknown placeholder {{" + matcher.group(1) + "}} in " + name);
+                }
+                if (matcher.start() > last) {
+                    segments.add(source.substring(last, matcher.start()));
+                }
+                segments.add(field);
+                last = matcher.end();
+            }
+            if (last < source.length()) {
+                segments.add(source.substring(last));
+            }
+            return new CompiledTemplate(List.copyOf(segments));
+        }
+
+        @SuppressWarnings("unchecked")
+        void render(ReceiptData receipt, Writer writer, boolean html) throws IOException {
+            for (Object segment : segments) {
+                if (segment instanceof String literal) {
+                    writer.write(literal);
+                } else {
+                    Object value = ((Function<ReceiptData, Object>) segment).apply(receipt);
+                    String text = value == null ? "" : value.toString();
+                    writer.write(html ? escapeHtml(text) : text);
+                }
+            }
+        }
+
+        List<String> renderLines(ReceiptData receipt) {
+            StringWriter text = new StringWriter();
+            try {
+                render(receipt, text, false);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return text.toString().lines().toList();
+        }
+    }
+
+    // === PDF ===
+    // Single A4 page of Helvetica text lines; just enough PDF for a receipt, no external library
+
+    private static void writePdf(List<String> lines, OutputStream target) throws IOException {
+        StringBuilder content = new StringBuilder("BT\n/F1 11 Tf\n14 TL\n50 790 Td\n");
+        for (String line : lines) {
+            content.append('(').append(escapePdf(line)).append(") Tj T*\n");
+        }
+        content.append("ET\n");
+        byte[] stream = content.toString().getBytes(StandardCharsets.ISO_8859_1);
+
+        CountingOutputStream out = new CountingOutputStream(target);
+        long[] offsets = new long[5];
+        out.write("%PDF-1.4\n");
+        offsets[0] = out.count;
+        out.write("1 0 obj\n<< /Type /Catalog /Pages 2 0 R >>\nendobj\n");
+        offsets[1] = out.count;
+        out.write("2 0 obj\n<< /Type /Pages /Kids [3 0 R] /Count 1 >>\nendobj\n");
+        offsets[2] = out.count;
+        out.write("3 0 obj\n<< /Type /Page /Parent 2 0 R /MediaBox [0 0 595 842] "
+                + "/Resources << /Font << /F1 4 0 R >> >> /Contents 5 0 R >>\nendobj\n");
+        offsets[3] = out.count;
+        out.write("4 0 obj\n<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica /Encoding /WinAnsiEncoding >>\nendobj\n");
+        offsets[4] = out.count;
+        out.write("5 0 obj\n<< /Length " + stream.length + " >>\nstream\n");
+        out.write(stream);
+        out.write("endstream\nendobj\n");
+
+        long xref = out.count;
+        StringBuilder table = new StringBuilder("xref\n0 6\n0000000000 65535 f \n");
+        for (long offset : offsets) {
+            table.append(String.format("%010d 00000 n \n", offset));
+        }
+        table.append("trailer\n<< /Size 6 /Root 1 0 R >>\nstartxref\n").append(xref).append("\n%%EOF\n");
+        out.write(table.toString());
+        out.flush();
+    }
+
+    // PDF string literal; characters outside Latin-1 are replaced since the font is WinAnsi
+    private static String escapePdf(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '(' || c == ')') {
+                escaped.append('\\').append(c);
+            } else if (c < 32 || c > 255) {
+                escaped.append('?');
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        void write(String text) throws IOException {
+            write(text.getBytes(StandardCharsets.ISO_8859_1));
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+            count += length;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+    }
+
+    // Lets renderers flush into a zip entry without closing the zip
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.housetreasure.service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.housetreasure.event.TransactionTimedOutEvent;
+import com.housetreasure.model.Offer.OfferStatus;
+import com.housetreasure.model.Transaction;
+import com.housetreasure.model.Transaction.TransactionStatus;
+import com.housetreasure.model.TransactionTransition;
+import com.housetreasure.repository.OfferRepository;
+import com.housetreasure.repository.TransactionRepository;
+
+/**
+ * Times out transactions stuck waiting on payment.
+ *
+ * PENDING transactions older than transactions.sweeper.pending-timeout-hours are
+ * cancelled; PAYMENT_SENT ones older than transactions.sweeper.payment-sent-timeout-hours
+ * are escalated to DISPUTED. Candidates are walked in id ranges of
+ * transactions.sweeper.chunk-size, each range changed by one UPDATE in its own database
+ * transaction, so a run never holds many locks at once. A TransactionTimedOutEvent is
+ * published for every changed transaction once its chunk has committed.
+ *
+ * Cancelling an unpaid transaction also undoes its sale in the same chunk: the accepted
+ * offer behind it is expired, and a TRANSACTION_EXPIRED outbox event is recorded for
+ * OutboxRelay to release the item's reservation in MongoDB.
+ *
+ * Only one node sweeps at a time: a run starts by taking a PostgreSQL session advisory
+ * lock and is skipped when another node holds it.
+ */
+@Service
+public class StalePaymentSweeper {
+    // Advisory lock key shared by all nodes; any constant not used by another lock holder
+    private static final long LOCK_KEY = 4_844_001L;
+
+    private final TransactionRepository transactionRepository;
+    private final OfferRepository offerRepository;
+    private final OutboxService outboxService;
+    private final DataSource dataSource;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${transactions.sweeper.enabled:true}")
+    private boolean enabled;
+
+    @Value("${transactions.sweeper.pending-timeout-hours:48}")
+    private long pendingTimeoutHours;
+
+    @Value("${transactions.sweeper.payment-sent-timeout-hours:72}")
+    private long paymentSentTimeoutHours;
+
+    @Value("${transactions.sweeper.chunk-size:1000}")
+    private long chunkSize;
+
+    @Value("${transactions.sweeper.max-chunks-per-run:100}")
+    private int maxChunksPerRun;
+
+    public StalePaymentSweeper(TransactionRepository transactionRepository, OfferRepository offerRepository,
+                               OutboxService outboxService, DataSource dataSource,
+                               PlatformTransactionManager transactionManager,
+                               ApplicationEventPublisher eventPublisher) {
+        this.transactionRepository = transactionRepository;
+        this.offerRepository = offerRepository;
+        this.outboxService = outboxService;
+        this.dataSource = dataSource;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Scheduled(fixedDelayString = "${transactions.sweeper.interval-ms:300000}",
+               initialDelayString = "${transactions.sweeper.initial-delay-ms:60000}")
+    public void sweep() {
+        if (!enabled) {
+            return;
+        }
+        // The lock is held by this connection's session for the whole run
+        try (Connection lockConnection = dataSource.getConnection()) {
+            if (!advisoryLock(lockConnection, "SELECT pg_try_advisory_lock(?)")) {
+                return;
+            }
+            try {
+                LocalDateTime now = LocalDateTime.now();
+                int chunks = sweep(TransactionTransition.EXPIRE_UNPAID, TransactionStatus.PENDING,
+                        now.minusHours(pendingTimeoutHours), now,
+                        "cancellation_reason", "Payment not received within " + pendingTimeoutHours + " hours",
+                        maxChunksPerRun);
+                sweep(TransactionTransition.ESCALATE_PAYMENT, TransactionStatus.PAYMENT_SENT,
+                        now.minusHours(paymentSentTimeoutHours), now,
+                        "dispute_description", "Payment not confirmed within " + paymentSentTimeoutHours + " hours",
+                        maxChunksPerRun - chunks);
+            } finally {
+                advisoryLock(lockConnection, "SELECT pg_advisory_unlock(?)");
+            }
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("Stale payment sweep failed: " + e.getMessage());
+        }
+    }
+
+    // Applies the transition range by range; returns the number of chunks used
+    private int sweep(TransactionTransition transition, TransactionStatus status, LocalDateTime cutoff,
+                      LocalDateTime now, String reasonColumn, String reason, int chunkBudget) {
+        List<Object[]> bounds = transactionRepository.findIdRange(status, cutoff);
+        if (chunkBudget <= 0 || bounds.isEmpty() || bounds.get(0)[0] == null) {
+            return 0;
+        }
+        long next = (Long) bounds.get(0)[0];
+        long last = (Long) bounds.get(0)[1];
+        Map<String, Object> changes = Map.of(reasonColumn, reason);
+
+        int chunks = 0;
+        int swept = 0;
+        while (next <= last && chunks < chunkBudget) {
+            long fromId = next;
+            long toId = Math.min(last, fromId + chunkSize - 1);
+            List<Transaction> changed = transactionTemplate.execute(tx -> {
+                List<Transaction> rows = transactionRepository
+                        .applyTransitionToRange(transition, fromId, toId, cutoff, changes, now);
+                if (transition == TransactionTransition.EXPIRE_UNPAID && !rows.isEmpty()) {
+                    releaseSales(rows);
+                }
+                return rows;
+            });
+            if (changed != null) {
+                changed.forEach(transaction -> publish(transaction, status, now));
+                swept += changed.size();
+            }
+            chunks++;
+            next = toId + 1;
+        }
+        if (swept > 0) {
+            System.out.println("Stale payment sweep: " + transition.name() + " applied to " + swept + " transactions");
+        }
+        return chunks;
+    }
+
+    // Runs in the chunk's transaction, so the offer and outbox changes commit with the cancellation
+    private void releaseSales(List<Transaction> expired) {
+        offerRepository.expireAcceptedOffers(expired.stream().map(Transaction::getId).toList(),
+                OfferStatus.ACCEPTED, OfferStatus.EXPIRED);
+        for (Transaction transaction : expired) {
+            if (transaction.getItemId() != null) {
+                outboxService.transactionExpired(transaction);
+            }
+        }
+    }
+
+    private void publish(Transaction transaction, TransactionStatus previousStatus, LocalDateTime now) {
+        eventPublisher.publishEvent(new TransactionTimedOutEvent(
+                transaction.getId(),
+                transaction.getTransactionReference(),
+                transaction.getBuyer() != null ? transaction.getBuyer().getId() : null,
+                transaction.getSeller() != null ? transaction.getSeller().getId() : null,
+                previousStatus,
+                transaction.getStatus(),
+                now));
+    }
+
+    private static boolean advisoryLock(Connection connection, String sql) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, LOCK_KEY);
+            try (ResultSet result = statement.executeQuery()) {
+                return result.next() && result.getBoolean(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.housetreasure.service;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.housetreasure.model.Transaction.PaymentMethod;
+
+/**
+ * In-process stand-in for the MTN and Airtel APIs, for development and offline load tests.
+ * Each check sleeps for payments.stub.latency-ms plus up to latency-jitter-ms and then
+ * fails, declines, stays pending or confirms according to the configured rates.
+ *
+ * It confirms most payments without any money moving, so it is only created when
+ * payments.stub.enabled=true is set explicitly; never enable it in production.
+ */
+@Component
+@ConditionalOnProperty(name = "payments.stub.enabled", havingValue = "true")
+public class StubPaymentVerificationProvider implements PaymentVerificationProvider {
+
+    @Value("${payments.stub.latency-ms:300}")
+    private long latencyMs;
+
+    @Value("${payments.stub.latency-jitter-ms:200}")
+    private long latencyJitterMs;
+
+    @Value("${payments.stub.error-rate:0.05}")
+    private double errorRate;
+
+    @Value("${payments.stub.decline-rate:0.02}")
+    private double declineRate;
+
+    @Value("${payments.stub.pending-rate:0.0}")
+    private double pendingRate;
+
+    @Override
+    public String name() {
+        return "STUB";
+    }
+
+    @Override
+    public boolean supports(PaymentMethod paymentMethod) {
+        return paymentMethod != null;
+    }
+
+    @Override
+    public Result verify(Check check) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        try {
+            Thread.sleep(latencyMs + (latencyJitterMs > 0 ? random.nextLong(latencyJitterMs + 1) : 0));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Stub provider interrupted");
+        }
+
+        double roll = random.nextDouble();
+        if (roll < errorRate) {
+            throw new RuntimeException("Stub provider unavailable");
+        }
+        if (roll < errorRate + declineRate) {
+            return Result.declined("Stub provider declined reference " + check.providerReference());
+        }
+        if (roll < errorRate + declineRate + pendingRate) {
+            return Result.pending();
+        }
+        return Result.confirmed();
+    }
+}
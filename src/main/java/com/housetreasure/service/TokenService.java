@@ -0,0 +1,173 @@
+package com.housetreasure.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.UUID;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.housetreasure.model.User;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Issues and verifies HS256 JSON Web Tokens.
+ *
+ * Access tokens carry the user id and role and live auth.token.access-ttl-seconds, so
+ * requests are authenticated from the token alone, without reading the user. Refresh
+ * tokens live auth.token.refresh-ttl-seconds and are only accepted by the refresh
+ * endpoint, which re-reads the user before issuing a new pair.
+ *
+ * The HMAC key is decoded once; each thread keeps its own initialised Mac. The header is
+ * fixed, so it is compared as a string instead of being parsed.
+ */
+@Service
+public class TokenService {
+    public static final String ACCESS = "access";
+    public static final String REFRESH = "refresh";
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    private static final String HEADER = ENCODER.encodeToString(
+            "{\"alg\":\"HS256\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.UTF_8));
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${auth.token.secret:}")
+    private String secret;
+
+    @Value("${auth.token.issuer:house-treasure}")
+    private String issuer;
+
+    @Value("${auth.token.access-ttl-seconds:900}")
+    private long accessTtlSeconds;
+
+    @Value("${auth.token.refresh-ttl-seconds:1209600}")
+    private long refreshTtlSeconds;
+
+    private SecretKeySpec key;
+    private ThreadLocal<Mac> macs;
+
+    public record Claims(Long userId, String role, String type, long expiresAt) {
+    }
+
+    public record TokenPair(String accessToken, String refreshToken, long expiresIn) {
+    }
+
+    public TokenService(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    void init() {
+        byte[] keyBytes;
+        if (secret == null || secret.isBlank()) {
+            keyBytes = new byte[32];
+            new SecureRandom().nextBytes(keyBytes);
+            System.err.println("auth.token.secret is not set: using a random key, tokens will not survive a restart "
+                    + "or be accepted by other instances");
+        } else {
+            keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+            if (keyBytes.length < 32) {
+                throw new IllegalStateException("auth.token.secret must be at least 32 bytes");
+            }
+        }
+        key = new SecretKeySpec(keyBytes, "HmacSHA256");
+        macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HmacSHA256 unavailable", e);
+            }
+        });
+    }
+
+    // === ISSUING ===
+
+    public TokenPair issue(User user) {
+        String role = roleOf(user);
+        return new TokenPair(
+                sign(user.getId(), role, ACCESS, accessTtlSeconds),
+                sign(user.getId(), role, REFRESH, refreshTtlSeconds),
+                accessTtlSeconds);
+    }
+
+    private String sign(Long userId, String role, String type, long ttlSeconds) {
+        long now = System.currentTimeMillis() / 1000;
+        ObjectNode payload = objectMapper.createObjectNode()
+                .put("iss", issuer)
+                .put("sub", String.valueOf(userId))
+                .put("typ", type)
+                .put("iat", now)
+                .put("exp", now + ttlSeconds);
+        payload.putArray("roles").add(role);
+        if (REFRESH.equals(type)) {
+            payload.put("jti", UUID.randomUUID().toString());
+        }
+        try {
+            String body = HEADER + "." + ENCODER.encodeToString(objectMapper.writeValueAsBytes(payload));
+            return body + "." + ENCODER.encodeToString(mac(body));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Could not write token", e);
+        }
+    }
+
+    // === VERIFYING ===
+
+    // Claims of a well-formed, correctly signed, unexpired token of the expected type
+    public Optional<Claims> verify(String token, String expectedType) {
+        if (token == null) {
+            return Optional.empty();
+        }
+        int first = token.indexOf('.');
+        int second = token.indexOf('.', first + 1);
+        if (first != HEADER.length() || second < 0 || token.indexOf('.', second + 1) >= 0
+                || !token.startsWith(HEADER)) {
+            return Optional.empty();
+        }
+
+        try {
+            byte[] expected = mac(token.substring(0, second));
+            byte[] actual = DECODER.decode(token.substring(second + 1));
+            if (!MessageDigest.isEqual(expected, actual)) {
+                return Optional.empty();
+            }
+            JsonNode payload = objectMapper.readTree(DECODER.decode(token.substring(first + 1, second)));
+            long expiresAt = payload.path("exp").asLong(0);
+            if (expiresAt <= System.currentTimeMillis() / 1000
+                    || !expectedType.equals(payload.path("typ").asText())
+                    || !issuer.equals(payload.path("iss").asText())) {
+                return Optional.empty();
+            }
+            JsonNode roles = payload.path("roles");
+            String role = roles.isArray() && roles.size() > 0 ? roles.get(0).asText() : User.Role.USER.name();
+            return Optional.of(new Claims(Long.valueOf(payload.path("sub").asText()), role, expectedType, expiresAt));
+        } catch (IllegalArgumentException | IOException e) {
+            // Bad base64, bad JSON or a non-numeric subject
+            return Optional.empty();
+        }
+    }
+
+    private byte[] mac(String signingInput) {
+        return macs.get().doFinal(signingInput.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String roleOf(User user) {
+        return user.getRole() != null ? user.getRole().name() : User.Role.USER.name();
+    }
+}
@@ -0,0 +1,123 @@
+package com.housetreasure.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.housetreasure.model.Transaction.TransactionStatus;
+
+/**
+ * Gzipped CSV export of transactions for accounting.
+ *
+ * Rows are read through a forward-only, read-only cursor: inside a transaction the
+ * PostgreSQL driver fetches transactions.export.fetch-size rows at a time instead of the
+ * whole result, and each row is written out as soon as it is read. Memory use does not
+ * grow with the size of the export.
+ */
+@Service
+public class TransactionExportService {
+    // Exported columns, in order; also the CSV header
+    private static final List<String> COLUMNS = List.of(
+            "id", "transaction_reference", "created_at", "status", "amount", "payment_method",
+            "buyer_id", "seller_id", "item_id", "category_id", "payment_confirmed_at", "completed_at",
+            "cancelled_at", "is_refunded", "refunded_at", "payment_reference");
+    private static final String SELECT = "SELECT " + String.join(", ", COLUMNS) + " FROM transactions";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public TransactionExportService(DataSource dataSource, PlatformTransactionManager transactionManager,
+                                    @Value("${transactions.export.fetch-size:1000}") int fetchSize) {
+        // Own template so the fetch size applies to exports only
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Writes the transactions matching the filters, oldest first, as gzipped CSV with a
+     * header row. from/to are inclusive creation days; any filter may be null. Returns the
+     * number of rows written.
+     */
+    public long exportCsv(TransactionStatus status, LocalDate from, LocalDate to, OutputStream out) throws IOException {
+        StringBuilder sql = new StringBuilder(SELECT).append(" WHERE TRUE");
+        List<Object> args = new ArrayList<>();
+        if (status != null) {
+            sql.append(" AND status = ?");
+            args.add(status.name());
+        }
+        if (from != null) {
+            sql.append(" AND created_at >= ?");
+            args.add(from.atStartOfDay());
+        }
+        if (to != null) {
+            sql.append(" AND created_at < ?");
+            args.add(to.plusDays(1).atStartOfDay());
+        }
+        sql.append(" ORDER BY created_at, id");
+
+        GZIPOutputStream gzip = new GZIPOutputStream(out, 64 * 1024);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8), 64 * 1024);
+        writer.write(String.join(",", COLUMNS));
+        writer.write("\r\n");
+        long[] rows = new long[1];
+        try {
+            readOnlyTransaction.executeWithoutResult(tx -> jdbcTemplate.query(sql.toString(), rs -> {
+                try {
+                    writeRow(rs, writer);
+                    rows[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, args.toArray()));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+        gzip.finish();
+        return rows[0];
+    }
+
+    private static void writeRow(ResultSet rs, Writer writer) throws SQLException, IOException {
+        for (int column = 1; column <= COLUMNS.size(); column++) {
+            if (column > 1) {
+                writer.write(',');
+            }
+            String value = rs.getString(column);
+            if (value != null) {
+                writer.write(escapeCsv(value));
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    // RFC 4180: quote fields containing a separator, quote or line break; double inner quotes
+    private static String escapeCsv(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return '"' + value.replace("\"", "\"\"") + '"';
+            }
+        }
+        return value;
+    }
+}
@@ -0,0 +1,84 @@
+package com.housetreasure.service;
+
+import java.time.Instant;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Snowflake-style transaction references: 41 bits of milliseconds since 2024-01-01 UTC,
+ * 10 bits of node id (transactions.reference.node-id) and a 12-bit per-millisecond
+ * sequence, written as 13 Crockford base32 characters after "TXN-".
+ *
+ * References are unique as long as every running instance has its own node id, need no
+ * database round trip, and sort by creation time as plain strings. Up to 4096 references
+ * per millisecond per node; beyond that, or if the clock steps back, generation waits
+ * for the clock to catch up.
+ */
+@Component
+public class TransactionReferenceGenerator {
+    private static final String PREFIX = "TXN-";
+    private static final long EPOCH_MS = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final char[] CROCKFORD = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int ENCODED_LENGTH = 13;
+
+    @Value("${transactions.reference.node-id:0}")
+    private long nodeId;
+
+    private long lastMs = -1;
+    private long sequence;
+
+    @PostConstruct
+    void init() {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalStateException("transactions.reference.node-id must be between 0 and " + MAX_NODE_ID);
+        }
+    }
+
+    public String next() {
+        return PREFIX + encode(nextId());
+    }
+
+    synchronized long nextId() {
+        long now = System.currentTimeMillis() - EPOCH_MS;
+        if (now < lastMs) {
+            // Clock stepped back: keep issuing from the last millisecond seen
+            now = lastMs;
+        }
+        if (now == lastMs) {
+            sequence = (sequence + 1) & SEQUENCE_MASK;
+            if (sequence == 0) {
+                now = waitForNextMs(lastMs);
+            }
+        } else {
+            sequence = 0;
+        }
+        lastMs = now;
+        return (now << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+    }
+
+    private static long waitForNextMs(long lastMs) {
+        long now = System.currentTimeMillis() - EPOCH_MS;
+        while (now <= lastMs) {
+            Thread.onSpinWait();
+            now = System.currentTimeMillis() - EPOCH_MS;
+        }
+        return now;
+    }
+
+    // Fixed width, most significant first, so string order matches numeric order
+    private static String encode(long id) {
+        char[] encoded = new char[ENCODED_LENGTH];
+        for (int i = ENCODED_LENGTH - 1; i >= 0; i--) {
+            encoded[i] = CROCKFORD[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(encoded);
+    }
+}
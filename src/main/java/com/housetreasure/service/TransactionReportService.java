@@ -0,0 +1,173 @@
+package com.housetreasure.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.housetreasure.dto.ReportRow;
+import com.housetreasure.model.Item;
+import com.housetreasure.model.Transaction.TransactionStatus;
+import com.housetreasure.repository.ItemRepository;
+
+/**
+ * Transaction reports served from transaction_daily_rollups.
+ *
+ * The rollups hold one row per creation day, status, payment method, seller province and
+ * item category. A new transaction adds itself through recordCreated; status changes move
+ * it between status buckets inside the transition UPDATE. Reads therefore touch a few rows
+ * per day in the range instead of every transaction.
+ *
+ * Every dimension is read from the transaction row itself: category and seller province
+ * are copied onto it at creation, so adding and moving a transaction always hit the same
+ * buckets however the seller's profile changes. rebuild recomputes everything from the
+ * transactions table.
+ */
+@Service
+public class TransactionReportService {
+    private static final int BACKFILL_BATCH_SIZE = 500;
+
+    private static final String UPSERT_SUFFIX =
+            " ON CONFLICT (day, status, payment_method, province, category_id) DO UPDATE SET " +
+            "tx_count = transaction_daily_rollups.tx_count + EXCLUDED.tx_count, " +
+            "gmv = transaction_daily_rollups.gmv + EXCLUDED.gmv";
+
+    private static final String RECORD_CREATED =
+            "INSERT INTO transaction_daily_rollups " +
+            "(day, status, payment_method, province, category_id, tx_count, gmv) " +
+            "SELECT CAST(t.created_at AS date), t.status, COALESCE(t.payment_method, ''), " +
+            "COALESCE(t.seller_province, ''), COALESCE(t.category_id, ''), 1, t.amount " +
+            "FROM transactions t " +
+            "WHERE t.id = ? AND t.status IS NOT NULL" + UPSERT_SUFFIX;
+
+    private static final String REBUILD =
+            "INSERT INTO transaction_daily_rollups " +
+            "(day, status, payment_method, province, category_id, tx_count, gmv) " +
+            "SELECT CAST(t.created_at AS date), t.status, COALESCE(t.payment_method, ''), " +
+            "COALESCE(t.seller_province, ''), COALESCE(t.category_id, ''), COUNT(*), SUM(t.amount) " +
+            "FROM transactions t " +
+            "WHERE t.status IS NOT NULL AND t.created_at IS NOT NULL " +
+            "GROUP BY 1, 2, 3, 4, 5";
+
+    // Request dimension -> rollup column; anything else is rejected before it reaches SQL
+    private static final Map<String, String> DIMENSIONS = Map.of(
+            "payment-method", "payment_method",
+            "province", "province",
+            "category", "category_id");
+
+    private static final RowMapper<ReportRow> ROW = (rs, rowNum) ->
+            new ReportRow(rs.getString(1), rs.getLong(2), rs.getBigDecimal(3));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ItemRepository itemRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public TransactionReportService(JdbcTemplate jdbcTemplate, ItemRepository itemRepository,
+                                    PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.itemRepository = itemRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // === MAINTENANCE ===
+
+    // First start with the rollup table: build it from the transactions already there
+    @EventListener(ApplicationReadyEvent.class)
+    public void seedIfEmpty() {
+        try {
+            Boolean empty = jdbcTemplate.queryForObject(
+                    "SELECT NOT EXISTS (SELECT 1 FROM transaction_daily_rollups) " +
+                    "AND EXISTS (SELECT 1 FROM transactions)", Boolean.class);
+            if (Boolean.TRUE.equals(empty)) {
+                rebuild();
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Could not seed transaction rollups: " + e.getMessage());
+        }
+    }
+
+    // Adds a just-inserted transaction; must run in the transaction that inserted it, after the flush
+    public void recordCreated(Long transactionId) {
+        jdbcTemplate.update(RECORD_CREATED, transactionId);
+    }
+
+    /**
+     * Copies missing category ids from MongoDB onto transactions, then recomputes all
+     * rollups. Status changes wait on the table lock while the rollups are replaced.
+     */
+    public int rebuild() {
+        int backfilled = backfillCategories();
+        Integer rows = transactionTemplate.execute(status -> {
+            jdbcTemplate.execute("LOCK TABLE transaction_daily_rollups IN EXCLUSIVE MODE");
+            jdbcTemplate.update("DELETE FROM transaction_daily_rollups");
+            return jdbcTemplate.update(REBUILD);
+        });
+        System.out.println("Rebuilt transaction rollups: " + rows + " rows, "
+                + backfilled + " transactions given a category");
+        return rows == null ? 0 : rows;
+    }
+
+    private int backfillCategories() {
+        int updated = 0;
+        String lastItemId = "";
+        while (true) {
+            List<String> itemIds = jdbcTemplate.queryForList(
+                    "SELECT DISTINCT item_id FROM transactions " +
+                    "WHERE category_id IS NULL AND item_id > ? ORDER BY item_id LIMIT ?",
+                    String.class, lastItemId, BACKFILL_BATCH_SIZE);
+            if (itemIds.isEmpty()) {
+                return updated;
+            }
+            List<Object[]> args = new ArrayList<>();
+            for (Item item : itemRepository.findAllById(itemIds)) {
+                if (item.getCategoryId() != null) {
+                    args.add(new Object[] { item.getCategoryId(), item.getId() });
+                }
+            }
+            if (!args.isEmpty()) {
+                for (int count : jdbcTemplate.batchUpdate(
+                        "UPDATE transactions SET category_id = ? WHERE item_id = ? AND category_id IS NULL", args)) {
+                    updated += Math.max(count, 0);
+                }
+            }
+            lastItemId = itemIds.get(itemIds.size() - 1);
+        }
+    }
+
+    // === REPORTS ===
+    // Ranges are inclusive creation days
+
+    public List<ReportRow> getDailyGmv(LocalDate from, LocalDate to, TransactionStatus status) {
+        return jdbcTemplate.query(
+                "SELECT CAST(day AS varchar), SUM(tx_count), SUM(gmv) FROM transaction_daily_rollups " +
+                "WHERE status = ? AND day >= ? AND day < ? GROUP BY day ORDER BY day",
+                ROW, status.name(), from, to.plusDays(1));
+    }
+
+    public List<ReportRow> getGmvBy(String dimension, LocalDate from, LocalDate to, TransactionStatus status) {
+        String column = DIMENSIONS.get(dimension);
+        if (column == null) {
+            throw new RuntimeException("Unknown report dimension: " + dimension);
+        }
+        return jdbcTemplate.query(
+                "SELECT " + column + ", SUM(tx_count), SUM(gmv) FROM transaction_daily_rollups " +
+                "WHERE status = ? AND day >= ? AND day < ? GROUP BY " + column + " ORDER BY SUM(gmv) DESC",
+                ROW, status.name(), from, to.plusDays(1));
+    }
+
+    // All transactions created in the year, per month, whatever their status
+    public List<ReportRow> getMonthlySummary(int year) {
+        return jdbcTemplate.query(
+                "SELECT to_char(day, 'YYYY-MM'), SUM(tx_count), SUM(gmv) FROM transaction_daily_rollups " +
+                "WHERE day >= ? AND day < ? GROUP BY 1 ORDER BY 1",
+                ROW, LocalDate.of(year, 1, 1), LocalDate.of(year + 1, 1, 1));
+    }
+}
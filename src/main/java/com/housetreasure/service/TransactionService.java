@@ -2,37 +2,75 @@ package com.housetreasure.service;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
-
+import org.springframework.transaction.annotation.Transactional;
+
+import com.housetreasure.dto.CursorPage;
+import com.housetreasure.dto.PageCursor;
+import com.housetreasure.dto.TransactionSummary;
+import com.housetreasure.dto.UserTransaction;
+import com.housetreasure.exception.TransactionConflictException;
+import com.housetreasure.exception.TransactionConflictException.Outcome;
+import com.housetreasure.model.Item;
 import com.housetreasure.model.Offer;
 import com.housetreasure.model.Transaction;
 import com.housetreasure.model.Transaction.PaymentMethod;
 import com.housetreasure.model.Transaction.TransactionStatus;
+import com.housetreasure.model.TransactionTransition;
 import com.housetreasure.model.User;
 import com.housetreasure.repository.TransactionRepository;
 
 @Service
 public class TransactionService {
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final TransactionRepository transactionRepository;
     private final UserService userService;
+    private final OutboxService outboxService;
+    private final ItemService itemService;
+    private final TransactionReportService transactionReportService;
+    private final TransactionReferenceGenerator referenceGenerator;
+
+    // Older waiting transactions are normally timed out by StalePaymentSweeper long before this
+    @Value("${transactions.pending-payments.max-age-days:30}")
+    private long pendingPaymentsMaxAgeDays;
 
     public TransactionService(TransactionRepository transactionRepository, 
-                            UserService userService) {
+                            UserService userService, OutboxService outboxService,
+                            ItemService itemService, TransactionReportService transactionReportService,
+                            TransactionReferenceGenerator referenceGenerator) {
         this.transactionRepository = transactionRepository;
         this.userService = userService;
+        this.outboxService = outboxService;
+        this.itemService = itemService;
+        this.transactionReportService = transactionReportService;
+        this.referenceGenerator = referenceGenerator;
     }
 
     // === BASIC OPERATIONS ===
-    public List<Transaction> getAllTransactions() {
-        return transactionRepository.findAll();
+    public List<TransactionSummary> getAllTransactions() {
+        return transactionRepository.findAllSummaries();
     }
 
+    @Transactional
     public Transaction saveTransaction(Transaction transaction) {
-        return transactionRepository.save(transaction);
+        if (transaction.getId() != null) {
+            return transactionRepository.save(transaction);
+        }
+        if (transaction.getTransactionReference() == null) {
+            transaction.setTransactionReference(referenceGenerator.next());
+        }
+        if (transaction.getCategoryId() == null) {
+            transaction.setCategoryId(categoryOf(transaction.getItemId()));
+        }
+        return created(transaction);
     }
 
     public Optional<Transaction> getTransactionById(Long id) {
@@ -40,19 +78,23 @@ public class TransactionService {
     }
 
     // === CREATING TRANSACTIONS ===
+    @Transactional
     public Transaction createTransactionFromOffer(Offer offer) {
         Transaction transaction = new Transaction();
         
         transaction.setBuyer(offer.getBuyer());
         transaction.setSeller(offer.getSeller());
+        transaction.setItemId(offer.getItemId());
+        transaction.setCategoryId(categoryOf(offer.getItemId()));
         transaction.setAmount(offer.getOfferedAmount());
-        transaction.setTransactionReference(generateTransactionReference());
+        transaction.setTransactionReference(referenceGenerator.next());
         transaction.setStatus(TransactionStatus.PENDING);
         transaction.setCreatedAt(LocalDateTime.now());
         
-        return transactionRepository.save(transaction);
+        return created(transaction);
     }
 
+    @Transactional
     public Transaction createTransaction(Long buyerId, Long sellerId, String itemId, 
                                       BigDecimal amount, PaymentMethod paymentMethod,
                                       String buyerPhone, String sellerPhone) {
@@ -66,239 +108,182 @@ public class TransactionService {
         
         transaction.setBuyer(buyer);
         transaction.setSeller(seller);
+        transaction.setItemId(itemId);
+        transaction.setCategoryId(categoryOf(itemId));
         transaction.setAmount(amount);
         transaction.setPaymentMethod(paymentMethod);
         transaction.setBuyerPhoneNumber(buyerPhone);
         transaction.setSellerPhoneNumber(sellerPhone);
-        transaction.setTransactionReference(generateTransactionReference());
+        transaction.setTransactionReference(referenceGenerator.next());
         transaction.setStatus(TransactionStatus.PENDING);
         transaction.setCreatedAt(LocalDateTime.now());
         
-        return transactionRepository.save(transaction);
+        return created(transaction);
+    }
+
+    // Inserts the transaction and adds it to the reporting rollups in the same database transaction
+    private Transaction created(Transaction transaction) {
+        if (transaction.getSellerProvince() == null) {
+            transaction.setSellerProvince(provinceOf(transaction.getSeller()));
+        }
+        Transaction saved = transactionRepository.saveAndFlush(transaction);
+        transactionReportService.recordCreated(saved.getId());
+        return saved;
+    }
+
+    // Category is copied from the item so reports can group by it without reading MongoDB
+    private String categoryOf(String itemId) {
+        if (itemId == null) {
+            return null;
+        }
+        return itemService.getItemById(itemId).map(Item::getCategoryId).orElse(null);
+    }
+
+    // Copied like the category, so rollup rows keep their bucket when the seller moves
+    private String provinceOf(User seller) {
+        if (seller == null || seller.getId() == null) {
+            return null;
+        }
+        return userService.getUserById(seller.getId()).map(User::getProvince).orElse(null);
     }
 
     // === STATUS MANAGEMENT ===
+    // Administrative status change, limited to moves some transition in the table allows
+    @Transactional
     public Transaction updateTransactionStatus(Long transactionId, TransactionStatus newStatus) {
-        return transactionRepository.findById(transactionId)
-            .map(transaction -> {
-                transaction.setStatus(newStatus);
-                
-                // Update timestamps based on status
-                switch (newStatus) {
-                    case PENDING:
-                        // No specific action needed for pending
-                        break;
-                    case PAYMENT_SENT:
-                        // No specific timestamp for payment sent
-                        break;
-                    case PAYMENT_CONFIRMED:
-                        transaction.setPaymentConfirmedAt(LocalDateTime.now());
-                        break;
-                    case PICKUP_ARRANGED:
-                        // No specific timestamp for pickup arranged
-                        break;
-                    case PICKUP_COMPLETED:
-                        transaction.setPickupCompletedAt(LocalDateTime.now());
-                        break;
-                    case COMPLETED:
-                        transaction.setCompletedAt(LocalDateTime.now());
-                        break;
-                    case CANCELLED:
-                        transaction.setCancelledAt(LocalDateTime.now());
-                        break;
-                    case DISPUTED:
-                        // No specific timestamp for disputed
-                        break;
-                }
-                
-                return transactionRepository.save(transaction);
-            })
-            .orElseThrow(() -> new RuntimeException("Transaction not found"));
+        return transition(transactionId, TransactionTransition.to(newStatus), null, Map.of());
     }
 
     // === PAYMENT PROCESSING ===
-    public Transaction processPayment(Long transactionId, String paymentReference) {
-        return transactionRepository.findById(transactionId)
-            .map(transaction -> {
-                if (transaction.getStatus() != TransactionStatus.PENDING) {
-                    throw new RuntimeException("Transaction is not in pending status");
-                }
-                
-                transaction.setStatus(TransactionStatus.PAYMENT_SENT);
-                transaction.setTransactionReference(paymentReference);
-                
-                return transactionRepository.save(transaction);
-            })
-            .orElseThrow(() -> new RuntimeException("Transaction not found"));
+    @Transactional
+    public Transaction processPayment(Long transactionId, String paymentReference, Long buyerId) {
+        return transition(transactionId, TransactionTransition.SEND_PAYMENT, buyerId,
+                changes("payment_reference", paymentReference));
     }
 
+    @Transactional
     public Transaction confirmPayment(Long transactionId, Long sellerId) {
-        return transactionRepository.findById(transactionId)
-            .map(transaction -> {
-                if (!transaction.getSeller().getId().equals(sellerId)) {
-                    throw new RuntimeException("Only seller can confirm payment");
-                }
-                
-                if (transaction.getStatus() != TransactionStatus.PAYMENT_SENT) {
-                    throw new RuntimeException("Payment not yet sent");
-                }
-                
-                transaction.setStatus(TransactionStatus.PAYMENT_CONFIRMED);
-                transaction.setPaymentConfirmedAt(LocalDateTime.now());
-                
-                return transactionRepository.save(transaction);
-            })
-            .orElseThrow(() -> new RuntimeException("Transaction not found"));
-    }
-
-    public Transaction verifyPayment(Long transactionId, String verificationCode) {
-        // In a real implementation, this would verify with mobile money provider
-        return transactionRepository.findById(transactionId)
-            .map(transaction -> {
-                // Simulate payment verification
-                transaction.setStatus(TransactionStatus.PAYMENT_CONFIRMED);
-                transaction.setPaymentConfirmedAt(LocalDateTime.now());
-                
-                return transactionRepository.save(transaction);
-            })
-            .orElseThrow(() -> new RuntimeException("Transaction not found"));
+        return transition(transactionId, TransactionTransition.CONFIRM_PAYMENT, sellerId, Map.of());
     }
 
     // === DELIVERY MANAGEMENT ===
+    @Transactional
     public Transaction updateDeliveryInfo(Long transactionId, String pickupLocation, 
-                                        LocalDateTime pickupDate, String instructions) {
-        return transactionRepository.findById(transactionId)
-            .map(transaction -> {
-                transaction.setPickupLocation(pickupLocation);
-                transaction.setPickupDate(pickupDate);
-                transaction.setPickupInstructions(instructions);
-                transaction.setStatus(TransactionStatus.PICKUP_ARRANGED);
-                
-                return transactionRepository.save(transaction);
-            })
-            .orElseThrow(() -> new RuntimeException("Transaction not found"));
+                                        LocalDateTime pickupDate, String instructions, Long userId) {
+        return transition(transactionId, TransactionTransition.ARRANGE_PICKUP, userId,
+                changes("pickup_location", pickupLocation,
+                        "pickup_date", pickupDate,
+                        "pickup_instructions", instructions));
     }
 
+    @Transactional
     public Transaction confirmItemDelivered(Long transactionId, Long sellerId) {
-        return transactionRepository.findById(transactionId)
-            .map(transaction -> {
-                if (!transaction.getSeller().getId().equals(sellerId)) {
-                    throw new RuntimeException("Only seller can confirm delivery");
-                }
-                
-                transaction.setStatus(TransactionStatus.PICKUP_COMPLETED);
-                transaction.setPickupCompletedAt(LocalDateTime.now());
-                
-                return transactionRepository.save(transaction);
-            })
-            .orElseThrow(() -> new RuntimeException("Transaction not found"));
+        return transition(transactionId, TransactionTransition.CONFIRM_DELIVERY, sellerId, Map.of());
     }
 
+    @Transactional
     public Transaction confirmItemReceived(Long transactionId, Long buyerId) {
-        return transactionRepository.findById(transactionId)
-            .map(transaction -> {
-                if (!transaction.getBuyer().getId().equals(buyerId)) {
-                    throw new RuntimeException("Only buyer can confirm receipt");
-                }
-                
-                transaction.setStatus(TransactionStatus.COMPLETED);
-                transaction.setCompletedAt(LocalDateTime.now());
-                
-                return transactionRepository.save(transaction);
-            })
-            .orElseThrow(() -> new RuntimeException("Transaction not found"));
+        return transition(transactionId, TransactionTransition.CONFIRM_RECEIPT, buyerId, Map.of());
     }
 
     // === TRANSACTION COMPLETION ===
+    @Transactional
     public Transaction completeTransaction(Long transactionId) {
-        return transactionRepository.findById(transactionId)
-            .map(transaction -> {
-                if (transaction.getStatus() != TransactionStatus.PICKUP_COMPLETED) {
-                    throw new RuntimeException("Transaction cannot be completed in current status");
-                }
-                
-                transaction.setStatus(TransactionStatus.COMPLETED);
-                transaction.setCompletedAt(LocalDateTime.now());
-                
-                return transactionRepository.save(transaction);
-            })
-            .orElseThrow(() -> new RuntimeException("Transaction not found"));
+        return transition(transactionId, TransactionTransition.COMPLETE, null, Map.of());
     }
 
     // === CANCELLATION AND REFUNDS ===
+    @Transactional
     public Transaction cancelTransaction(Long transactionId, String reason, Long userId) {
-        return transactionRepository.findById(transactionId)
-            .map(transaction -> {
-                // Check if user is buyer or seller
-                if (!transaction.getBuyer().getId().equals(userId) && 
-                    !transaction.getSeller().getId().equals(userId)) {
-                    throw new RuntimeException("Only buyer or seller can cancel transaction");
-                }
-                
-                transaction.setStatus(TransactionStatus.CANCELLED);
-                transaction.setCancellationReason(reason);
-                transaction.setCancelledAt(LocalDateTime.now());
-                
-                return transactionRepository.save(transaction);
-            })
-            .orElseThrow(() -> new RuntimeException("Transaction not found"));
+        return transition(transactionId, TransactionTransition.CANCEL, userId,
+                changes("cancellation_reason", reason));
     }
 
+    @Transactional
     public Transaction processRefund(Long transactionId, String refundReason) {
-        return transactionRepository.findById(transactionId)
-            .map(transaction -> {
-                if (transaction.getStatus() != TransactionStatus.CANCELLED && 
-                    transaction.getStatus() != TransactionStatus.DISPUTED) {
-                    throw new RuntimeException("Cannot refund transaction in current status");
-                }
-                
-                transaction.setIsRefunded(true);
-                transaction.setRefundedAt(LocalDateTime.now());
-                transaction.setCancellationReason(refundReason);
-                
-                return transactionRepository.save(transaction);
-            })
-            .orElseThrow(() -> new RuntimeException("Transaction not found"));
+        return transition(transactionId, TransactionTransition.REFUND, null,
+                changes("is_refunded", true, "cancellation_reason", refundReason));
     }
 
     // === DISPUTE HANDLING ===
+    @Transactional
     public Transaction reportTransactionIssue(Long transactionId, String description, Long reporterId) {
-        return transactionRepository.findById(transactionId)
-            .map(transaction -> {
-                transaction.setStatus(TransactionStatus.DISPUTED);
-                transaction.setDisputeDescription(description);
-                
-                return transactionRepository.save(transaction);
-            })
-            .orElseThrow(() -> new RuntimeException("Transaction not found"));
+        return transition(transactionId, TransactionTransition.REPORT_ISSUE, reporterId,
+                changes("dispute_description", description));
+    }
+
+    /**
+     * Applies a transition in one guarded UPDATE. Only when nothing matched is the row read
+     * again, to tell a missing transaction from a wrong actor or a wrong status.
+     */
+    private Transaction transition(Long transactionId, TransactionTransition transition, Long actorId,
+                                   Map<String, Object> changes) {
+        Transaction transaction = transactionRepository
+            .applyTransition(transactionId, transition, actorId, changes, LocalDateTime.now())
+            .orElseThrow(() -> refused(transactionId, transition, actorId));
+        if (transition.target() == TransactionStatus.COMPLETED) {
+            // Same JPA transaction as the status change; OutboxRelay marks the item sold and updates profiles
+            outboxService.transactionCompleted(transaction);
+        }
+        return transaction;
+    }
+
+    private TransactionConflictException refused(Long transactionId, TransactionTransition transition, Long actorId) {
+        List<Object[]> rows = transactionRepository.findTransitionState(transactionId);
+        if (rows.isEmpty()) {
+            return new TransactionConflictException(Outcome.NOT_FOUND, "Transaction not found");
+        }
+        Object[] state = rows.get(0);
+        if (!transition.allowsActor(actorId, (Long) state[1], (Long) state[2])) {
+            return new TransactionConflictException(Outcome.FORBIDDEN,
+                    "Not allowed to " + transition.name().toLowerCase().replace('_', ' ') + " this transaction");
+        }
+        return new TransactionConflictException(Outcome.INVALID_STATE,
+                "Cannot " + transition.name().toLowerCase().replace('_', ' ') + " a transaction in status " + state[0]);
+    }
+
+    // Column -> value pairs, in order; values may be null
+    private static Map<String, Object> changes(Object... columnsAndValues) {
+        Map<String, Object> changes = new LinkedHashMap<>();
+        for (int i = 0; i < columnsAndValues.length; i += 2) {
+            changes.put((String) columnsAndValues[i], columnsAndValues[i + 1]);
+        }
+        return changes;
     }
 
     // === TRANSACTION HISTORY ===
-    public List<Transaction> getBuyerTransactionHistory(Long buyerId) {
-        return transactionRepository.findByBuyerIdOrderByCreatedAtDesc(buyerId);
+    public List<TransactionSummary> getBuyerTransactionHistory(Long buyerId) {
+        return transactionRepository.findSummariesByBuyerId(buyerId);
     }
 
-    public List<Transaction> getSellerTransactionHistory(Long sellerId) {
-        return transactionRepository.findBySellerIdOrderByCreatedAtDesc(sellerId);
+    public List<TransactionSummary> getSellerTransactionHistory(Long sellerId) {
+        return transactionRepository.findSummariesBySellerId(sellerId);
     }
 
-    public List<Transaction> getUserTransactionHistory(Long userId) {
-        List<Transaction> buyerTransactions = getBuyerTransactionHistory(userId);
-        List<Transaction> sellerTransactions = getSellerTransactionHistory(userId);
-        
-        // Combine and sort by date
-        buyerTransactions.addAll(sellerTransactions);
-        buyerTransactions.sort((t1, t2) -> t2.getCreatedAt().compareTo(t1.getCreatedAt()));
-        
-        return buyerTransactions;
+    // Bought and sold transactions in one newest-first listing, one keyset page at a time
+    public CursorPage<UserTransaction> getUserTransactionHistory(Long userId, String cursor, int size) {
+        int limit = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        PageCursor position = PageCursor.decode(cursor);
+        List<TransactionSummary> rows = transactionRepository.findUserTransactionsBefore(
+                userId, position.createdAt(), position.id(), PageRequest.of(0, limit + 1));
+
+        boolean hasMore = rows.size() > limit;
+        List<TransactionSummary> page = hasMore ? rows.subList(0, limit) : rows;
+        List<UserTransaction> items = page.stream()
+                .map(transaction -> new UserTransaction(
+                        userId.equals(transaction.buyerId()) ? "BUYER" : "SELLER", transaction))
+                .toList();
+        TransactionSummary last = page.isEmpty() ? null : page.get(page.size() - 1);
+        return new CursorPage<>(items,
+                hasMore ? new PageCursor(last.createdAt(), last.id()).encode() : null);
     }
 
-    public List<Transaction> getTransactionsByStatus(TransactionStatus status) {
-        return transactionRepository.findByStatus(status);
+    public List<TransactionSummary> getTransactionsByStatus(TransactionStatus status) {
+        return transactionRepository.findSummariesByStatus(status);
     }
 
-    public List<Transaction> getTransactionsByItem(String itemId) {
-        return transactionRepository.findByItemIdOrderByCreatedAtDesc(itemId);
+    public List<TransactionSummary> getTransactionsByItem(String itemId) {
+        return transactionRepository.findSummariesByItemId(itemId);
     }
 
     // === MESSAGING ===
@@ -329,46 +314,20 @@ public class TransactionService {
     }
 
     // === UTILITY METHODS ===
-    private String generateTransactionReference() {
-        return "TXN-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
-    }
-
     public Optional<Transaction> getTransactionByReference(String reference) {
         return transactionRepository.findByTransactionReference(reference);
     }
 
-    public List<Transaction> getPendingPayments(int hoursOld) {
+    public List<TransactionSummary> getPendingPayments(int hoursOld) {
         LocalDateTime cutoff = LocalDateTime.now().minusHours(hoursOld);
-        return transactionRepository.findPendingPayments(cutoff);
+        return transactionRepository.findPendingPayments(cutoff.minusDays(pendingPaymentsMaxAgeDays), cutoff);
     }
 
-    public List<Transaction> getTransactionsRequiringPickup() {
+    public List<TransactionSummary> getTransactionsRequiringPickup() {
         return transactionRepository.findTransactionsRequiringPickup();
     }
 
     public long getTransactionCountByStatus(TransactionStatus status) {
         return transactionRepository.countByStatus(status);
     }
-
-    // === RECEIPT GENERATION ===
-    public String generateTransactionReceipt(Long transactionId) {
-        return transactionRepository.findById(transactionId)
-            .map(transaction -> {
-                StringBuilder receipt = new StringBuilder();
-                receipt.append("HOUSE TREASURE TRANSACTION RECEIPT\n");
-                receipt.append("=====================================\n");
-                receipt.append("Transaction ID: ").append(transaction.getId()).append("\n");
-                receipt.append("Reference: ").append(transaction.getTransactionReference()).append("\n");
-                receipt.append("Date: ").append(transaction.getCreatedAt()).append("\n");
-                receipt.append("Amount: RWF ").append(transaction.getAmount()).append("\n");
-                receipt.append("Status: ").append(transaction.getStatus()).append("\n");
-                receipt.append("Payment Method: ").append(transaction.getPaymentMethod()).append("\n");
-                receipt.append("Buyer: ").append(transaction.getBuyer().getUsername()).append("\n");
-                receipt.append("Seller: ").append(transaction.getSeller().getUsername()).append("\n");
-                receipt.append("=====================================\n");
-                
-                return receipt.toString();
-            })
-            .orElse("Transaction not found");
-    }
 }
@@ -0,0 +1,158 @@
+package com.housetreasure.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.housetreasure.model.UnreadCounter;
+import com.housetreasure.repository.MessageRepository;
+
+/**
+ * Per-user and per-conversation unread message counters.
+ *
+ * Counters live in the unread_counters collection and are adjusted with atomic $inc
+ * updates whenever a message is created, read or unread. Reads are served from a
+ * Caffeine cache bounded to messages.unread-cache.max-entries counters, each kept for
+ * messages.unread-cache.ttl-ms; on a miss the counter document is used, and if no
+ * counter exists yet it is seeded once from a count query over the stored messages (the
+ * buckets when the bucketed layout is enabled, the messages collection otherwise).
+ * Adjustments drop the cached value rather than storing the count they got back, so
+ * concurrent adjustments cannot leave an older count cached.
+ */
+@Service
+public class UnreadCounterService {
+    private final MongoTemplate mongoTemplate;
+    private final MessageRepository messageRepository;
+    private final MessageBucketService messageBucketService;
+    private final Cache<String, Long> cache;
+
+    public UnreadCounterService(MongoTemplate mongoTemplate, MessageRepository messageRepository,
+                                MessageBucketService messageBucketService,
+                                @Value("${messages.unread-cache.ttl-ms:5000}") long cacheTtlMs,
+                                @Value("${messages.unread-cache.max-entries:50000}") long cacheMaxEntries) {
+        this.mongoTemplate = mongoTemplate;
+        this.messageRepository = messageRepository;
+        this.messageBucketService = messageBucketService;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(cacheMaxEntries)
+                .expireAfterWrite(Duration.ofMillis(cacheTtlMs))
+                .build();
+    }
+
+    // === READS ===
+
+    public long getUnreadCount(String userId) {
+        return read(userCounterId(userId), userId, null, () -> messageBucketService.isEnabled()
+                ? messageBucketService.countUnread(userId, null)
+                : messageRepository.countByReceiverAndIsRead(userId, false));
+    }
+
+    public long getUnreadCount(String userId, String peerId) {
+        return read(conversationCounterId(userId, peerId), userId, peerId, () -> messageBucketService.isEnabled()
+                ? messageBucketService.countUnread(userId, peerId)
+                : messageRepository.countBySenderAndReceiverAndIsRead(peerId, userId, false));
+    }
+
+    // === UPDATES ===
+
+    public void onMessageCreated(String receiver, String sender) {
+        adjust(receiver, sender, 1);
+    }
+
+    public void onMessagesRead(String receiver, String sender, long count) {
+        if (count > 0) {
+            adjust(receiver, sender, -count);
+        }
+    }
+
+    public void onMessageUnread(String receiver, String sender) {
+        adjust(receiver, sender, 1);
+    }
+
+    /**
+     * Drops the counters of a receiver so they are re-seeded from the stored messages
+     * on the next read. Used when messages change in ways that are not tracked incrementally.
+     */
+    public void invalidate(String receiver, String sender) {
+        if (receiver == null) {
+            return;
+        }
+        String userCounter = userCounterId(receiver);
+        String conversationCounter = conversationCounterId(receiver, sender);
+        mongoTemplate.remove(Query.query(Criteria.where("id").in(userCounter, conversationCounter)),
+                UnreadCounter.class);
+        cache.invalidate(userCounter);
+        cache.invalidate(conversationCounter);
+    }
+
+    private void adjust(String receiver, String sender, long delta) {
+        if (receiver == null) {
+            return;
+        }
+        adjust(userCounterId(receiver), delta);
+        if (sender != null) {
+            adjust(conversationCounterId(receiver, sender), delta);
+        }
+    }
+
+    private void adjust(String counterId, long delta) {
+        // No upsert: a counter that has never been read is seeded from the messages
+        // collection on first read, which already includes this change
+        mongoTemplate.updateFirst(
+                Query.query(Criteria.where("id").is(counterId)),
+                new Update().inc("count", delta).set("updatedAt", LocalDateTime.now()),
+                UnreadCounter.class);
+        cache.invalidate(counterId);
+    }
+
+    private long read(String counterId, String userId, String peerId, LongSupplier fallback) {
+        Long cached = cache.getIfPresent(counterId);
+        if (cached != null) {
+            return cached;
+        }
+
+        UnreadCounter counter = mongoTemplate.findById(counterId, UnreadCounter.class);
+        long value = counter != null ? Math.max(0L, counter.getCount()) : seed(counterId, userId, peerId, fallback);
+        cache.put(counterId, value);
+        return value;
+    }
+
+    /**
+     * Creates a missing counter from a count of the stored messages. $setOnInsert keeps a
+     * counter that another request seeded in the meantime, and the count is never replaced
+     * afterwards, so no change can be applied on top of a count that already includes it.
+     * Changes made between the count and the insert find no counter and are not counted.
+     */
+    private long seed(String counterId, String userId, String peerId, LongSupplier fallback) {
+        long value = fallback.getAsLong();
+        boolean inserted = mongoTemplate.upsert(Query.query(Criteria.where("id").is(counterId)),
+                new Update()
+                        .setOnInsert("count", value)
+                        .setOnInsert("userId", userId)
+                        .setOnInsert("peerId", peerId)
+                        .setOnInsert("updatedAt", LocalDateTime.now()),
+                UnreadCounter.class).getUpsertedId() != null;
+        if (inserted) {
+            return value;
+        }
+        UnreadCounter winner = mongoTemplate.findById(counterId, UnreadCounter.class);
+        return winner != null ? Math.max(0L, winner.getCount()) : value;
+    }
+
+    private static String userCounterId(String userId) {
+        return "u:" + userId;
+    }
+
+    private static String conversationCounterId(String userId, String peerId) {
+        return "c:" + userId + ":" + peerId;
+    }
+}
@@ -0,0 +1,148 @@
+package com.housetreasure.service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.housetreasure.model.User;
+import com.housetreasure.model.UserProfile;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Bounded in-memory caches of users and profiles for the read-mostly lookups: users by id
+ * (transactions, token refresh, /me), users by email (login) and profiles by user id.
+ *
+ * Entries are detached entities shared between requests; treat them as read-only. Every
+ * write through UserService, UserProfileService or the outbox relay evicts the user's
+ * entries on this node, again once the surrounding transaction ends so a concurrent read
+ * cannot put the old row back. Other nodes are not told, so entries also expire
+ * users.cache.ttl-seconds after loading; that is how stale a suspension or profile edit
+ * can look elsewhere.
+ *
+ * Each region is bounded by users.cache.max-size and reports hits and misses as the
+ * cache.gets metric tagged with its name, and through {@link #stats()}.
+ */
+@Component
+public class UserCache {
+    public static final String USERS = "users";
+    public static final String USERS_BY_EMAIL = "users-by-email";
+    public static final String PROFILES = "user-profiles";
+
+    private final Cache<Long, User> users;
+    // Email to id; the user itself is read through the users region
+    private final Cache<String, Long> idsByEmail;
+    private final Cache<Long, UserProfile> profiles;
+
+    public record RegionStats(String region, long size, long hits, long misses, double hitRatio, long evictions) {
+    }
+
+    public UserCache(MeterRegistry meterRegistry,
+                     @Value("${users.cache.max-size:10000}") long maxSize,
+                     @Value("${users.cache.ttl-seconds:60}") long ttlSeconds) {
+        this.users = CaffeineCacheMetrics.monitor(meterRegistry, build(maxSize, ttlSeconds), USERS);
+        this.idsByEmail = CaffeineCacheMetrics.monitor(meterRegistry, build(maxSize, ttlSeconds), USERS_BY_EMAIL);
+        this.profiles = CaffeineCacheMetrics.monitor(meterRegistry, build(maxSize, ttlSeconds), PROFILES);
+    }
+
+    private static <K, V> Cache<K, V> build(long maxSize, long ttlSeconds) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+    }
+
+    // === LOOKUPS ===
+    // Loaders returning null (no such row) are not cached, so new accounts are found at once
+
+    public Optional<User> getUser(Long id, Function<Long, User> loader) {
+        return Optional.ofNullable(users.get(id, loader));
+    }
+
+    public Optional<User> getUserByEmail(String email, Function<String, User> loader) {
+        Long id = idsByEmail.getIfPresent(email);
+        User user = id != null ? users.getIfPresent(id) : null;
+        if (user != null && email.equals(user.getEmail())) {
+            return Optional.of(user);
+        }
+        user = loader.apply(email);
+        if (user != null) {
+            idsByEmail.put(email, user.getId());
+            users.put(user.getId(), user);
+        }
+        return Optional.ofNullable(user);
+    }
+
+    public Optional<UserProfile> getProfile(Long userId, Function<Long, UserProfile> loader) {
+        return Optional.ofNullable(profiles.get(userId, loader));
+    }
+
+    // === INVALIDATION ===
+
+    public void evictUser(User user) {
+        if (user == null || user.getId() == null) {
+            return;
+        }
+        evictUser(user.getId());
+        if (user.getEmail() != null) {
+            evict(() -> idsByEmail.invalidate(user.getEmail()));
+        }
+    }
+
+    // The email entry goes stale harmlessly: lookups check the email of the user it points to
+    public void evictUser(Long userId) {
+        if (userId != null) {
+            evict(() -> users.invalidate(userId));
+        }
+    }
+
+    // The cached user embeds its profile, so it goes too
+    public void evictProfile(Long userId) {
+        if (userId != null) {
+            evict(() -> {
+                profiles.invalidate(userId);
+                users.invalidate(userId);
+            });
+        }
+    }
+
+    private static void evict(Runnable eviction) {
+        eviction.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    eviction.run();
+                }
+            });
+        }
+    }
+
+    // === STATS ===
+
+    public Map<String, RegionStats> stats() {
+        Map<String, RegionStats> stats = new LinkedHashMap<>();
+        stats.put(USERS, stats(USERS, users));
+        stats.put(USERS_BY_EMAIL, stats(USERS_BY_EMAIL, idsByEmail));
+        stats.put(PROFILES, stats(PROFILES, profiles));
+        return stats;
+    }
+
+    private static RegionStats stats(String region, Cache<?, ?> cache) {
+        CacheStats stats = cache.stats();
+        return new RegionStats(region, cache.estimatedSize(), stats.hitCount(), stats.missCount(),
+                stats.hitRate(), stats.evictionCount());
+    }
+}
@@ -3,7 +3,10 @@ package com.housetreasure.service;
 import java.time.LocalDateTime;
 import java.util.Optional;
 
+import org.hibernate.Hibernate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.housetreasure.model.UserProfile;
 import com.housetreasure.repository.UserProfileRepository;
@@ -11,18 +14,45 @@ import com.housetreasure.repository.UserProfileRepository;
 @Service
 public class UserProfileService {
     private final UserProfileRepository userProfileRepository;
+    private final UserCache userCache;
+    private final TransactionTemplate readOnlyTransaction;
 
-    public UserProfileService(UserProfileRepository userProfileRepository) {
+    public UserProfileService(UserProfileRepository userProfileRepository, UserCache userCache,
+                              PlatformTransactionManager transactionManager) {
         this.userProfileRepository = userProfileRepository;
+        this.userCache = userCache;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
     }
 
+    // Cached; on a miss the user is loaded with the profile so the detached copy can be serialized later
     public Optional<UserProfile> getProfileByUserId(Long userId) {
-        return userProfileRepository.findByUserId(userId);
+        return userCache.getProfile(userId, key -> readOnlyTransaction.execute(tx ->
+            userProfileRepository.findByUserId(key)
+                .map(profile -> {
+                    Hibernate.initialize(profile.getUser());
+                    return profile;
+                })
+                .orElse(null)));
     }
 
-    public UserProfile updateProfile(UserProfile profile) {
-        profile.setUpdatedAt(LocalDateTime.now());
-        return userProfileRepository.save(profile);
+    // Copies the editable fields onto the user's stored profile; id, owner and activity statistics stay as stored
+    public UserProfile updateProfile(Long userId, UserProfile changes) {
+        Optional<UserProfile> profile = userProfileRepository.findByUserId(userId);
+        if (profile.isPresent()) {
+            UserProfile p = profile.get();
+            p.setProfilePictureUrl(changes.getProfilePictureUrl());
+            p.setBio(changes.getBio());
+            p.setPreferredContactMethod(changes.getPreferredContactMethod());
+            p.setPreferredLanguage(changes.getPreferredLanguage());
+            p.setTimezone(changes.getTimezone());
+            p.setEmailNotifications(changes.getEmailNotifications());
+            p.setUpdatedAt(LocalDateTime.now());
+            UserProfile saved = userProfileRepository.save(p);
+            userCache.evictProfile(userId);
+            return saved;
+        }
+        return null;
     }
 
     public UserProfile updateProfilePicture(Long userId, String profilePictureUrl) {
@@ -31,7 +61,9 @@ public class UserProfileService {
             UserProfile p = profile.get();
             p.setProfilePictureUrl(profilePictureUrl);
             p.setUpdatedAt(LocalDateTime.now());
-            return userProfileRepository.save(p);
+            UserProfile saved = userProfileRepository.save(p);
+            userCache.evictProfile(userId);
+            return saved;
         }
         return null;
     }
@@ -43,7 +75,9 @@ public class UserProfileService {
             p.setPreferredLanguage(language);
             p.setEmailNotifications(emailNotifications);
             p.setUpdatedAt(LocalDateTime.now());
-            return userProfileRepository.save(p);
+            UserProfile saved = userProfileRepository.save(p);
+            userCache.evictProfile(userId);
+            return saved;
         }
         return null;
     }
@@ -53,7 +87,9 @@ public class UserProfileService {
         if (profile.isPresent()) {
             UserProfile p = profile.get();
             p.setItemsListed(p.getItemsListed() + 1);
-            return userProfileRepository.save(p);
+            UserProfile saved = userProfileRepository.save(p);
+            userCache.evictProfile(userId);
+            return saved;
         }
         return null;
     }
@@ -63,7 +99,9 @@ public class UserProfileService {
         if (profile.isPresent()) {
             UserProfile p = profile.get();
             p.setItemsSold(p.getItemsSold() + 1);
-            return userProfileRepository.save(p);
+            UserProfile saved = userProfileRepository.save(p);
+            userCache.evictProfile(userId);
+            return saved;
         }
         return null;
     }
@@ -73,7 +111,9 @@ public class UserProfileService {
         if (profile.isPresent()) {
             UserProfile p = profile.get();
             p.setItemsPurchased(p.getItemsPurchased() + 1);
-            return userProfileRepository.save(p);
+            UserProfile saved = userProfileRepository.save(p);
+            userCache.evictProfile(userId);
+            return saved;
         }
         return null;
     }
@@ -82,6 +122,7 @@ public class UserProfileService {
         userProfileRepository.findByUserId(userId).ifPresent(profile -> {
             profile.setLastActiveAt(LocalDateTime.now());
             userProfileRepository.save(profile);
+            userCache.evictProfile(userId);
         });
     }
 }
@@ -2,10 +2,11 @@ package com.housetreasure.service;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -19,42 +20,61 @@ import com.housetreasure.repository.UserRepository;
 public class UserService {
     private final UserRepository userRepository;
     private final UserProfileRepository userProfileRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
+    private final UserCache userCache;
 
     public UserService(UserRepository userRepository, 
                       UserProfileRepository userProfileRepository,
-                      PasswordEncoder passwordEncoder) {
+                      PasswordHashingService passwordHashingService,
+                      UserCache userCache) {
         this.userRepository = userRepository;
         this.userProfileRepository = userProfileRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHashingService = passwordHashingService;
+        this.userCache = userCache;
     }
 
     // === REGULAR USER ACTIVITIES ===
+    // Password hashing runs on PasswordHashingService's pool; these complete there and throw
+    // PasswordHashingBusyException straight away when its queue is full
     
-    public User registerUser(User user) {
-        user.setPassword(passwordEncoder.encode(user.getPassword()));
-        user.setVerificationToken(UUID.randomUUID().toString());
-        user.setIsActive(false); // Require email verification
-        
-        User savedUser = userRepository.save(user);
-        
-        // Create default profile
-        UserProfile profile = new UserProfile();
-        profile.setUser(savedUser);
-        userProfileRepository.save(profile);
-        
-        return savedUser;
-    }
-
-    public Optional<User> loginUser(String email, String password) {
-        // Fix: Handle the case where findByEmail returns User, not Optional<User>
-        User user = userRepository.findByEmail(email);
-        if (user != null && passwordEncoder.matches(password, user.getPassword())) {
-            user.setLastLoginAt(LocalDateTime.now());
-            userRepository.save(user);
-            return Optional.of(user);
-        }
-        return Optional.empty();
+    public CompletableFuture<User> registerUser(User user) {
+        return passwordHashingService.encode(user.getPassword()).thenApply(hash -> {
+            user.setPassword(hash);
+            user.setRole(User.Role.USER);
+            user.setVerificationToken(UUID.randomUUID().toString());
+            user.setIsActive(false); // Require email verification
+
+            User savedUser = userRepository.save(user);
+
+            // Create default profile
+            UserProfile profile = new UserProfile();
+            profile.setUser(savedUser);
+            userProfileRepository.save(profile);
+
+            return savedUser;
+        });
+    }
+
+    // Rehashes the password when it was stored at another BCrypt strength
+    public CompletableFuture<Optional<User>> loginUser(String email, String password) {
+        // Cached, so repeated attempts for the same account skip the lookup
+        User user = email != null ? userCache.getUserByEmail(email, userRepository::findByEmail).orElse(null) : null;
+        return passwordHashingService.verify(password, user != null ? user.getPassword() : null)
+            .thenApply(verification -> {
+                if (!verification.matches()) {
+                    return Optional.empty();
+                }
+                // Updated in place: the user may be the cached, detached instance
+                LocalDateTime now = LocalDateTime.now();
+                if (verification.upgradedHash() != null) {
+                    userRepository.updatePassword(user.getId(), verification.upgradedHash(), now);
+                    user.setPassword(verification.upgradedHash());
+                }
+                userRepository.recordLogin(user.getId(), now);
+                user.setLastLoginAt(now);
+                userCache.evictUser(user);
+                return Optional.of(user);
+            });
     }
 
     public boolean verifyEmail(String token) {
@@ -63,6 +83,7 @@ public class UserService {
             user.setIsActive(true);
             user.setVerificationToken(null);
             userRepository.save(user);
+            userCache.evictUser(user);
             return true;
         }
         return false;
@@ -74,46 +95,67 @@ public class UserService {
             String token = UUID.randomUUID().toString();
             user.setVerificationToken(token); // Reuse field for reset token
             userRepository.save(user);
+            userCache.evictUser(user);
             return token;
         }
         return null;
     }
 
-    public boolean resetPassword(String token, String newPassword) {
+    public CompletableFuture<Boolean> resetPassword(String token, String newPassword) {
         User user = userRepository.findByVerificationToken(token);
-        if (user != null) {
-            user.setPassword(passwordEncoder.encode(newPassword));
+        if (user == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+        return passwordHashingService.encode(newPassword).thenApply(hash -> {
+            user.setPassword(hash);
             user.setVerificationToken(null);
             userRepository.save(user);
+            userCache.evictUser(user);
             return true;
+        });
+    }
+
+    public CompletableFuture<Boolean> changePassword(Long userId, String oldPassword, String newPassword) {
+        User user = userRepository.findById(userId).orElse(null);
+        return passwordHashingService.verify(oldPassword, user != null ? user.getPassword() : null)
+            .thenCompose(verification -> verification.matches()
+                ? passwordHashingService.encode(newPassword)
+                : CompletableFuture.<String>completedFuture(null))
+            .thenApply(hash -> {
+                if (hash == null) {
+                    return false;
+                }
+                user.setPassword(hash);
+                userRepository.save(user);
+                userCache.evictUser(user);
+                return true;
+            });
+    }
+
+    // Best matches first; substring and near matches (typos) on first name, last name or username
+    public Page<User> searchUsersByName(String name, Pageable pageable) {
+        String query = NameSearch.normalize(name);
+        if (query == null) {
+            return Page.empty(pageable);
         }
-        return false;
+        return userRepository.searchByName(query, NameSearch.containsPattern(query), NameSearch.page(pageable));
     }
 
-    public boolean changePassword(Long userId, String oldPassword, String newPassword) {
-        Optional<User> user = userRepository.findById(userId);
-        if (user.isPresent() && passwordEncoder.matches(oldPassword, user.get().getPassword())) {
-            User u = user.get();
-            u.setPassword(passwordEncoder.encode(newPassword));
-            userRepository.save(u);
-            return true;
-        }
-        return false;
-    }
-
-    public List<User> searchUsersByName(String name) {
-        return userRepository.searchByName(name);
-    }
-
-    public List<User> searchUsersByLocation(String province, String district) {
+    public Page<User> searchUsersByLocation(String province, String district, Pageable pageable) {
         if (district != null) {
-            return userRepository.findByProvinceAndDistrict(province, district);
+            return userRepository.findByProvinceAndDistrict(province, district, pageable);
         }
-        return userRepository.findByProvince(province);
+        return userRepository.findByProvince(province, pageable);
     }
 
+    // Cached; the result is shared, so change users through the methods here rather than in place
     public Optional<User> getUserById(Long id) {
-        return userRepository.findById(id);
+        return userCache.getUser(id, key -> userRepository.findById(key).orElse(null));
+    }
+
+    // Uninitialized proxy for setting associations without loading the user
+    public User getUserReference(Long id) {
+        return userRepository.getReferenceById(id);
     }
 
     // === ADMIN ACTIVITIES ===
@@ -138,7 +180,9 @@ public class UserService {
         if (user.isPresent()) {
             User u = user.get();
             u.setIsActive(false);
-            return userRepository.save(u);
+            User saved = userRepository.save(u);
+            userCache.evictUser(saved);
+            return saved;
         }
         return null;
     }
@@ -148,7 +192,9 @@ public class UserService {
         if (user.isPresent()) {
             User u = user.get();
             u.setIsActive(true);
-            return userRepository.save(u);
+            User saved = userRepository.save(u);
+            userCache.evictUser(saved);
+            return saved;
         }
         return null;
     }
@@ -161,7 +207,16 @@ public class UserService {
         return userRepository.countByIsActive(true);
     }
 
+    public Map<String, UserCache.RegionStats> getCacheStats() {
+        return userCache.stats();
+    }
+
+    // New accounts are plain users and existing ones keep their stored role; roles are not changed here
     public User saveUser(User user) {
-        return userRepository.save(user);
+        user.setRole(user.getId() == null ? User.Role.USER
+                : userRepository.findById(user.getId()).map(User::getRole).orElse(User.Role.USER));
+        User saved = userRepository.save(user);
+        userCache.evictUser(saved);
+        return saved;
     }
 }
@@ -0,0 +1,92 @@
+-- One-off conversion of transactions and offers to monthly range partitions on created_at.
+-- Not run by the application: apply it once with psql while the application is stopped, then
+-- set partitioning.enabled=true. PartitionMaintenanceService creates the monthly partitions
+-- from then on and, with partitioning.retention-months set, detaches and archives old ones.
+--
+-- Existing rows stay where they are, in a <table>_legacy partition covering everything before
+-- the first day of next month. PostgreSQL has no global unique indexes and cannot reference a
+-- partitioned table by id alone, so:
+--   * foreign keys pointing at transactions and offers are dropped (only offers.transaction_id);
+--   * ux_transactions_reference becomes unique per (transaction_reference, created_at); new
+--     references embed their creation time, so they stay unique;
+--   * the one-PENDING-offer-per-buyer-and-item rule moves to offer_pending_guard, kept by a
+--     trigger; its key keeps the name ux_offers_pending_buyer_item that OfferService checks.
+-- Offer.transaction is mapped without a foreign key so Hibernate's schema update does not try
+-- to add one back.
+
+BEGIN;
+
+DROP INDEX IF EXISTS ux_offers_pending_buyer_item;
+DROP INDEX IF EXISTS ux_transactions_reference;
+DROP INDEX IF EXISTS ix_transactions_awaiting_payment;
+
+DO $$
+DECLARE
+    fk record;
+BEGIN
+    FOR fk IN SELECT conname, conrelid::regclass AS referencing FROM pg_constraint
+              WHERE contype = 'f' AND confrelid IN ('transactions'::regclass, 'offers'::regclass)
+    LOOP
+        EXECUTE format('ALTER TABLE %s DROP CONSTRAINT %I', fk.referencing, fk.conname);
+    END LOOP;
+END $$;
+
+DO $$
+DECLARE
+    t text;
+    next_month date := (date_trunc('month', now()) + interval '1 month')::date;
+BEGIN
+    FOREACH t IN ARRAY ARRAY['transactions', 'offers'] LOOP
+        EXECUTE format('ALTER TABLE %I RENAME TO %I', t, t || '_legacy');
+        EXECUTE format('ALTER TABLE %I ALTER COLUMN id DROP IDENTITY IF EXISTS', t || '_legacy');
+        EXECUTE format('UPDATE %I SET created_at = now() WHERE created_at IS NULL', t || '_legacy');
+        EXECUTE format('ALTER TABLE %I ALTER COLUMN created_at SET NOT NULL', t || '_legacy');
+
+        EXECUTE format('CREATE TABLE %I (LIKE %I INCLUDING DEFAULTS INCLUDING STORAGE) PARTITION BY RANGE (created_at)',
+                       t, t || '_legacy');
+        -- A serial id keeps its sequence (default copied above); an identity id lost it with DROP IDENTITY
+        EXECUTE format('CREATE SEQUENCE IF NOT EXISTS %I', t || '_id_seq');
+        EXECUTE format('ALTER SEQUENCE %I OWNED BY %I.id', t || '_id_seq', t);
+        EXECUTE format('SELECT setval(%L, COALESCE((SELECT MAX(id) FROM %I), 0) + 1, false)',
+                       t || '_id_seq', t || '_legacy');
+        EXECUTE format('ALTER TABLE %I ALTER COLUMN id SET DEFAULT nextval(%L)', t, t || '_id_seq');
+        EXECUTE format('ALTER TABLE %I ADD PRIMARY KEY (id, created_at)', t);
+        EXECUTE format('ALTER TABLE %I ATTACH PARTITION %I FOR VALUES FROM (MINVALUE) TO (%L)',
+                       t, t || '_legacy', next_month);
+    END LOOP;
+END $$;
+
+CREATE UNIQUE INDEX ux_transactions_reference
+    ON transactions (transaction_reference, created_at);
+
+CREATE INDEX ix_transactions_awaiting_payment
+    ON transactions (status, created_at)
+    WHERE status IN ('PENDING', 'PAYMENT_SENT');
+
+CREATE TABLE offer_pending_guard (
+    buyer_id BIGINT       NOT NULL,
+    item_id  VARCHAR(255) NOT NULL,
+    offer_id BIGINT       NOT NULL,
+    CONSTRAINT ux_offers_pending_buyer_item PRIMARY KEY (buyer_id, item_id)
+);
+CREATE INDEX ix_offer_pending_guard_offer ON offer_pending_guard (offer_id);
+
+INSERT INTO offer_pending_guard (buyer_id, item_id, offer_id)
+SELECT buyer_id, item_id, id FROM offers WHERE status = 'PENDING';
+
+CREATE FUNCTION offer_pending_guard_sync() RETURNS trigger LANGUAGE plpgsql AS $$
+BEGIN
+    IF TG_OP IN ('UPDATE', 'DELETE') AND OLD.status = 'PENDING' THEN
+        DELETE FROM offer_pending_guard WHERE offer_id = OLD.id;
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') AND NEW.status = 'PENDING' THEN
+        INSERT INTO offer_pending_guard (buyer_id, item_id, offer_id) VALUES (NEW.buyer_id, NEW.item_id, NEW.id);
+    END IF;
+    RETURN NULL;
+END $$;
+
+CREATE TRIGGER offer_pending_guard_sync
+    AFTER INSERT OR UPDATE OF status, buyer_id, item_id OR DELETE ON offers
+    FOR EACH ROW EXECUTE FUNCTION offer_pending_guard_sync();
+
+COMMIT;
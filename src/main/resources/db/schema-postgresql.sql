@@ -0,0 +1,84 @@
+-- Runs after Hibernate has updated the schema (spring.jpa.defer-datasource-initialization=true).
+-- Holds constraints and indexes that JPA annotations cannot express. Every statement must be re-runnable.
+
+-- One PENDING offer per buyer and item. Older duplicates left over from before the index are withdrawn.
+UPDATE offers SET status = 'WITHDRAWN'
+WHERE status = 'PENDING'
+  AND id NOT IN (SELECT MAX(id) FROM offers WHERE status = 'PENDING' GROUP BY buyer_id, item_id);
+
+CREATE UNIQUE INDEX IF NOT EXISTS ux_offers_pending_buyer_item
+    ON offers (buyer_id, item_id)
+    WHERE status = 'PENDING';
+
+-- Schemas created before the offers -> users foreign keys were named (fk_offers_buyer, fk_offers_seller on
+-- Offer) also hold copies under generated names, which a missing buyer or seller could trip first. Those
+-- copies are dropped once the named key exists. The body is single-quoted rather than dollar-quoted
+-- because the script is split on semicolons outside quotes.
+DO '
+DECLARE
+    fk record;
+BEGIN
+    FOR fk IN
+        SELECT c.conname FROM pg_constraint c
+        JOIN pg_attribute a ON a.attrelid = c.conrelid AND a.attnum = c.conkey[1]
+        WHERE c.contype = ''f'' AND c.conrelid = ''offers''::regclass AND array_length(c.conkey, 1) = 1
+          AND a.attname IN (''buyer_id'', ''seller_id'')
+          AND c.conname NOT IN (''fk_offers_buyer'', ''fk_offers_seller'')
+          AND EXISTS (SELECT 1 FROM pg_constraint n WHERE n.conrelid = c.conrelid
+                      AND n.conname IN (''fk_offers_buyer'', ''fk_offers_seller'') AND n.conkey = c.conkey)
+    LOOP
+        EXECUTE format(''ALTER TABLE offers DROP CONSTRAINT %I'', fk.conname);
+    END LOOP;
+END
+';
+
+-- Transaction counts and GMV per creation day, status and reporting dimension, kept current by
+-- TransactionReportService (on create) and TransactionTransitionRepositoryImpl (on status change).
+-- Unknown dimensions are stored as '' so they can be part of the key.
+CREATE TABLE IF NOT EXISTS transaction_daily_rollups (
+    day            DATE           NOT NULL,
+    status         VARCHAR(32)    NOT NULL,
+    payment_method VARCHAR(32)    NOT NULL DEFAULT '',
+    province       VARCHAR(255)   NOT NULL DEFAULT '',
+    category_id    VARCHAR(64)    NOT NULL DEFAULT '',
+    tx_count       BIGINT         NOT NULL DEFAULT 0,
+    gmv            NUMERIC(14, 2) NOT NULL DEFAULT 0,
+    PRIMARY KEY (day, status, payment_method, province, category_id)
+);
+
+-- Rollups key the province on transactions.seller_province, copied at creation. Rows from before the
+-- column existed take their seller's current province, which is what their rollup rows were built from.
+UPDATE transactions t SET seller_province = u.province
+FROM users u
+WHERE u.id = t.seller_id AND t.seller_province IS NULL AND u.province IS NOT NULL;
+
+-- Transaction references are unique. Duplicates left over from the old random 8-character
+-- references get the row id appended, keeping the oldest row's reference as it was.
+UPDATE transactions SET transaction_reference = transaction_reference || '-' || id
+WHERE transaction_reference IS NOT NULL
+  AND id NOT IN (SELECT MIN(id) FROM transactions
+                 WHERE transaction_reference IS NOT NULL GROUP BY transaction_reference);
+
+CREATE UNIQUE INDEX IF NOT EXISTS ux_transactions_reference
+    ON transactions (transaction_reference);
+
+-- Transactions still waiting on payment, by age, for StalePaymentSweeper and /pending-payments.
+CREATE INDEX IF NOT EXISTS ix_transactions_awaiting_payment
+    ON transactions (status, created_at)
+    WHERE status IN ('PENDING', 'PAYMENT_SENT');
+
+-- TransactionExportService streams rows in (created_at, id) order, optionally bounded by creation day;
+-- this lets it walk the index instead of sorting the whole table before the first row is written.
+CREATE INDEX IF NOT EXISTS ix_transactions_created_id
+    ON transactions (created_at, id);
+
+-- Trigram indexes for the name searches (UserRepository / CategoryRepository.searchByName), which
+-- match substrings and rank by similarity. pg_trgm is a trusted extension (PostgreSQL 13+), so the
+-- database owner can create it; on older servers a superuser must create it once.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX IF NOT EXISTS ix_users_name_trgm
+    ON users USING gin (lower(first_name) gin_trgm_ops, lower(last_name) gin_trgm_ops, lower(username) gin_trgm_ops);
+
+CREATE INDEX IF NOT EXISTS ix_categories_name_trgm
+    ON categories USING gin (lower(name) gin_trgm_ops);